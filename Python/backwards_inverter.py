@@ -7,6 +7,8 @@ import shutil
 
 inverse_dir_name = "inverse"
 out_inverse_dir_name = "out_inverse"
+# uncompressed frames written by the server, named by their position in the video
+frame_extension = ".bmp"
 
 # construct the argument parse and parse the arguments
 # TODO: use root path of image_dir
@@ -23,14 +25,14 @@ os.mkdir(result_dir_path)
 counter = 0
 listing = os.listdir(args["images"])
 for filenames in listing:
-    if filenames.endswith('.png'):
+    if filenames.endswith(frame_extension):
         counter += 1
 
 # rename the input images with inverted indices
-files = glob.iglob(os.path.join(args["images"], "*.png"))
+files = sorted(glob.glob(os.path.join(args["images"], "*" + frame_extension)))
 for file in files:
     if os.path.isfile(file):
-        new_filepath = result_dir_path + "/" + str(counter).zfill(4) + ".png"
+        new_filepath = result_dir_path + "/" + str(counter).zfill(10) + frame_extension
         #print(new_filepath)
         shutil.copy2(file, new_filepath)
         counter -= 1
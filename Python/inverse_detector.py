@@ -48,7 +48,7 @@ sws = 3
 list_of_picks = np.empty((sws, 0)).tolist()
 
 # loop over the image paths
-for imagePath in paths.list_images(inverse_dir_path):
+for imagePath in sorted(paths.list_images(inverse_dir_path)):
     # load the image and resize it to (1) reduce detection time
     # and (2) improve detection accuracy
     image = cv2.imread(imagePath)
@@ -7,6 +7,8 @@ import shutil
 
 inverse_dir_postfix = "inverse"
 out_inverse_dir_postfix = "inverse"
+# uncompressed frames written by the server, named by their position in the video
+frame_extension = ".bmp"
 
 # construct the argument parse and parse the arguments
 # TODO: use root path of image_dir
@@ -27,26 +29,26 @@ counter = 0
 #listing = os.listdir(args["images"])
 listing = os.listdir(args["inimages"])
 for filenames in listing:
-    if filenames.endswith('.png'):
+    if filenames.endswith(frame_extension):
         counter += 1
 
 counter2 = counter
 
 # rename the input images with inverted indices
-files = glob.iglob(os.path.join(args["inimages"], "*.png"))
+files = sorted(glob.glob(os.path.join(args["inimages"], "*" + frame_extension)))
 for file in files:
     if os.path.isfile(file):
-        new_filepath = inverse_dir_path + "/" + str(counter).zfill(4) + ".png"
+        new_filepath = inverse_dir_path + "/" + str(counter).zfill(10) + frame_extension
         #print(new_filepath)
         shutil.copy2(file, new_filepath)
         counter -= 1
 
 # rename the output images with inverted indices
 #outfiles = glob.iglob(os.path.join(args["images"] + "_out/", "*.png"))
-outfiles = glob.iglob(os.path.join(args["outimages"], "*.png"))
+outfiles = sorted(glob.glob(os.path.join(args["outimages"], "*" + frame_extension)))
 for outfile in outfiles:
     if os.path.isfile(outfile):
-        new_out_filepath = out_inverse_dir_path + "/" + str(counter2).zfill(4) + ".png"
+        new_out_filepath = out_inverse_dir_path + "/" + str(counter2).zfill(10) + frame_extension
         #print(new_out_filepath)
         shutil.copy2(outfile, new_out_filepath)
         counter2 -= 1
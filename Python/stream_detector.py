@@ -0,0 +1,139 @@
+from __future__ import print_function
+
+import argparse
+import struct
+import sys
+import time
+
+import cv2
+import imutils
+import numpy as np
+from imutils.object_detection import non_max_suppression
+
+# Streaming version of processing_chain.py: raw BGR frames are read from stdin and the
+# people detected around each frame are written to stdout, no images touch the disk.
+# The detector keeps running and handles one video after the other until stdin is closed,
+# so the interpreter and the model are only loaded once. Log output goes to stderr.
+#
+# Protocol, all integers are signed 32 bit big endian:
+#   in:  width, height, width * height * 3 bytes BGR   a frame of the current video
+#        0, 0                                          end of the current video
+#        -1, 0                                         health check between two videos
+#   out: count, count * (x, y, w, h)                   detections per frame, in the order the frames were received
+#        -1                                            all frames of the video were answered
+#        -2                                            answer to a health check
+#
+# Like the forward and backward pass of the file based chain, every frame gets the detections
+# of the frames up to sws - 1 before and after it, so results lag sws - 1 frames behind.
+
+ap = argparse.ArgumentParser()
+ap.add_argument("-s", "--slidingwindow", default=3, help="amount of frames a detection is kept in each direction, default = 3")
+ap.add_argument("-m", "--maxheight", default=600, help="height frames get scaled down to for detection, default = 600")
+args = vars(ap.parse_args())
+
+sws = int(args["slidingwindow"])
+max_height = int(args["maxheight"])
+
+stdin = getattr(sys.stdin, "buffer", sys.stdin)
+stdout = getattr(sys.stdout, "buffer", sys.stdout)
+
+# initialize the HOG descriptor/person detector
+hog = cv2.HOGDescriptor()
+hog.setSVMDetector(cv2.HOGDescriptor_getDefaultPeopleDetector())
+
+
+def read_exactly(size):
+    data = b""
+    while len(data) < size:
+        chunk = stdin.read(size - len(data))
+        if not chunk:
+            return None
+        data += chunk
+    return data
+
+
+def read_frame(width, height):
+    data = read_exactly(width * height * 3)
+    if data is None:
+        return None
+    return np.frombuffer(data, dtype=np.uint8).reshape((height, width, 3))
+
+
+def log(message):
+    print(message, file=sys.stderr)
+    sys.stderr.flush()
+
+
+def detect(frame):
+    # detect on a scaled down copy to (1) reduce detection time and (2) improve detection accuracy
+    image = imutils.resize(frame, height=min(max_height, frame.shape[0]))
+    scale = float(frame.shape[0]) / image.shape[0]
+    (rects, weights) = hog.detectMultiScale(image, winStride=(4, 4), padding=(8, 8), scale=1.05)
+
+    # apply non-maxima suppression to the bounding boxes using a
+    # fairly large overlap threshold to try to maintain overlapping
+    # boxes that are still people
+    rects = np.array([[x, y, x + w, y + h] for (x, y, w, h) in rects])
+    pick = non_max_suppression(rects, probs=None, overlapThresh=0.65)
+    return [(int(xA * scale), int(yA * scale), int((xB - xA) * scale), int((yB - yA) * scale))
+            for (xA, yA, xB, yB) in pick]
+
+
+def write_result(window, index):
+    rects = []
+    for picks in window[max(0, index - sws + 1):index + sws]:
+        rects.extend(picks)
+    stdout.write(struct.pack(">i", len(rects)))
+    for rect in rects:
+        stdout.write(struct.pack(">iiii", *rect))
+    stdout.flush()
+
+
+def write_int(value):
+    stdout.write(struct.pack(">i", value))
+    stdout.flush()
+
+
+log("detector ready")
+# detections of the frames that are still needed, the first one belongs to frame "first"
+window = []
+first = 0
+written = 0
+start = 0
+while True:
+    header = read_exactly(8)
+    if header is None:
+        break
+    (width, height) = struct.unpack(">ii", header)
+
+    if width == -1:
+        write_int(-2)
+        continue
+
+    if width == 0:
+        # the last frames have no successors
+        while written < first + len(window):
+            write_result(window, written - first)
+            written += 1
+        write_int(-1)
+        log("answered {} frames in {:.1f} s".format(written, time.time() - start))
+        window = []
+        first = 0
+        written = 0
+        continue
+
+    frame = read_frame(width, height)
+    if frame is None:
+        break
+    if written == 0 and not window:
+        start = time.time()
+    window.append(detect(frame))
+
+    # the newest frame completes the window of the frame sws - 1 before it
+    index = first + len(window) - sws
+    if index >= written:
+        write_result(window, index - first)
+        written += 1
+        if index - first >= sws - 1:
+            window.pop(0)
+            first += 1
@@ -0,0 +1,70 @@
+package edu.kit.informatik.pcc.service.data;
+
+/**
+ * Datacontainer for the stored credentials of an account.
+ * Holds everything needed to authenticate a request so it can be fetched with a single query.
+ *
+ * @author David Laubenstein
+ */
+public class AccountCredentials {
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Unique identifier of the account in the database.
+     */
+    private int id;
+    /**
+     * Salt used for hashing the password, encoded with Base64.
+     */
+    private String salt;
+    /**
+     * Stored password hash of the account.
+     */
+    private String passwordHash;
+    /**
+     * Verification status of the account.
+     */
+    private boolean verified;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Creates a new credentials container.
+     *
+     * @param id           unique identifier of the account
+     * @param salt         Base64 encoded salt of the password
+     * @param passwordHash stored password hash
+     * @param verified     whether the account is verified
+     */
+    public AccountCredentials(int id, String salt, String passwordHash, boolean verified) {
+        this.id = id;
+        this.salt = salt;
+        this.passwordHash = passwordHash;
+        this.verified = verified;
+    }
+
+    /* #############################################################################################
+     *                                  getter/setter
+     * ###########################################################################################*/
+
+    public int getId() {
+        return id;
+    }
+
+    public String getSalt() {
+        return salt;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    public boolean isVerified() {
+        return verified;
+    }
+}
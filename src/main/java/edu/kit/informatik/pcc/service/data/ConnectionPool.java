@@ -0,0 +1,244 @@
+package edu.kit.informatik.pcc.service.data;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.MetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Shared pool of connections to the postgres database used by all {@link DatabaseManager}s.
+ * The pool gets started and stopped together with the server. Borrowed connections are validated
+ * before they are handed out and connections that are not returned in time get reported as leaks.
+ * A pool that got shut down stays the singleton instance and refuses to hand out connections, so database
+ * access after the server stopped fails instead of silently opening a new pool.
+ * <p>
+ * All settings can be changed via system properties, e.g. <b>-Dpcc.db.pool.maxSize=20</b>.
+ * </p>
+ *
+ * @author David Laubenstein
+ */
+public class ConnectionPool {
+
+    // database constants
+    private static final String HOST = System.getProperty("pcc.db.host", "localhost");
+    private static final String PORT = System.getProperty("pcc.db.port", "5432");
+    private static final String DB_NAME = System.getProperty("pcc.db.name", "privacycrashcam");
+    private static final String USER = System.getProperty("pcc.db.user", "postgres");
+    private static final String PASSWORD = System.getProperty("pcc.db.password", "pccdata");
+
+    // pool constants
+    private static final String POOL_NAME = "pcc-db-pool";
+    private static final int MIN_IDLE = Integer.getInteger("pcc.db.pool.minIdle", 2);
+    private static final int MAX_SIZE = Integer.getInteger("pcc.db.pool.maxSize", 10);
+    private static final long IDLE_TIMEOUT = Long.getLong("pcc.db.pool.idleTimeoutMs", 600000L);
+    private static final long CONNECTION_TIMEOUT = Long.getLong("pcc.db.pool.connectionTimeoutMs", 5000L);
+    private static final long VALIDATION_TIMEOUT = Long.getLong("pcc.db.pool.validationTimeoutMs", 2000L);
+    private static final long LEAK_DETECTION_THRESHOLD = Long.getLong("pcc.db.pool.leakDetectionMs", 10000L);
+
+    // prepared statement constants
+    private static final int PREPARE_THRESHOLD = Integer.getInteger("pcc.db.prepareThreshold", 1);
+    private static final int STATEMENT_CACHE_QUERIES = Integer.getInteger("pcc.db.statementCacheQueries", 64);
+    private static final int STATEMENT_CACHE_SIZE_MIB = Integer.getInteger("pcc.db.statementCacheSizeMiB", 1);
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Instance of the ConnectionPool used for Singleton behaviour.
+     */
+    private static ConnectionPool instance;
+
+    /**
+     * Pooled data source handing out the connections.
+     */
+    private HikariDataSource dataSource;
+    /**
+     * Tracker recording how long requests had to wait for a connection.
+     */
+    private WaitTimeTracker waitTimeTracker;
+    /**
+     * Whether the pool got shut down.
+     */
+    private volatile boolean closed;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Sets up the pool and opens the minimum amount of idle connections.
+     *
+     * @throws RuntimeException in case the database can't be reached.
+     */
+    private ConnectionPool() {
+        waitTimeTracker = new WaitTimeTracker();
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(POOL_NAME);
+        config.setDriverClassName("org.postgresql.Driver");
+        config.setJdbcUrl("jdbc:postgresql://" + HOST + ":" + PORT + "/" + DB_NAME);
+        config.setUsername(USER);
+        config.setPassword(PASSWORD);
+        config.setMinimumIdle(MIN_IDLE);
+        config.setMaximumPoolSize(MAX_SIZE);
+        config.setIdleTimeout(IDLE_TIMEOUT);
+        config.setConnectionTimeout(CONNECTION_TIMEOUT);
+        config.setValidationTimeout(VALIDATION_TIMEOUT);
+        config.setLeakDetectionThreshold(LEAK_DETECTION_THRESHOLD);
+        config.setRegisterMbeans(true);
+        // the driver caches prepared statements per connection and switches to
+        // server-side prepared statements after the threshold of executions
+        config.addDataSourceProperty("prepareThreshold", String.valueOf(PREPARE_THRESHOLD));
+        config.addDataSourceProperty("preparedStatementCacheQueries", String.valueOf(STATEMENT_CACHE_QUERIES));
+        config.addDataSourceProperty("preparedStatementCacheSizeMiB", String.valueOf(STATEMENT_CACHE_SIZE_MIB));
+        config.setMetricsTrackerFactory(new MetricsTrackerFactory() {
+            @Override
+            public MetricsTracker create(String poolName, PoolStats poolStats) {
+                return waitTimeTracker;
+            }
+        });
+
+        dataSource = new HikariDataSource(config);
+    }
+
+    /**
+     * Gets the singleton instance of the ConnectionPool. Creates the pool on first access
+     * and returns the stopped pool after a shutdown.
+     *
+     * @return Returns the singleton instance.
+     * @throws RuntimeException in case the pool could not be set up.
+     */
+    public static synchronized ConnectionPool getInstance() {
+        return (instance == null) ? instance = new ConnectionPool() : instance;
+    }
+
+    /**
+     * Creates the pool unless a running pool exists already. Replaces a pool that got shut down.
+     *
+     * @return Returns the running singleton instance.
+     * @throws RuntimeException in case the pool could not be set up.
+     */
+    public static synchronized ConnectionPool start() {
+        if (instance == null || instance.closed) {
+            instance = new ConnectionPool();
+        }
+        return instance;
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    /**
+     * Borrows a connection from the pool. The connection has to be closed after usage
+     * which returns it to the pool.
+     *
+     * @return Returns a validated connection to the database.
+     * @throws SQLException in case the pool got shut down or no connection got free in time.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool got shut down");
+        }
+        return dataSource.getConnection();
+    }
+
+    /**
+     * Closes all connections of the pool. Borrowing connections fails afterwards.
+     */
+    public void shutdown() {
+        closed = true;
+        Logger.getGlobal().info(getStatistics());
+        dataSource.close();
+        Logger.getGlobal().info("Connection pool stopped");
+    }
+
+    /**
+     * Creates a human readable summary of the pool's state and wait times.
+     *
+     * @return Returns the pool statistics as string.
+     */
+    public String getStatistics() {
+        return String.format("Connection pool: active=%d, idle=%d, waiting=%d, acquired=%d, "
+                        + "avgWait=%.2fms, maxWait=%.2fms, timeouts=%d",
+                getActiveConnections(), getIdleConnections(), getThreadsAwaitingConnection(),
+                getAcquireCount(), getAverageWaitMillis(), getMaxWaitMillis(), getTimeoutCount());
+    }
+
+    /* #############################################################################################
+     *                                  getter/setter
+     * ###########################################################################################*/
+
+    public int getActiveConnections() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return (pool == null) ? 0 : pool.getActiveConnections();
+    }
+
+    public int getIdleConnections() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return (pool == null) ? 0 : pool.getIdleConnections();
+    }
+
+    public int getThreadsAwaitingConnection() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return (pool == null) ? 0 : pool.getThreadsAwaitingConnection();
+    }
+
+    public long getAcquireCount() {
+        return waitTimeTracker.acquireCount.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = waitTimeTracker.acquireCount.get();
+        return (count == 0) ? 0 : waitTimeTracker.totalWaitNanos.get() / (double) count / 1000000;
+    }
+
+    public double getMaxWaitMillis() {
+        return waitTimeTracker.maxWaitNanos.get() / 1000000.0;
+    }
+
+    public long getTimeoutCount() {
+        return waitTimeTracker.timeoutCount.get();
+    }
+
+    /**
+     * Records the time requests spent waiting for a connection of the pool.
+     */
+    private static class WaitTimeTracker extends MetricsTracker {
+        private final AtomicLong acquireCount = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final AtomicLong timeoutCount = new AtomicLong();
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquireCount.incrementAndGet();
+            totalWaitNanos.addAndGet(elapsedAcquiredNanos);
+
+            long max;
+            do {
+                max = maxWaitNanos.get();
+            } while (elapsedAcquiredNanos > max && !maxWaitNanos.compareAndSet(max, elapsedAcquiredNanos));
+
+            if (elapsedAcquiredNanos > TimeUnit.MILLISECONDS.toNanos(CONNECTION_TIMEOUT / 2)) {
+                Logger.getGlobal().warning("Waited " + TimeUnit.NANOSECONDS.toMillis(elapsedAcquiredNanos)
+                        + "ms for a database connection");
+            }
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeoutCount.incrementAndGet();
+            Logger.getGlobal().warning("Timed out waiting for a database connection");
+        }
+    }
+}
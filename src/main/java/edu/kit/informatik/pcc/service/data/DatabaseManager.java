@@ -1,25 +1,20 @@
 package edu.kit.informatik.pcc.service.data;
 
-import edu.kit.informatik.pcc.service.server.Main;
-
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.logging.Logger;
 
 /**
  * This class handles all low-level database queries
+ * <p>
+ * All queries are parameterized prepared statements. Keep their sql strings constant, the driver caches the
+ * prepared statements per pooled connection by their sql and reuses the server-side query plans.
+ * </p>
  *
  * @author David Laubenstein
  */
 public class DatabaseManager {
 
-    // database constants
-    private static final String PORT = "5432";
-    private static final String HOST = "localhost";
-    private static final String DB_NAME = "privacycrashcam";
-    private static final String USER = "postgres";
-    private static final String PASSWORD = "pccdata";
-
     /* #############################################################################################
      *                                  attributes
      * ###########################################################################################*/
@@ -28,6 +23,10 @@ public class DatabaseManager {
      * User account of the active user.
      */
     private Account account;
+    /**
+     * Pool the connections get borrowed from. Falls back to the shared pool if not set.
+     */
+    private ConnectionPool pool;
     /**
      * Connection to the postgres database.
      */
@@ -40,12 +39,25 @@ public class DatabaseManager {
     /**
      * Constructor, which includes the {@link Account} object in the {@link DatabaseManager}.
      * The {@link Account} object saves important information about the user.
+     * Uses the shared {@link ConnectionPool} for database access.
      *
      * @param account to have access to the actual account.
      */
     public DatabaseManager(Account account) {
+        this(account, null);
+    }
+
+    /**
+     * Constructor, which includes the {@link Account} object in the {@link DatabaseManager}
+     * and uses the given {@link ConnectionPool} for database access.
+     *
+     * @param account to have access to the actual account.
+     * @param pool    pool to borrow connections from, null to use the shared pool.
+     */
+    public DatabaseManager(Account account, ConnectionPool pool) {
         // create access to account
         this.account = account;
+        this.pool = pool;
     }
 
     /* #############################################################################################
@@ -53,28 +65,37 @@ public class DatabaseManager {
      * ###########################################################################################*/
 
     /**
-     * This method is used to open a connection to the database with the class attributes.
-     * If the connection fails, the
+     * This method is used to borrow a connection to the database from the connection pool.
      * <p>
      * IMPORTANT: A Connection c will be opened, but not closed. After calling this method,
-     * you have to close the connection with <b>this.c.close()</b>
+     * you have to return the connection with <b>closeConnection()</b>
      * </p>
      */
     private boolean connectDatabase() {
         c = null;
         try {
-            Class.forName("org.postgresql.Driver");
-            this.c = DriverManager
-                    .getConnection("jdbc:postgresql://" + HOST + ":" + PORT + "/" + DB_NAME, USER, PASSWORD);
+            ConnectionPool connectionPool = (pool != null) ? pool : ConnectionPool.getInstance();
+            this.c = connectionPool.getConnection();
         } catch (Exception e) {
-            e.printStackTrace();
             Logger.getGlobal().severe("No connection to database!");
-            Main.stopServer();
             return false;
         }
         return true;
     }
 
+    /**
+     * Returns the connection opened by connectDatabase() to the connection pool.
+     */
+    private void closeConnection() {
+        if (c == null) return;
+        try {
+            c.close();
+        } catch (SQLException e) {
+            Logger.getGlobal().warning("connection to database not closed!");
+        }
+        c = null;
+    }
+
     /**
      * Save Video and Metadata to database, related to an account
      * This is not the real file or the path to the file. This is only the name of the
@@ -88,15 +109,17 @@ public class DatabaseManager {
         if (!connectDatabase()) return false;
         // send sql command and catch possible exeptions
         try {
-            Statement stmt = this.c.createStatement();
-            // sql command
-            String sql = "insert into \"video\" (user_id,video_name,meta_name) values (" + account.getId() + ",'" +
-                    videoName + "','" + metaName + "');";
-            stmt.executeUpdate(sql);
+            PreparedStatement stmt = this.c.prepareStatement(
+                    "insert into \"video\" (user_id,video_name,meta_name) values (?,?,?)");
+            stmt.setInt(1, account.getId());
+            stmt.setString(2, videoName);
+            stmt.setString(3, metaName);
+            stmt.executeUpdate();
             stmt.close();
-            this.c.close();
         } catch (NullPointerException | SQLException e) {
             Logger.getGlobal().warning("Inserting video and meta in database failed!");
+        } finally {
+            closeConnection();
         }
         return true;
     }
@@ -114,21 +137,23 @@ public class DatabaseManager {
         if (!connectDatabase()) return null;
         // execute sql command and insert result in ArrayList
         try {
-            Statement stmt = this.c.createStatement();
-            ResultSet rs = stmt.executeQuery("select \"video_name\",vid.\"id\" from \"video\" as vid  " +
-                    "join \"user\" as usr ON vid.user_id=usr.id where usr.id='" + account.getId() + "' " +
-                    "AND vid.\"id\"=" + videoId);
+            PreparedStatement stmt = this.c.prepareStatement("select \"video_name\",vid.\"id\" from \"video\" " +
+                    "as vid join \"user\" as usr ON vid.user_id=usr.id where usr.id=? AND vid.\"id\"=?");
+            stmt.setInt(1, account.getId());
+            stmt.setInt(2, videoId);
+            ResultSet rs = stmt.executeQuery();
             // insert result in ArrayList
             while (rs.next()) {
                 String video_name = rs.getString("video_name");
-                int id = Integer.parseInt(rs.getString("id"));
+                int id = rs.getInt("id");
                 vI = new VideoInfo(id, video_name);
             }
             rs.close();
             stmt.close();
-            this.c.close();
         } catch (NullPointerException | SQLException e) {
             Logger.getGlobal().warning("Select SQL command has not been executed successfully: ");
+        } finally {
+            closeConnection();
         }
         return vI;
     }
@@ -147,21 +172,23 @@ public class DatabaseManager {
         if (!connectDatabase()) return null;
         // execute sql command and insert result in ArrayList
         try {
-            Statement stmt = this.c.createStatement();
-            ResultSet rs = stmt.executeQuery("select \"video_name\",vid.\"id\" from \"video\" as vid  " +
-                    "join \"user\" as usr ON vid.user_id=usr.id where usr.id='" + account.getId() + "'");
+            PreparedStatement stmt = this.c.prepareStatement("select \"video_name\",vid.\"id\" from \"video\" " +
+                    "as vid join \"user\" as usr ON vid.user_id=usr.id where usr.id=?");
+            stmt.setInt(1, account.getId());
+            ResultSet rs = stmt.executeQuery();
             // insert result in ArrayList
             while (rs.next()) {
                 String video_name = rs.getString("video_name");
-                int id = Integer.parseInt(rs.getString("id"));
+                int id = rs.getInt("id");
                 VideoInfo vI = new VideoInfo(id, video_name);
                 videoInfoList.add(vI);
             }
             rs.close();
             stmt.close();
-            this.c.close();
         } catch (NullPointerException | SQLException e) {
             Logger.getGlobal().warning("SELECT SQL command has not been executed successfully: ");
+        } finally {
+            closeConnection();
         }
         return videoInfoList;
     }
@@ -180,16 +207,16 @@ public class DatabaseManager {
     public boolean deleteVideoAndMeta(int videoId) {
         if (!connectDatabase()) return false;
         try {
-            Statement stmt = this.c.createStatement();
-            // sql command
-            String sql = "DELETE from \"video\" where id=" + videoId + ";";
-            stmt.executeUpdate(sql);
+            PreparedStatement stmt = this.c.prepareStatement("DELETE from \"video\" where id=?");
+            stmt.setInt(1, videoId);
+            stmt.executeUpdate();
             stmt.close();
-            this.c.close();
             return true;
         } catch (NullPointerException | SQLException e) {
             Logger.getGlobal().severe("DELETE SQL command has not been executed successfully: " +
                     "There is a problem with the Video, maybe the id of the video: ");
+        } finally {
+            closeConnection();
         }
         return false;
     }
@@ -206,25 +233,26 @@ public class DatabaseManager {
      * @return if the mail address was changed
      */
     public boolean setMail(String newMail) {
+        // mail must not be given to another account, check before borrowing a connection
+        if (isMailExisting(newMail)) {
+            Logger.getGlobal().warning("The mail address you want to update is already stored" +
+                    "in another user account. Please choose another mail address");
+            return false;
+        }
         // connect to database
         if (!connectDatabase()) return false;
         // send sql command and catch possible exeptions
         try {
-            Statement stmt = this.c.createStatement();
-            // if mail is not given to another account, execute sql command
-            if (!isMailExisting(newMail)) {
-                String sql = "UPDATE \"user\" set mail='" + newMail + "' where id=" + account.getId() + ";";
-                stmt.executeUpdate(sql);
-                stmt.close();
-                this.c.close();
-                return true;
-            } else {
-                Logger.getGlobal().warning("The mail address you want to update is already stored" +
-                        "in another user account. Please choose another mail address");
-                this.c.close();
-            }
+            PreparedStatement stmt = this.c.prepareStatement("UPDATE \"user\" set mail=? where id=?");
+            stmt.setString(1, newMail);
+            stmt.setInt(2, account.getId());
+            stmt.executeUpdate();
+            stmt.close();
+            return true;
         } catch (NullPointerException | SQLException e) {
             Logger.getGlobal().warning("Setting the mail in database was not successful");
+        } finally {
+            closeConnection();
         }
         return false;
     }
@@ -240,15 +268,16 @@ public class DatabaseManager {
         if (!connectDatabase()) return false;
         // send sql command and catch possible exeptions
         try {
-            Statement stmt = this.c.createStatement();
-            // sql command
-            String sql = "UPDATE \"user\" set password='" + newPasswordHash + "' where id=" + account.getId() + ";";
-            stmt.executeUpdate(sql);
+            PreparedStatement stmt = this.c.prepareStatement("UPDATE \"user\" set password=? where id=?");
+            stmt.setString(1, newPasswordHash);
+            stmt.setInt(2, account.getId());
+            stmt.executeUpdate();
             stmt.close();
-            this.c.close();
             return true;
         } catch (NullPointerException | SQLException e) {
             Logger.getGlobal().severe("Failed to set new password");
+        } finally {
+            closeConnection();
         }
         return false;
     }
@@ -266,10 +295,9 @@ public class DatabaseManager {
         if (!connectDatabase()) return false;
         // execute sql command and insert result in ArrayList
         try {
-            Statement stmt = this.c.createStatement();
-
-            ResultSet rs = stmt.executeQuery("select \"mail\",\"password\" from \"user\" where id='" +
-                    account.getId() + "'");
+            PreparedStatement stmt = this.c.prepareStatement("select \"mail\",\"password\" from \"user\" where id=?");
+            stmt.setInt(1, account.getId());
+            ResultSet rs = stmt.executeQuery();
             // insert result in ArrayList
             while (rs.next()) {
                 mail = rs.getString("mail");
@@ -277,15 +305,43 @@ public class DatabaseManager {
             }
             rs.close();
             stmt.close();
-            this.c.close();
         } catch (NullPointerException | SQLException e) {
             Logger.getGlobal().severe("Error while authenticating account in database");
+        } finally {
+            closeConnection();
         }
         //return boolean, if password and mail are equal to database data
         return mail.equals(account.getMail()) && passwordHash.equals(account.getPasswordHash());
 
     }
 
+    /**
+     * Fetches id, salt, password hash and verification status of the active account in one query.
+     * The account is looked up by its mail address.
+     *
+     * @return the stored credentials or null if no account with the mail exists.
+     * @throws SQLException in case the database could not be queried.
+     */
+    public AccountCredentials getCredentials() throws SQLException {
+        if (!connectDatabase()) throw new SQLException("No connection to database");
+        try {
+            PreparedStatement stmt = this.c.prepareStatement("select \"id\",\"password_salt\",\"password\"," +
+                    "\"verified\" from \"user\" where \"user\".\"mail\"=?");
+            stmt.setString(1, account.getMail());
+            ResultSet rs = stmt.executeQuery();
+            AccountCredentials credentials = null;
+            if (rs.next()) {
+                credentials = new AccountCredentials(rs.getInt("id"), rs.getString("password_salt"),
+                        rs.getString("password"), rs.getBoolean("verified"));
+            }
+            rs.close();
+            stmt.close();
+            return credentials;
+        } finally {
+            closeConnection();
+        }
+    }
+
     /**
      * Deletes user account.
      *
@@ -294,14 +350,14 @@ public class DatabaseManager {
     public boolean deleteAccount() {
         if (!connectDatabase()) return false;
         try {
-            Statement stmt = this.c.createStatement();
-            // sql command
-            String sql = "delete from \"user\" where \"user\".\"id\"='" + account.getId() + "'";
-            stmt.executeUpdate(sql);
+            PreparedStatement stmt = this.c.prepareStatement("delete from \"user\" where \"user\".\"id\"=?");
+            stmt.setInt(1, account.getId());
+            stmt.executeUpdate();
             stmt.close();
-            this.c.close();
         } catch (NullPointerException | SQLException e) {
             Logger.getGlobal().warning("Error while deleting account in database");
+        } finally {
+            closeConnection();
         }
         return true;
     }
@@ -315,18 +371,20 @@ public class DatabaseManager {
         int accountId = -1;
         if (!connectDatabase()) return -1;
         try {
-            Statement stmt = this.c.createStatement();
-            ResultSet rs = stmt.executeQuery("select \"id\" from \"user\" where \"user\".\"mail\"='" +
-                    account.getMail() + "'");
+            PreparedStatement stmt = this.c.prepareStatement("select \"id\" from \"user\" where \"user\".\"mail\"=?");
+            stmt.setString(1, account.getMail());
+            ResultSet rs = stmt.executeQuery();
             // insert result in ArrayList
             while (rs.next()) {
-                accountId = Integer.parseInt(rs.getString("id"));
+                accountId = rs.getInt("id");
             }
+            rs.close();
             stmt.close();
-            this.c.close();
         } catch (SQLException | NullPointerException e) {
             Logger.getGlobal().warning("Retrieving account id from database failed");
             return -1;
+        } finally {
+            closeConnection();
         }
         return accountId;
     }
@@ -342,20 +400,20 @@ public class DatabaseManager {
         if (!connectDatabase()) return false;
         // send sql command and catch possible exeptions
         try {
-            Statement stmt = this.c.createStatement();
-            // sql command
-            String sql = "insert into \"user\" (mail,password,uuid,verified,password_salt) values ('" + account
-                    .getMail
-                    () +
-                    "','" +
-                    account.getPasswordHash() + "','" + uuid + "', false, '" + salt + "' );";
-            stmt.executeUpdate(sql);
+            PreparedStatement stmt = this.c.prepareStatement(
+                    "insert into \"user\" (mail,password,uuid,verified,password_salt) values (?,?,?,false,?)");
+            stmt.setString(1, account.getMail());
+            stmt.setString(2, account.getPasswordHash());
+            stmt.setString(3, uuid);
+            stmt.setString(4, salt);
+            stmt.executeUpdate();
             stmt.close();
-            this.c.close();
         } catch (NullPointerException | SQLException e) {
             Logger.getGlobal().warning("Account registration has occurred a problem. Check uuid, " +
                     "mail and passwordHash! ");
             return false;
+        } finally {
+            closeConnection();
         }
         return true;
     }
@@ -372,32 +430,28 @@ public class DatabaseManager {
         // get uuid from account
         boolean uuidVerified = false;
         try {
-            Statement stmt = this.c.createStatement();
-
-            ResultSet rs = stmt.executeQuery("select \"verified\" from \"user\" as usr  where usr.uuid='" +
-                    uuid + "'");
+            PreparedStatement stmt = this.c.prepareStatement(
+                    "select \"verified\" from \"user\" as usr where usr.uuid=?");
+            stmt.setString(1, uuid);
+            ResultSet rs = stmt.executeQuery();
             // insert result in ArrayList
-            if (rs != null && rs.next()) {
+            if (rs.next()) {
                 uuidVerified = rs.getBoolean("verified");
             }
-            assert rs != null;
             rs.close();
             stmt.close();
-        } catch (NullPointerException | SQLException e) {
-            Logger.getGlobal().warning("verifyAccount occurred a problem in storing uuid temporarily: ");
-            return "FAILURE";
-        }
-        if (!uuidVerified) {
-            try {
-                Statement stmt = this.c.createStatement();
-                stmt.executeUpdate("update \"user\" set verified=TRUE where uuid='" + uuid + "';");
+            if (!uuidVerified) {
+                stmt = this.c.prepareStatement("update \"user\" set verified=TRUE where uuid=?");
+                stmt.setString(1, uuid);
+                stmt.executeUpdate();
                 stmt.close();
-                this.c.close();
                 return "SUCCESS";
-            } catch (NullPointerException | SQLException e) {
-                Logger.getGlobal().severe("A problem occured while updating verification status ");
-                return "FAILURE";
             }
+        } catch (NullPointerException | SQLException e) {
+            Logger.getGlobal().warning("Verifying the account in database was not successful");
+            return "FAILURE";
+        } finally {
+            closeConnection();
         }
         return "ALREADY VERIFIED";
     }
@@ -412,19 +466,19 @@ public class DatabaseManager {
         if (!connectDatabase()) return false;
         boolean verified = false;
         try {
-            Statement stmt = this.c.createStatement();
-
-            ResultSet rs = stmt.executeQuery("select \"verified\" from \"user\" where id=" +
-                    account.getId() + ";");
+            PreparedStatement stmt = this.c.prepareStatement("select \"verified\" from \"user\" where id=?");
+            stmt.setInt(1, account.getId());
+            ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
                 verified = rs.getBoolean("verified");
             }
             rs.close();
             stmt.close();
-            this.c.close();
         } catch (NullPointerException | SQLException e) {
             Logger.getGlobal().warning("Checking verification status wasn't successful"
                     + e);
+        } finally {
+            closeConnection();
         }
         return verified;
     }
@@ -441,19 +495,19 @@ public class DatabaseManager {
         if (!connectDatabase()) return -1;
         int id = -1;
         try {
-            Statement stmt = this.c.createStatement();
-
-            ResultSet rs = stmt.executeQuery("select id from \"video\" where \"video_name\"='" +
-                    videoName + "'");
+            PreparedStatement stmt = this.c.prepareStatement("select id from \"video\" where \"video_name\"=?");
+            stmt.setString(1, videoName);
+            ResultSet rs = stmt.executeQuery();
             // insert result in ArrayList
             while (rs.next()) {
-                id = Integer.parseInt(rs.getString("id"));
+                id = rs.getInt("id");
             }
             rs.close();
             stmt.close();
-            this.c.close();
         } catch (NullPointerException | SQLException e) {
             Logger.getGlobal().warning("Retrieving vide id from database failed.");
+        } finally {
+            closeConnection();
         }
         return id;
     }
@@ -469,27 +523,24 @@ public class DatabaseManager {
         if (!connectDatabase())
             return null;
 
+        String metaName = null;
         try {
-            Statement stmt = this.c.createStatement();
-
-            ResultSet rs = stmt.executeQuery("select \"meta_name\" from \"video\" as vid where vid.id=" +
-                    videoId + ";");
+            PreparedStatement stmt = this.c.prepareStatement(
+                    "select \"meta_name\" from \"video\" as vid where vid.id=?");
+            stmt.setInt(1, videoId);
+            ResultSet rs = stmt.executeQuery();
             // insert result in ArrayList
             if (rs.next()) {
-                return rs.getString("meta_name");
+                metaName = rs.getString("meta_name");
             }
             rs.close();
             stmt.close();
-            this.c.close();
         } catch (NullPointerException | SQLException e) {
             Logger.getGlobal().severe("Retrieving metadata from database failed");
+        } finally {
+            closeConnection();
         }
-        try {
-            this.c.close();
-        } catch (SQLException e) {
-            Logger.getGlobal().warning("connection to database not closed!");
-        }
-        return null;
+        return metaName;
     }
 
     /**
@@ -503,19 +554,20 @@ public class DatabaseManager {
         if (!connectDatabase()) return null;
         String salt = null;
         try {
-            Statement stmt = this.c.createStatement();
-
-            ResultSet rs = stmt.executeQuery("select \"password_salt\" from \"user\" where \"user\".\"id\"=" +
-                    account.getId() + ";");
+            PreparedStatement stmt = this.c.prepareStatement(
+                    "select \"password_salt\" from \"user\" where \"user\".\"id\"=?");
+            stmt.setInt(1, account.getId());
+            ResultSet rs = stmt.executeQuery();
             // insert result in ArrayList
             if (rs.next()) {
                 salt = rs.getString("password_salt");
             }
             rs.close();
             stmt.close();
-            this.c.close();
         } catch (NullPointerException | SQLException e) {
             Logger.getGlobal().severe("Retrieving metadata from database failed");
+        } finally {
+            closeConnection();
         }
         return salt;
     }
@@ -531,18 +583,19 @@ public class DatabaseManager {
         if (!connectDatabase()) return false;
         int count_mail = 0;
         try {
-            Statement stmt = this.c.createStatement();
-
-            ResultSet rs = stmt.executeQuery("select count(mail) from \"user\" where mail='" + mail + "';");
+            PreparedStatement stmt = this.c.prepareStatement("select count(mail) from \"user\" where mail=?");
+            stmt.setString(1, mail);
+            ResultSet rs = stmt.executeQuery();
             // insert result in ArrayList
             if (rs.next()) {
                 count_mail = rs.getInt("count");
             }
             rs.close();
             stmt.close();
-            this.c.close();
         } catch (NullPointerException | SQLException e) {
             Logger.getGlobal().warning("Checking for mail existence in database failed");
+        } finally {
+            closeConnection();
         }
         return count_mail != 0;
     }
@@ -1,6 +1,7 @@
 package edu.kit.informatik.pcc.service.manager;
 
 import edu.kit.informatik.pcc.service.data.Account;
+import edu.kit.informatik.pcc.service.data.AccountCredentials;
 import edu.kit.informatik.pcc.service.data.DatabaseManager;
 import edu.kit.informatik.pcc.service.data.VideoInfo;
 import org.apache.commons.validator.routines.EmailValidator;
@@ -8,6 +9,7 @@ import org.apache.commons.validator.routines.EmailValidator;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.SecureRandom;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.logging.Logger;
@@ -66,6 +68,8 @@ public class AccountManager {
         Account newAccount = new Account(newAccountData);
         if (!newAccount.hashPassword(getSalt()))
             return FAILURE;
+        // sessions must not outlive the old account data
+        SessionManager.getInstance().invalidate(account.getId());
         String status = "NOTHING CHANGED";
         if (!newAccount.getMail().equals(account.getMail())) {
             if (!databaseManager.setMail(newAccount.getMail())) {
@@ -122,6 +126,7 @@ public class AccountManager {
      * @return Returns status of the account deletion.
      */
     public String deleteAccount(VideoManager videoManager) {
+        SessionManager.getInstance().invalidate(account.getId());
         ArrayList<VideoInfo> videoInfoList = databaseManager.getVideoInfoList();
         if (videoInfoList != null) {
             for (VideoInfo videoInfo : videoInfoList) {
@@ -144,6 +149,35 @@ public class AccountManager {
         return databaseManager.authenticate();
     }
 
+    /**
+     * Authenticates the active account with a single database query. Looks up the account by
+     * its mail, sets its id, hashes the password with the stored salt and compares the hashes.
+     *
+     * @return Returns the status of the account, FAILURE if the database could not be queried.
+     */
+    public AccountStatus authenticateAccount() {
+        AccountCredentials credentials;
+        try {
+            credentials = databaseManager.getCredentials();
+        } catch (SQLException e) {
+            Logger.getGlobal().warning("Retrieving account credentials from database failed: " + e.getMessage());
+            return AccountStatus.FAILURE;
+        }
+        if (credentials == null)
+            return AccountStatus.NOT_EXISTING;
+
+        account.setId(credentials.getId());
+
+        byte[] salt = decodeSalt(credentials.getSalt());
+        if (salt == null || !account.hashPassword(salt))
+            return AccountStatus.FAILURE;
+
+        if (!account.getPasswordHash().equals(credentials.getPasswordHash()))
+            return AccountStatus.WRONG_PASSWORD;
+
+        return credentials.isVerified() ? AccountStatus.SUCCESS : AccountStatus.NOT_VERIFIED;
+    }
+
     /**
      * Verifies an account by comparing the uuid to the stored one.
      *
@@ -174,7 +208,16 @@ public class AccountManager {
      * @return salt from database returned as byte[]
      */
     public byte[] getSalt() {
-        String saltString = databaseManager.getSalt();
+        return decodeSalt(databaseManager.getSalt());
+    }
+
+    /**
+     * Decodes a salt stored as Base64 string.
+     *
+     * @param saltString encoded salt
+     * @return salt as byte[] or null if it could not be decoded
+     */
+    private byte[] decodeSalt(String saltString) {
         if (saltString == null) {
             return null;
         }
@@ -0,0 +1,29 @@
+package edu.kit.informatik.pcc.service.manager;
+
+/**
+ * Result of authenticating an account.
+ *
+ * @author Fabian Wenzel
+ */
+public enum AccountStatus {
+    /**
+     * Account exists, password matches and account is verified.
+     */
+    SUCCESS,
+    /**
+     * Account exists and password matches but account is not verified yet.
+     */
+    NOT_VERIFIED,
+    /**
+     * Account exists but the password doesn't match.
+     */
+    WRONG_PASSWORD,
+    /**
+     * No account registered for the mail address.
+     */
+    NOT_EXISTING,
+    /**
+     * Credentials could not be retrieved from the database or could not be processed.
+     */
+    FAILURE
+}
@@ -0,0 +1,166 @@
+package edu.kit.informatik.pcc.service.manager;
+
+import edu.kit.informatik.pcc.service.data.Account;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SessionManager hands out short-lived session tokens for authenticated accounts.
+ * Requests carrying a valid token get their account resolved from memory so they don't have
+ * to send the password again and skip hashing and database lookups.
+ * <p>
+ * Sessions expire after a fixed time and the amount of stored sessions is bounded,
+ * the least recently used sessions get dropped first.
+ * </p>
+ *
+ * @author Fabian Wenzel
+ */
+public class SessionManager {
+
+    /**
+     * Time a session is valid after its creation.
+     */
+    private static final long SESSION_TTL = TimeUnit.SECONDS.toMillis(
+            Long.getLong("pcc.session.ttlSeconds", 900L));
+    /**
+     * Maximum amount of sessions kept in memory.
+     */
+    private static final int MAX_SESSIONS = Integer.getInteger("pcc.session.maxSessions", 10000);
+    /**
+     * Amount of random bytes of a token.
+     */
+    private static final int TOKEN_LENGTH = 32;
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Instance of the SessionManager used for Singleton behaviour.
+     */
+    private static SessionManager instance;
+
+    /**
+     * Sessions by token in access order.
+     */
+    private final LinkedHashMap<String, Session> sessions;
+    /**
+     * Generator for the session tokens.
+     */
+    private final SecureRandom random;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Sets up the bounded session store.
+     */
+    private SessionManager() {
+        random = new SecureRandom();
+        sessions = new LinkedHashMap<String, Session>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                return size() > MAX_SESSIONS;
+            }
+        };
+    }
+
+    /**
+     * Gets the singleton instance of the SessionManager.
+     *
+     * @return Returns the singleton instance.
+     */
+    public static synchronized SessionManager getInstance() {
+        return (instance == null) ? instance = new SessionManager() : instance;
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    /**
+     * Creates a new session for an authenticated account.
+     *
+     * @param account Authenticated and verified account.
+     * @return Returns the opaque token identifying the session.
+     */
+    public String createSession(Account account) {
+        byte[] bytes = new byte[TOKEN_LENGTH];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        synchronized (sessions) {
+            sessions.put(token, new Session(account, System.currentTimeMillis() + SESSION_TTL));
+        }
+        return token;
+    }
+
+    /**
+     * Resolves the account of a session.
+     *
+     * @param token Token of the session.
+     * @return Returns the account of the session or null if the session is unknown or expired.
+     */
+    public Account getAccount(String token) {
+        if (token == null)
+            return null;
+
+        synchronized (sessions) {
+            Session session = sessions.get(token);
+            if (session == null)
+                return null;
+
+            if (session.expiry < System.currentTimeMillis()) {
+                sessions.remove(token);
+                return null;
+            }
+            return session.account;
+        }
+    }
+
+    /**
+     * Ends all sessions of an account. Has to be called whenever the account
+     * gets changed or deleted.
+     *
+     * @param accountId Unique id of the account.
+     */
+    public void invalidate(int accountId) {
+        synchronized (sessions) {
+            Iterator<Session> iterator = sessions.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().account.getId() == accountId) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /* #############################################################################################
+     *                                  getter/setter
+     * ###########################################################################################*/
+
+    public int getSessionCount() {
+        synchronized (sessions) {
+            return sessions.size();
+        }
+    }
+
+    /**
+     * Authenticated account together with the time its session ends.
+     */
+    private static class Session {
+        private final Account account;
+        private final long expiry;
+
+        Session(Account account, long expiry) {
+            this.account = account;
+            this.expiry = expiry;
+        }
+    }
+}
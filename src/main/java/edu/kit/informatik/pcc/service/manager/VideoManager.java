@@ -2,6 +2,7 @@ package edu.kit.informatik.pcc.service.manager;
 
 import edu.kit.informatik.pcc.service.data.*;
 import edu.kit.informatik.pcc.service.videoprocessing.VideoProcessingManager;
+import edu.kit.informatik.pcc.service.videoprocessing.chain.decryption.EncryptionFormat;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -84,12 +85,13 @@ public class VideoManager {
      * @param metadata              inputstream of metadata file to upload
      * @param encryptedSymmetricKey inputstream of key file to upload
      * @param videoName             name of the uploaded video without extension
+     * @param format                format video and metadata are encrypted in
      * @param response              asynchronous response used to give response to the client
      */
     public void upload(InputStream video, InputStream metadata, InputStream encryptedSymmetricKey,
-                         String videoName, AsyncResponse response) {
+                         String videoName, EncryptionFormat format, AsyncResponse response) {
         VideoProcessingManager videoProcessingManager = VideoProcessingManager.getInstance();
-        videoProcessingManager.addTask(video, metadata, encryptedSymmetricKey, account, videoName, response);
+        videoProcessingManager.addTask(video, metadata, encryptedSymmetricKey, account, videoName, format, response);
     }
 
     /**
@@ -99,15 +101,12 @@ public class VideoManager {
      * @return Returns an InputStream for the download.
      */
     public InputStream download(int videoId) {
-        VideoInfo videoInfo = databaseManager.getVideoInfo(videoId);
+        File video = getVideoFile(videoId);
 
-        if (videoInfo == null) {
+        if (video == null) {
             return null;
         }
 
-        File video = new File(LocationConfig.ANONYM_VID_DIR + File.separator + account.getId() + "_" +
-                videoInfo.getName() + VideoInfo.FILE_EXTENTION);
-
         InputStream inputStream;
         try {
             inputStream = new FileInputStream(video.getPath());
@@ -118,6 +117,29 @@ public class VideoManager {
         return inputStream;
     }
 
+    /**
+     * Fetches a video from the database and provides its anonymized video file.
+     *
+     * @param videoId Unique video identifier of the video to download.
+     * @return Returns the video file or null if the video or its file doesn't exist.
+     */
+    public File getVideoFile(int videoId) {
+        VideoInfo videoInfo = databaseManager.getVideoInfo(videoId);
+
+        if (videoInfo == null) {
+            return null;
+        }
+
+        File video = new File(LocationConfig.ANONYM_VID_DIR + File.separator + account.getId() + "_" +
+                videoInfo.getName() + VideoInfo.FILE_EXTENTION);
+
+        if (!video.isFile()) {
+            Logger.getGlobal().warning("An error has occurred finding file " + video.getPath());
+            return null;
+        }
+        return video;
+    }
+
     /**
      * Deletes a video and the respective metadata file from the server.
      *
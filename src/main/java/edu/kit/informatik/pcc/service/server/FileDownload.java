@@ -0,0 +1,282 @@
+package edu.kit.informatik.pcc.service.server;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.logging.Logger;
+
+/**
+ * Creates download responses for files stored on the server.
+ * Files are read from their file channel at the requested position and copied to the response in
+ * large chunks. The response is only available as output stream, so the copy can't be avoided by
+ * transferring between channels. Supports single byte ranges (206 Partial Content)
+ * so clients can resume and seek, and ETag/Last-Modified validators so repeated downloads
+ * can be answered with 304 Not Modified. Downloads belong to a single account, so responses may only be
+ * cached by the client and vary by the session token.
+ *
+ * @author Fabian Wenzel
+ */
+public class FileDownload {
+
+    // header strings
+    private static final String ACCEPT_RANGES = "Accept-Ranges";
+    private static final String CONTENT_RANGE = "Content-Range";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String IF_RANGE = "If-Range";
+    private static final String RANGE = "Range";
+    private static final String BYTES = "bytes";
+    private static final String SESSION_TOKEN = "Session-Token";
+
+    /**
+     * Size of the buffer the file is copied through.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * File to download.
+     */
+    private final File file;
+    /**
+     * Media type of the file.
+     */
+    private final String mediaType;
+    /**
+     * Strong entity tag of the file's current version.
+     */
+    private final String eTag;
+    /**
+     * Last modification of the file in milliseconds, truncated to seconds as in http dates.
+     */
+    private final long lastModified;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Creates a new download for the given file.
+     *
+     * @param file      File to download.
+     * @param mediaType Media type of the file.
+     */
+    public FileDownload(File file, String mediaType) {
+        this.file = file;
+        this.mediaType = mediaType;
+        this.lastModified = file.lastModified() / 1000 * 1000;
+        this.eTag = "\"" + Long.toHexString(file.length()) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    /**
+     * Creates the response for a download request. Answers with 304 if the client's
+     * cached version is still valid, with 206 if a satisfiable range was requested,
+     * with 416 if the range is not satisfiable and with the whole file otherwise.
+     *
+     * @param headers Headers of the request.
+     * @return Returns the response streaming the file or the requested part of it.
+     */
+    public Response createResponse(HttpHeaders headers) {
+        long length = file.length();
+        Date lastModifiedDate = new Date(lastModified);
+
+        if (isNotModified(headers)) {
+            return cacheForClientOnly(Response.notModified())
+                    .header(HttpHeaders.ETAG, eTag).lastModified(lastModifiedDate).build();
+        }
+
+        Response.ResponseBuilder response = cacheForClientOnly(Response.ok())
+                .header(ACCEPT_RANGES, BYTES)
+                .header(HttpHeaders.ETAG, eTag)
+                .lastModified(lastModifiedDate);
+
+        long[] range = isRangeValid(headers) ? parseRange(headers.getHeaderString(RANGE), length) : null;
+        if (range == null) {
+            return response.header(HttpHeaders.CONTENT_LENGTH, length)
+                    .type(mediaType).entity(new FileOutput(file, 0, length)).build();
+        }
+        if (range.length == 0) {
+            return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(CONTENT_RANGE, BYTES + " */" + length).build();
+        }
+
+        long count = range[1] - range[0] + 1;
+        return response.status(Response.Status.PARTIAL_CONTENT)
+                .header(CONTENT_RANGE, BYTES + " " + range[0] + "-" + range[1] + "/" + length)
+                .header(HttpHeaders.CONTENT_LENGTH, count)
+                .type(mediaType).entity(new FileOutput(file, range[0], count)).build();
+    }
+
+    /**
+     * Forbids shared caches to store the response, as they can't tell the accounts of the requests apart.
+     */
+    private static Response.ResponseBuilder cacheForClientOnly(Response.ResponseBuilder response) {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setPrivate(true);
+        return response.cacheControl(cacheControl).header(HttpHeaders.VARY, SESSION_TOKEN);
+    }
+
+    /**
+     * Parses a range header. Only single byte ranges are supported,
+     * multiple ranges are ignored and the whole file is sent.
+     *
+     * @param rangeHeader Value of the range header, may be null.
+     * @param length      Length of the file.
+     * @return Returns the first and last byte of the range, an empty array if the range
+     * is not satisfiable or null if the whole file should be sent.
+     */
+    static long[] parseRange(String rangeHeader, long length) {
+        if (rangeHeader == null || !rangeHeader.startsWith(BYTES + "=") || rangeHeader.contains(",")) {
+            return null;
+        }
+
+        String spec = rangeHeader.substring(BYTES.length() + 1).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+
+        long first;
+        long last;
+        try {
+            if (dash == 0) {
+                // suffix range, last n bytes
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix == 0) {
+                    return new long[0];
+                }
+                first = Math.max(0, length - suffix);
+                last = length - 1;
+            } else {
+                first = Long.parseLong(spec.substring(0, dash));
+                last = (dash == spec.length() - 1) ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                if (last < first) {
+                    // syntactically invalid ranges are ignored
+                    return null;
+                }
+                last = Math.min(last, length - 1);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        if (first >= length) {
+            return new long[0];
+        }
+        return new long[]{first, last};
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    /**
+     * Checks whether the client's cached version matches the file. If-None-Match takes
+     * precedence over If-Modified-Since.
+     */
+    private boolean isNotModified(HttpHeaders headers) {
+        String ifNoneMatch = headers.getHeaderString(IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.equals("*") || tag.equals(eTag) || tag.equals("W/" + eTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Date ifModifiedSince = parseDate(headers.getHeaderString(HttpHeaders.IF_MODIFIED_SINCE));
+        return ifModifiedSince != null && lastModified <= ifModifiedSince.getTime();
+    }
+
+    /**
+     * Checks whether a range may be sent. If-Range demands the whole file
+     * if the client's version doesn't match anymore.
+     */
+    private boolean isRangeValid(HttpHeaders headers) {
+        String ifRange = headers.getHeaderString(IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.trim().startsWith("\"")) {
+            return ifRange.trim().equals(eTag);
+        }
+        Date date = parseDate(ifRange);
+        return date != null && date.getTime() == lastModified;
+    }
+
+    private static Date parseDate(String date) {
+        if (date == null) {
+            return null;
+        }
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return format.parse(date.trim());
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /* #############################################################################################
+     *                                  getter/setter
+     * ###########################################################################################*/
+
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Writes a part of a file to the response by reading it from the file channel in chunks.
+     */
+    private static class FileOutput implements StreamingOutput {
+        private final File file;
+        private final long position;
+        private final long count;
+
+        FileOutput(File file, long position, long count) {
+            this.file = file;
+            this.position = position;
+            this.count = count;
+        }
+
+        @Override
+        public void write(OutputStream output) throws IOException, WebApplicationException {
+            try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(count, 1)));
+                long transferred = 0;
+                while (transferred < count) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), count - transferred));
+                    int read = fileChannel.read(buffer, position + transferred);
+                    if (read <= 0) {
+                        Logger.getGlobal().warning("File " + file.getName() + " ended before the download did");
+                        break;
+                    }
+                    output.write(buffer.array(), 0, read);
+                    transferred += read;
+                }
+            }
+        }
+    }
+}
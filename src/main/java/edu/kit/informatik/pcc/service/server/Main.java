@@ -1,16 +1,32 @@
 package edu.kit.informatik.pcc.service.server;
 
+import edu.kit.informatik.pcc.service.data.ConnectionPool;
 import edu.kit.informatik.pcc.service.data.LocationConfig;
 import edu.kit.informatik.pcc.service.videoprocessing.VideoProcessingManager;
+import edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization.ClassifierPool;
+import edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization.DetectionSettings;
+import edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization.PythonWorkerPool;
+import edu.kit.informatik.pcc.service.videoprocessing.chain.decryption.PrivateKeyStore;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.jmx.MBeanContainer;
+import org.eclipse.jetty.server.AbstractConnector;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.glassfish.jersey.media.multipart.MultiPartFeature;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.servlet.ServletContainer;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.logging.*;
 
 /**
@@ -23,7 +39,6 @@ import java.util.logging.*;
 public class Main {
 
     // constants
-    private static final int PORT = 2222;
     private static final String REQUEST_LOCATION = "edu.kit.informatik.pcc.service.server";
 
     /* #############################################################################################
@@ -34,6 +49,14 @@ public class Main {
      * Server instance used for http access.
      */
     private static Server server;
+    /**
+     * Request statistics of the server, null if statistics are disabled.
+     */
+    private static StatisticsHandler statisticsHandler;
+    /**
+     * Pool of database connections shared by all requests.
+     */
+    private static ConnectionPool connectionPool;
 
     /* #############################################################################################
      *                                  methods
@@ -49,7 +72,8 @@ public class Main {
     }
 
     /**
-     * Stops the server if it is still running. Also shuts down the video processing chain.
+     * Stops the server if it is still running. Also shuts down the video processing chain,
+     * finishes pending requests and closes all database connections.
      */
     public static void stopServer() {
 
@@ -60,8 +84,15 @@ public class Main {
 
         Logger.getGlobal().info("Stopping Server");
 
+        // stop accepting requests and finish pending ones, so no upload hands over work afterwards
+        RequestExecutor.getInstance().shutdown();
+
         // shutdown video processing
         VideoProcessingManager.getInstance().shutdown();
+        ClassifierPool.shutdownIfStarted();
+        PythonWorkerPool.shutdownIfStarted();
+
+        Logger.getGlobal().info(getStatistics());
 
         try {
             // shutdown server
@@ -70,12 +101,56 @@ public class Main {
             Logger.getGlobal().warning("Stopping the server failed.");
         }
 
+        // close database connections
+        if (connectionPool != null) {
+            connectionPool.shutdown();
+            connectionPool = null;
+        }
+
         // finish log
         for (Handler handler : Logger.getGlobal().getHandlers()) {
             handler.close();
         }
     }
 
+    /**
+     * Creates a human readable summary of the server's thread pool, connector and request statistics.
+     *
+     * @return Returns the server statistics as string.
+     */
+    public static String getStatistics() {
+        if (server == null) {
+            return "Server not started";
+        }
+
+        StringBuilder builder = new StringBuilder();
+        if (server.getThreadPool() instanceof QueuedThreadPool) {
+            QueuedThreadPool threadPool = (QueuedThreadPool) server.getThreadPool();
+            builder.append(String.format("Thread pool: threads=%d, idle=%d, busy=%d, max=%d, queued=%d%n",
+                    threadPool.getThreads(), threadPool.getIdleThreads(), threadPool.getBusyThreads(),
+                    threadPool.getMaxThreads(), threadPool.getQueueSize()));
+        }
+        for (Connector connector : server.getConnectors()) {
+            ConnectionStatistics connectionStatistics = (connector instanceof AbstractConnector)
+                    ? ((AbstractConnector) connector).getBean(ConnectionStatistics.class) : null;
+            if (connectionStatistics != null) {
+                builder.append(String.format("Connector %s: open=%d, maxOpen=%d, total=%d, "
+                                + "bytesIn=%d, bytesOut=%d%n", connector.getName(),
+                        connectionStatistics.getConnections(), connectionStatistics.getConnectionsMax(),
+                        connectionStatistics.getConnectionsTotal(), connectionStatistics.getReceivedBytes(),
+                        connectionStatistics.getSentBytes()));
+            }
+        }
+        if (statisticsHandler != null) {
+            builder.append(String.format("Requests: total=%d, active=%d, maxActive=%d, "
+                            + "meanTime=%.2fms, maxTime=%dms, 5xx=%d",
+                    statisticsHandler.getRequests(), statisticsHandler.getRequestsActive(),
+                    statisticsHandler.getRequestsActiveMax(), statisticsHandler.getRequestTimeMean(),
+                    statisticsHandler.getRequestTimeMax(), statisticsHandler.getResponses5xx()));
+        }
+        return builder.toString().trim();
+    }
+
     /* #############################################################################################
      *                                  helper methods
      * ###########################################################################################*/
@@ -88,8 +163,18 @@ public class Main {
      */
     private static boolean startServer() {
 
-        if (!setupDirectories() || !setupLogger()) {
+        if (!setupDirectories() || !setupLogger() || !setupKeys() || !setupClassifiers() || !setupDatabase()) {
             System.out.println("Setup failed");
+            shutdownSetup();
+            return false;
+        }
+
+        ServerConfig serverConfig;
+        try {
+            serverConfig = ServerConfig.load();
+        } catch (IOException | NumberFormatException e) {
+            Logger.getGlobal().severe("Loading the server config failed: " + e.getMessage());
+            shutdownSetup();
             return false;
         }
 
@@ -97,17 +182,35 @@ public class Main {
         ResourceConfig config = new ResourceConfig();
         config.packages(REQUEST_LOCATION); //where to search for rest requests
         config.register(MultiPartFeature.class); //register feature for file upload (multipartfeature)
+        config.register(UploadLimitFilter.class); //reject oversized uploads before they get parsed
         ServletHolder servlet = new ServletHolder(new ServletContainer(config)); // add the config to the servletholder
 
-        server = new Server(PORT);
-        ServletContextHandler context = new ServletContextHandler(server, "/");
+        try {
+            server = createServer(serverConfig);
+        } catch (RuntimeException e) {
+            Logger.getGlobal().severe("Creating the server failed: " + e.getMessage());
+            shutdownSetup();
+            return false;
+        }
+        ServletContextHandler context = new ServletContextHandler();
+        context.setContextPath("/");
         context.addServlet(servlet, "/*");
 
+        if (serverConfig.isStatistics()) {
+            statisticsHandler = new StatisticsHandler();
+            statisticsHandler.setHandler(context);
+            server.setHandler(statisticsHandler);
+        } else {
+            server.setHandler(context);
+        }
+
         if (server.isStarted()) {
             Logger.getGlobal().info("Server already started");
             return true;
         }
 
+        RequestExecutor.start();
+        PythonWorkerPool.start();
         try {
             server.start();
             server.join();
@@ -122,6 +225,60 @@ public class Main {
         return true;
     }
 
+    /**
+     * Shuts down the classifiers and database connections set up before the server failed to start,
+     * so they don't keep the process running.
+     */
+    private static void shutdownSetup() {
+        ClassifierPool.shutdownIfStarted();
+        if (connectionPool != null) {
+            connectionPool.shutdown();
+            connectionPool = null;
+        }
+    }
+
+    /**
+     * Creates the server with its thread pool and connector set up as given in the config.
+     * HTTP/1.1 is always offered, HTTP/2 cleartext (h2c) only if it's enabled.
+     *
+     * @param serverConfig Settings of the server.
+     * @return Returns the created server.
+     */
+    private static Server createServer(ServerConfig serverConfig) {
+        QueuedThreadPool threadPool = new QueuedThreadPool(serverConfig.getMaxThreads(),
+                serverConfig.getMinThreads(), serverConfig.getThreadIdleTimeout());
+        threadPool.setName("pcc-server");
+        Server server = new Server(threadPool);
+
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        httpConfig.setRequestHeaderSize(serverConfig.getRequestHeaderSize());
+        httpConfig.setResponseHeaderSize(serverConfig.getResponseHeaderSize());
+        httpConfig.setOutputBufferSize(serverConfig.getOutputBufferSize());
+        httpConfig.setSendServerVersion(false);
+
+        ServerConnector connector = (serverConfig.isHttp2c())
+                ? new ServerConnector(server, serverConfig.getAcceptors(), serverConfig.getSelectors(),
+                new HttpConnectionFactory(httpConfig), new HTTP2CServerConnectionFactory(httpConfig))
+                : new ServerConnector(server, serverConfig.getAcceptors(), serverConfig.getSelectors(),
+                new HttpConnectionFactory(httpConfig));
+        connector.setName("http");
+        connector.setPort(serverConfig.getPort());
+        connector.setIdleTimeout(serverConfig.getIdleTimeout());
+        server.addConnector(connector);
+
+        if (serverConfig.isStatistics()) {
+            connector.addBean(new ConnectionStatistics());
+            server.addBean(new MBeanContainer(ManagementFactory.getPlatformMBeanServer()));
+        }
+
+        Logger.getGlobal().info(String.format("Server config: port=%d, threads=%d-%d, acceptors=%d, "
+                        + "selectors=%d, idleTimeout=%dms, h2c=%b", serverConfig.getPort(),
+                serverConfig.getMinThreads(), serverConfig.getMaxThreads(), connector.getAcceptors(),
+                connector.getSelectorManager().getSelectorCount(), serverConfig.getIdleTimeout(),
+                serverConfig.isHttp2c()));
+        return server;
+    }
+
     /**
      * Sets up the logger so that there is one handling writing error logs and one
      * handler writing the full log.
@@ -151,6 +308,62 @@ public class Main {
         return true;
     }
 
+    /**
+     * Loads the private key used to decrypt the uploaded keys, so the first upload
+     * doesn't have to load it and a missing key is noticed right at the start.
+     *
+     * @return Returns whether loading the private key was successful or not.
+     */
+    private static boolean setupKeys() {
+        try {
+            PrivateKeyStore.getInstance();
+        } catch (IllegalStateException e) {
+            Logger.getGlobal().severe("Private key could not be loaded!");
+            return false;
+        }
+        Logger.getGlobal().info("Private key loaded");
+        return true;
+    }
+
+    /**
+     * Checks the detection settings and loads the face classifiers used for anonymization,
+     * so video jobs don't have to parse the cascade.
+     *
+     * @return Returns whether the settings are valid and loading the classifiers was successful or not.
+     */
+    private static boolean setupClassifiers() {
+        try {
+            DetectionSettings.getDefault();
+        } catch (IllegalArgumentException e) {
+            Logger.getGlobal().severe("Invalid detection settings: " + e.getMessage());
+            return false;
+        }
+        try {
+            ClassifierPool.start();
+        } catch (IllegalStateException e) {
+            Logger.getGlobal().severe("Classifiers could not be loaded!");
+            return false;
+        }
+        Logger.getGlobal().info("Classifiers loaded");
+        return true;
+    }
+
+    /**
+     * Starts the pool of database connections shared by all requests.
+     *
+     * @return Returns whether connecting to the database was successful or not.
+     */
+    private static boolean setupDatabase() {
+        try {
+            connectionPool = ConnectionPool.start();
+        } catch (RuntimeException e) {
+            Logger.getGlobal().severe("No connection to database!");
+            return false;
+        }
+        Logger.getGlobal().info("Connection pool setup");
+        return true;
+    }
+
     /**
      * Creates all necessary directions as long as they were not existing before.
      * Also empties the tmp folder.
@@ -0,0 +1,166 @@
+package edu.kit.informatik.pcc.service.server;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+
+/**
+ * Executor that processes the requests taken by the ServerProxy.
+ * Requests get suspended on the jetty thread and are worked off here, so slow database or
+ * file access doesn't block jetty's threads. If the queue is full the request gets answered
+ * with 503 (Service Unavailable) and a Retry-After header. Requests whose task fails unexpectedly
+ * get answered with 500 (Internal Server Error), so no client waits for a response that never comes.
+ * After shutdown the instance is kept, so requests arriving until the server stopped get 503 as well.
+ *
+ * @author Fabian Wenzel
+ */
+public class RequestExecutor {
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Size of the thread pool used.
+     */
+    private final static int POOL_SIZE = Integer.getInteger("pcc.request.poolSize", 16);
+    /**
+     * Maximum amount of waiting requests.
+     */
+    private final static int QUEUE_SIZE = Integer.getInteger("pcc.request.queueSize", 100);
+    /**
+     * Seconds a client should wait before retrying a rejected request.
+     */
+    private final static int RETRY_AFTER = Integer.getInteger("pcc.request.retryAfterSeconds", 5);
+    /**
+     * Instance of the RequestExecutor used for Singleton behaviour.
+     */
+    private static RequestExecutor instance;
+
+    /**
+     * Executor that controls the execution of the requests.
+     */
+    private ThreadPoolExecutor executor;
+    /**
+     * Whether the executor got shut down.
+     */
+    private volatile boolean closed;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Sets up the bounded queue and the executor.
+     */
+    private RequestExecutor() {
+        executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Gets the singleton instance of the RequestExecutor.
+     *
+     * @return Returns the singleton instance.
+     */
+    public static synchronized RequestExecutor getInstance() {
+        return (instance == null) ? instance = new RequestExecutor() : instance;
+    }
+
+    /**
+     * Starts processing requests, replacing an executor that got shut down.
+     *
+     * @return Returns the running instance.
+     */
+    public static synchronized RequestExecutor start() {
+        if (instance == null || instance.closed) {
+            instance = new RequestExecutor();
+        }
+        return instance;
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    /**
+     * Processes a request asynchronously and resumes the response with the result of the task.
+     *
+     * @param response Suspended response of the request.
+     * @param task     Work of the request, returns the response entity.
+     */
+    public void submit(final AsyncResponse response, final Callable<?> task) {
+        execute(response, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    response.resume(task.call());
+                } catch (Exception e) {
+                    Logger.getGlobal().warning("Processing request failed");
+                    response.resume(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Processes a request asynchronously. The task itself is responsible for resuming the response.
+     *
+     * @param response Suspended response of the request, only used if the request gets rejected
+     *                 or the task fails.
+     * @param task     Work of the request.
+     */
+    public void execute(final AsyncResponse response, final Runnable task) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } catch (RuntimeException | Error e) {
+                        Logger.getGlobal().warning("Processing request failed: " + e);
+                        // does nothing if the task resumed the response already
+                        response.resume(Response.status(Response.Status.INTERNAL_SERVER_ERROR).build());
+                        if (e instanceof Error) {
+                            throw e;
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Logger.getGlobal().warning("Rejected request. "
+                    + (executor.isShutdown() ? "Request processing is shut down." : "Queue is full."));
+            response.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER).build());
+        }
+    }
+
+    /**
+     * Shuts down the executor. Waits 10 Seconds for termination of due requests.
+     * Requests submitted afterwards get rejected with 503.
+     */
+    public void shutdown() {
+        closed = true;
+        try {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Logger.getGlobal().info("Got interrupted while waiting for shutdown");
+        }
+        Logger.getGlobal().info("Request executor stopped");
+    }
+
+    /* #############################################################################################
+     *                                  getter/setter
+     * ###########################################################################################*/
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+}
@@ -0,0 +1,209 @@
+package edu.kit.informatik.pcc.service.server;
+
+import edu.kit.informatik.pcc.service.data.LocationConfig;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Config class that holds all settings of the http server.
+ * The settings are read from a properties file (<b>server.properties</b> in the project directory
+ * or the file given by <b>-Dpcc.server.config</b>). System properties with the same keys
+ * override the values of the file, e.g. <b>-Dpcc.server.maxThreads=400</b>.
+ * Settings that are not given keep their default values.
+ *
+ * @author Josh Romanowski
+ */
+public class ServerConfig {
+
+    // keys
+    public static final String CONFIG_FILE = "pcc.server.config";
+    public static final String PORT = "pcc.server.port";
+    public static final String MIN_THREADS = "pcc.server.minThreads";
+    public static final String MAX_THREADS = "pcc.server.maxThreads";
+    public static final String THREAD_IDLE_TIMEOUT = "pcc.server.threadIdleTimeoutMs";
+    public static final String ACCEPTORS = "pcc.server.acceptors";
+    public static final String SELECTORS = "pcc.server.selectors";
+    public static final String IDLE_TIMEOUT = "pcc.server.idleTimeoutMs";
+    public static final String REQUEST_HEADER_SIZE = "pcc.server.requestHeaderSize";
+    public static final String RESPONSE_HEADER_SIZE = "pcc.server.responseHeaderSize";
+    public static final String OUTPUT_BUFFER_SIZE = "pcc.server.outputBufferSize";
+    public static final String HTTP2C = "pcc.server.h2c";
+    public static final String STATISTICS = "pcc.server.statistics";
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Port the server listens on.
+     */
+    private int port = 2222;
+    /**
+     * Minimum amount of threads kept by the server's thread pool.
+     */
+    private int minThreads = 8;
+    /**
+     * Maximum amount of threads of the server's thread pool.
+     */
+    private int maxThreads = 200;
+    /**
+     * Time in milliseconds an idle thread is kept above the minimum.
+     */
+    private int threadIdleTimeout = 60000;
+    /**
+     * Amount of acceptor threads, -1 lets jetty choose by the amount of cores.
+     */
+    private int acceptors = -1;
+    /**
+     * Amount of selector threads, -1 lets jetty choose by the amount of cores.
+     */
+    private int selectors = -1;
+    /**
+     * Time in milliseconds an idle connection is kept open.
+     */
+    private int idleTimeout = 30000;
+    /**
+     * Maximum size of the request headers in bytes.
+     */
+    private int requestHeaderSize = 8192;
+    /**
+     * Maximum size of the response headers in bytes.
+     */
+    private int responseHeaderSize = 8192;
+    /**
+     * Size of the response output buffer in bytes.
+     */
+    private int outputBufferSize = 32768;
+    /**
+     * Whether HTTP/2 over cleartext (h2c) is offered besides HTTP/1.1.
+     */
+    private boolean http2c = false;
+    /**
+     * Whether thread pool, connector and request statistics are collected and exposed via JMX.
+     */
+    private boolean statistics = true;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Creates a config from the given properties. Missing keys keep their default values.
+     *
+     * @param properties Properties holding the settings.
+     * @throws NumberFormatException in case a value isn't a valid number.
+     */
+    public ServerConfig(Properties properties) {
+        port = getInt(properties, PORT, port);
+        minThreads = getInt(properties, MIN_THREADS, minThreads);
+        maxThreads = getInt(properties, MAX_THREADS, maxThreads);
+        threadIdleTimeout = getInt(properties, THREAD_IDLE_TIMEOUT, threadIdleTimeout);
+        acceptors = getInt(properties, ACCEPTORS, acceptors);
+        selectors = getInt(properties, SELECTORS, selectors);
+        idleTimeout = getInt(properties, IDLE_TIMEOUT, idleTimeout);
+        requestHeaderSize = getInt(properties, REQUEST_HEADER_SIZE, requestHeaderSize);
+        responseHeaderSize = getInt(properties, RESPONSE_HEADER_SIZE, responseHeaderSize);
+        outputBufferSize = getInt(properties, OUTPUT_BUFFER_SIZE, outputBufferSize);
+        http2c = getBoolean(properties, HTTP2C, http2c);
+        statistics = getBoolean(properties, STATISTICS, statistics);
+
+        if (minThreads > maxThreads) {
+            Logger.getGlobal().warning("Minimum amount of threads is bigger than maximum, using maximum");
+            minThreads = maxThreads;
+        }
+    }
+
+    /**
+     * Loads the config from the config file and overrides its values with the system properties.
+     *
+     * @return Returns the loaded config.
+     * @throws IOException           in case the config file exists but can't be read.
+     * @throws NumberFormatException in case a value isn't a valid number.
+     */
+    public static ServerConfig load() throws IOException {
+        Properties properties = new Properties();
+
+        File file = new File(System.getProperty(CONFIG_FILE,
+                LocationConfig.PROJECT_DIR + File.separator + "server.properties"));
+        if (file.isFile()) {
+            try (InputStream inputStream = new FileInputStream(file)) {
+                properties.load(inputStream);
+            }
+            Logger.getGlobal().info("Loaded server config from " + file.getPath());
+        }
+
+        properties.putAll(System.getProperties());
+        return new ServerConfig(properties);
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    private static int getInt(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return (value == null) ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static boolean getBoolean(Properties properties, String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        return (value == null) ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    /* #############################################################################################
+     *                                  getter/setter
+     * ###########################################################################################*/
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getMinThreads() {
+        return minThreads;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public int getThreadIdleTimeout() {
+        return threadIdleTimeout;
+    }
+
+    public int getAcceptors() {
+        return acceptors;
+    }
+
+    public int getSelectors() {
+        return selectors;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public int getRequestHeaderSize() {
+        return requestHeaderSize;
+    }
+
+    public int getResponseHeaderSize() {
+        return responseHeaderSize;
+    }
+
+    public int getOutputBufferSize() {
+        return outputBufferSize;
+    }
+
+    public boolean isHttp2c() {
+        return http2c;
+    }
+
+    public boolean isStatistics() {
+        return statistics;
+    }
+}
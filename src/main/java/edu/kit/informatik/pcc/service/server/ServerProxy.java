@@ -2,7 +2,10 @@ package edu.kit.informatik.pcc.service.server;
 
 import edu.kit.informatik.pcc.service.data.Account;
 import edu.kit.informatik.pcc.service.manager.AccountManager;
+import edu.kit.informatik.pcc.service.manager.AccountStatus;
+import edu.kit.informatik.pcc.service.manager.SessionManager;
 import edu.kit.informatik.pcc.service.manager.VideoManager;
+import edu.kit.informatik.pcc.service.videoprocessing.chain.decryption.EncryptionFormat;
 import org.apache.commons.io.FilenameUtils;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
@@ -10,9 +13,13 @@ import org.glassfish.jersey.media.multipart.FormDataParam;
 import javax.ws.rs.*;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.File;
 import java.io.InputStream;
+import java.util.concurrent.Callable;
 import java.util.logging.Logger;
 
 /**
@@ -20,6 +27,8 @@ import java.util.logging.Logger;
  * forward the requests to the manager module which process the request further on.
  * The requests results are returned from the manager classes through the
  * ServerProxy back to the creator of the requests.
+ * All requests are processed asynchronously by the {@link RequestExecutor}
+ * so slow requests don't block the server's threads.
  *
  * @author Fabian Wenzel
  */
@@ -39,6 +48,7 @@ public class ServerProxy {
     private final static String NOT_VERIFIED     = "NOT VERIFIED";
     private final static String WRONG_PASSWORD   = "WRONG PASSWORD";
     private final static String ACCOUNT_EXISTS   = "ACCOUNT EXISTS";
+    private final static String SESSION_EXPIRED  = "SESSION EXPIRED";
 
     //param strings
     private final static String VIDEO_ID    = "videoId";
@@ -48,8 +58,16 @@ public class ServerProxy {
     private final static String METADATA    = "metadata";
     private final static String KEY         = "key";
     private final static String UUID        = "uuid";
+    private final static String ENCRYPTION  = "encryption";
 
-    //manager instances
+    //header strings
+    private final static String SESSION_TOKEN = "Session-Token";
+
+    //media types
+    private final static String VIDEO_TYPE = "video/mp4";
+
+    //active account and manager instances
+    private Account account;
     private AccountManager accountManager;
     private VideoManager videoManager;
 
@@ -67,62 +85,102 @@ public class ServerProxy {
      * @param metadata              metadata of uploaded video as file
      * @param encryptedSymmetricKey key to decode symmetric encoded parts in service (metadata/video)
      * @param accountData           string as json with account specifications (mail and password)
+     * @param encryption            format video and metadata are encrypted in, "aes-ecb" if missing
+     *                              or "chunked-gcm"
      * @param fileDetail            extracting the file details to get name of file
+     * @param sessionToken          token of an authenticated session, can replace the account data
      * @param response              mark response as async response
      */
     @POST
     @Path("videoUpload")
     @Consumes(MediaType.MULTIPART_FORM_DATA)
-    public void videoUpload(@FormDataParam(VIDEO) InputStream video, @FormDataParam(METADATA) InputStream metadata,
-                              @FormDataParam(KEY) InputStream encryptedSymmetricKey, @FormDataParam(ACCOUNT) String accountData,
-                              @FormDataParam(VIDEO) FormDataContentDisposition fileDetail, @Suspended AsyncResponse response) {
+    public void videoUpload(@FormDataParam(VIDEO) final InputStream video,
+                            @FormDataParam(METADATA) final InputStream metadata,
+                            @FormDataParam(KEY) final InputStream encryptedSymmetricKey,
+                            @FormDataParam(ACCOUNT) final String accountData,
+                            @FormDataParam(ENCRYPTION) String encryption,
+                            @FormDataParam(VIDEO) FormDataContentDisposition fileDetail,
+                            @HeaderParam(SESSION_TOKEN) final String sessionToken,
+                            @Suspended final AsyncResponse response) {
         Logger.getGlobal().info("Upload Request");
-        if (video == null || metadata == null || encryptedSymmetricKey == null || accountData == null || fileDetail == null) {
+        if (video == null || metadata == null || encryptedSymmetricKey == null
+                || (accountData == null && sessionToken == null) || fileDetail == null) {
             Logger.getGlobal().info("Uploaded data was not received correctly");
             response.resume("Uploaded data was not received correctly");
             return;
         }
-        String videoName = FilenameUtils.getBaseName(fileDetail.getFileName());
-        String accountStatus = setUpForRequest(accountData);
-        if (accountStatus.equals(SUCCESS)) {
-            videoManager.upload(video, metadata, encryptedSymmetricKey, videoName, response);
-        } else {
-            Logger.getGlobal().info("Account data not valid");
-            response.resume("Account data not valid");
+        final EncryptionFormat format;
+        try {
+            format = EncryptionFormat.fromName(encryption);
+        } catch (IllegalArgumentException e) {
+            Logger.getGlobal().info(e.getMessage());
+            response.resume("Uploaded data was not received correctly");
+            return;
         }
+        final String videoName = FilenameUtils.getBaseName(fileDetail.getFileName());
+        RequestExecutor.getInstance().execute(response, new Runnable() {
+            @Override
+            public void run() {
+                String accountStatus = setUpForRequest(accountData, sessionToken);
+                if (accountStatus.equals(SUCCESS)) {
+                    videoManager.upload(video, metadata, encryptedSymmetricKey, videoName, format, response);
+                } else if (accountStatus.equals(SESSION_EXPIRED)) {
+                    response.resume(SESSION_EXPIRED);
+                } else {
+                    Logger.getGlobal().info("Account data not valid");
+                    response.resume("Account data not valid");
+                }
+            }
+        });
     }
 
     //!All other requests use the normal javax.ws.rs.core.Form for sending data to the service!
 
     /**
      * This method takes video download requests from client and returns a
-     * response with an entity including an inputstream of the wanted video back.
-     * The correctness of the answer is given by the http status code 200.
+     * response streaming the wanted video back.
+     * The correctness of the answer is given by the http status code 200, or 206
+     * if only a range of the video was requested and 304 if the client's cached
+     * video is still up to date.
      * Each other status code symbolizes a form of error.
      *
-     * @param videoId     integer of specific video to download from client
-     * @param accountData string as json with account specifications (mail and password)
-     * @return            returning video as inputstream by success or corresponding failure message
+     * @param videoId      integer of specific video to download from client
+     * @param accountData  string as json with account specifications (mail and password)
+     * @param sessionToken token of an authenticated session, can replace the account data
+     * @param headers      request headers holding range and cache validators
+     * @param response     async response returning the video by success
+     *                     or corresponding failure message
      */
     //TODO: Check if http numbers are correctly set for each case!
     @POST
     @Path("videoDownload")
-    public Response videoDownload(@FormParam(VIDEO_ID) int videoId, @FormParam(ACCOUNT) String accountData) {
+    public void videoDownload(@FormParam(VIDEO_ID) final int videoId, @FormParam(ACCOUNT) final String accountData,
+                              @HeaderParam(SESSION_TOKEN) final String sessionToken,
+                              @Context final HttpHeaders headers,
+                              @Suspended AsyncResponse response) {
         Logger.getGlobal().info("Download Request");
-        Response.ResponseBuilder response = Response.ok();
-        if (accountData == null || videoId == 0) {
-            return response.status(400).build();
-        }
-        setUpForRequest(accountData);
-        String accountStatus = setUpForRequest(accountData);
-        if (accountStatus.equals(SUCCESS)) {
-            InputStream inputStream = videoManager.download(videoId);
-            if (inputStream == null) {
-                return response.status(400).build();
-            }
-            return response.status(200).entity(inputStream).build();
-        }
-        return response.status(401).build();
+        download(videoId, accountData, sessionToken, headers, response);
+    }
+
+    /**
+     * This method takes video download requests of authenticated sessions.
+     * As there is no request body, the download can be cached, resumed and seeked
+     * by clients with the usual http headers.
+     *
+     * @param videoId      integer of specific video to download from client
+     * @param sessionToken token of an authenticated session
+     * @param headers      request headers holding range and cache validators
+     * @param response     async response returning the video by success
+     *                     or corresponding failure message
+     */
+    @GET
+    @Path("videoDownload/{" + VIDEO_ID + "}")
+    public void videoDownload(@PathParam(VIDEO_ID) final int videoId,
+                              @HeaderParam(SESSION_TOKEN) final String sessionToken,
+                              @Context final HttpHeaders headers,
+                              @Suspended AsyncResponse response) {
+        Logger.getGlobal().info("Download Request");
+        download(videoId, null, sessionToken, headers, response);
     }
 
     /**
@@ -130,23 +188,32 @@ public class ServerProxy {
      * of the specific video information. If an error during request occurred a
      * "FAILURE" message is send back.
      *
-     * @param videoId     integer of videoId of associated metadata
-     * @param accountData string as json with account specifications (mail and password)
-     * @return            string as json with video specific information (name and id) by success
-     *                    or corresponding failure message
+     * @param videoId      integer of videoId of associated metadata
+     * @param accountData  string as json with account specifications (mail and password)
+     * @param sessionToken token of an authenticated session, can replace the account data
+     * @param response     async response with string as json with video specific information (name and id)
+     *                     by success or corresponding failure message
      */
     @POST
     @Path("videoInfo")
-    public String videoInfo(@FormParam(VIDEO_ID) int videoId, @FormParam(ACCOUNT) String accountData) {
+    public void videoInfo(@FormParam(VIDEO_ID) final int videoId, @FormParam(ACCOUNT) final String accountData,
+                          @HeaderParam(SESSION_TOKEN) final String sessionToken,
+                          @Suspended AsyncResponse response) {
         Logger.getGlobal().info("Get Metadata Request");
-        if (accountData == null || videoId == 0) {
-            return FAILURE;
-        }
-        String accountStatus = setUpForRequest(accountData);
-        if (accountStatus.equals(SUCCESS)) {
-            return videoManager.getMetaData(videoId);
+        if ((accountData == null && sessionToken == null) || videoId == 0) {
+            response.resume(FAILURE);
+            return;
         }
-        return WRONG_ACCOUNT;
+        RequestExecutor.getInstance().submit(response, new Callable<String>() {
+            @Override
+            public String call() {
+                String accountStatus = setUpForRequest(accountData, sessionToken);
+                if (accountStatus.equals(SUCCESS)) {
+                    return videoManager.getMetaData(videoId);
+                }
+                return denied(accountStatus);
+            }
+        });
     }
 
     /**
@@ -155,22 +222,32 @@ public class ServerProxy {
      * Expects the account status to be SUCCESS or NOT_VERIFIED from setUpForRequest
      * to have the possibility to delete not verified accounts.
      *
-     * @param videoId     integer of videoId to delete from service (files and corresponding database entry)
-     * @param accountData string as json with account specifications (mail and password)
-     * @return            message as string whether deletion was successfully or or corresponding failure message
+     * @param videoId      integer of videoId to delete from service (files and corresponding database entry)
+     * @param accountData  string as json with account specifications (mail and password)
+     * @param sessionToken token of an authenticated session, can replace the account data
+     * @param response     async response with message as string whether deletion was successfully
+     *                     or corresponding failure message
      */
     @POST
     @Path("videoDelete")
-    public String videoDelete(@FormParam(VIDEO_ID) int videoId, @FormParam(ACCOUNT) String accountData) {
+    public void videoDelete(@FormParam(VIDEO_ID) final int videoId, @FormParam(ACCOUNT) final String accountData,
+                            @HeaderParam(SESSION_TOKEN) final String sessionToken,
+                            @Suspended AsyncResponse response) {
         Logger.getGlobal().info("Video Deletion Request");
-        if (accountData == null || videoId == 0) {
-            return FAILURE;
-        }
-        String accountStatus = setUpForRequest(accountData);
-        if (accountStatus.equals(SUCCESS)) {
-            return videoManager.videoDelete(videoId);
+        if ((accountData == null && sessionToken == null) || videoId == 0) {
+            response.resume(FAILURE);
+            return;
         }
-        return WRONG_ACCOUNT;
+        RequestExecutor.getInstance().submit(response, new Callable<String>() {
+            @Override
+            public String call() {
+                String accountStatus = setUpForRequest(accountData, sessionToken);
+                if (accountStatus.equals(SUCCESS)) {
+                    return videoManager.videoDelete(videoId);
+                }
+                return denied(accountStatus);
+            }
+        });
     }
 
     /**
@@ -178,38 +255,62 @@ public class ServerProxy {
      * an JSONArray of all relevant video information for the given account.
      * If an error occurred an error string is send back to the client.
      *
-     * @param accountData string as json with account specifications (mail and password)
-     * @return            all videoInfo of user (by accountData) by success or variant failure message
+     * @param accountData  string as json with account specifications (mail and password)
+     * @param sessionToken token of an authenticated session, can replace the account data
+     * @param response     async response with all videoInfo of user (by accountData) by success
+     *                     or variant failure message
      */
     @POST
     @Path("getVideos")
-    public String getVideos(@FormParam(ACCOUNT) String accountData) {
+    public void getVideos(@FormParam(ACCOUNT) final String accountData,
+                          @HeaderParam(SESSION_TOKEN) final String sessionToken,
+                          @Suspended AsyncResponse response) {
         Logger.getGlobal().info("GetVideosByAccount Request");
-        if (accountData == null) {
-            return FAILURE;
-        }
-        String accountStatus = setUpForRequest(accountData);
-        if (accountStatus.equals(SUCCESS)) {
-            return videoManager.getVideoInfoList();
+        if (accountData == null && sessionToken == null) {
+            response.resume(FAILURE);
+            return;
         }
-        return WRONG_ACCOUNT;
+        RequestExecutor.getInstance().submit(response, new Callable<String>() {
+            @Override
+            public String call() {
+                String accountStatus = setUpForRequest(accountData, sessionToken);
+                if (accountStatus.equals(SUCCESS)) {
+                    return videoManager.getVideoInfoList();
+                }
+                return denied(accountStatus);
+            }
+        });
     }
 
     /**
      * This method takes an authenticate request from the client and
      * returns the account status produced by setUpForRequest.
+     * On success a new session token is sent back in the Session-Token header.
+     * Further requests can send this header instead of the account data.
      *
      * @param accountData string as json with account specifications (mail and password)
-     * @return            account status in service (specified by setUpForRequest)
+     * @param response    async response with account status in service (specified by setUpForRequest)
      */
     @POST
     @Path("authenticate")
-    public String authenticateAccount(@FormParam(ACCOUNT) String accountData) {
+    public void authenticateAccount(@FormParam(ACCOUNT) final String accountData,
+                                    @Suspended AsyncResponse response) {
         Logger.getGlobal().info("Authenticate Request");
         if (accountData == null) {
-            return FAILURE;
+            response.resume(FAILURE);
+            return;
         }
-        return setUpForRequest(accountData);
+        RequestExecutor.getInstance().submit(response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                String accountStatus = setUpForRequest(accountData, null);
+                Response.ResponseBuilder response = Response.ok(accountStatus);
+                if (accountStatus.equals(SUCCESS)) {
+                    response.header(SESSION_TOKEN, SessionManager.getInstance().createSession(account));
+                }
+                return response.build();
+            }
+        });
     }
 
     /**
@@ -220,18 +321,25 @@ public class ServerProxy {
      *
      * @param accountData string as json with account specifications (mail and password)
      * @param uuid        uuid of account to set in database to fulfill verification later
-     * @return            message as string whether creation was successfully or not
+     * @param response    async response with message as string whether creation was successfully or not
      */
     @POST
     @Path("createAccount")
-    public String createAccount(@FormParam(ACCOUNT) String accountData, @FormParam(UUID) String uuid) {
+    public void createAccount(@FormParam(ACCOUNT) final String accountData, @FormParam(UUID) final String uuid,
+                              @Suspended AsyncResponse response) {
         Logger.getGlobal().info("Account Creation Request");
         if (accountData == null || uuid == null) {
-            return FAILURE;
+            response.resume(FAILURE);
+            return;
         }
-        String accountStatus = setUpForRequest(accountData);
-        return (accountStatus.equals(NOT_EXISTING)) ?
-                accountManager.registerAccount(uuid) : ACCOUNT_EXISTS;
+        RequestExecutor.getInstance().submit(response, new Callable<String>() {
+            @Override
+            public String call() {
+                String accountStatus = setUpForRequest(accountData, null);
+                return (accountStatus.equals(NOT_EXISTING)) ?
+                        accountManager.registerAccount(uuid) : ACCOUNT_EXISTS;
+            }
+        });
     }
 
     /**
@@ -240,36 +348,56 @@ public class ServerProxy {
      *
      * @param newAccountData string as json with  new set account specifications (mail and password)
      * @param accountData    string as json with account specifications (mail and password)
-     * @return               message as string whether changing was successfully or not
+     * @param sessionToken   token of an authenticated session, can replace the account data
+     * @param response       async response with message as string whether changing was successfully or not
      */
     @POST
     @Path("changeAccount")
-    public String changeAccount(@FormParam(NEW_ACCOUNT) String newAccountData, @FormParam(ACCOUNT) String accountData) {
+    public void changeAccount(@FormParam(NEW_ACCOUNT) final String newAccountData,
+                              @FormParam(ACCOUNT) final String accountData,
+                              @HeaderParam(SESSION_TOKEN) final String sessionToken,
+                              @Suspended AsyncResponse response) {
         Logger.getGlobal().info("AccountData Changing Request");
-        if (accountData == null || newAccountData == null) {
-            return FAILURE;
+        if ((accountData == null && sessionToken == null) || newAccountData == null) {
+            response.resume(FAILURE);
+            return;
         }
-        return (setUpForRequest(accountData).equals(SUCCESS)) ?
-                accountManager.changeAccount(newAccountData) : WRONG_ACCOUNT;
+        RequestExecutor.getInstance().submit(response, new Callable<String>() {
+            @Override
+            public String call() {
+                String accountStatus = setUpForRequest(accountData, sessionToken);
+                return (accountStatus.equals(SUCCESS)) ?
+                        accountManager.changeAccount(newAccountData) : denied(accountStatus);
+            }
+        });
     }
 
     /**
      * This method takes a deleteAccount request from client and returns
      * a string with a success or failure message back to the client.
      *
-     * @param accountData string as json with account specifications (mail and password)
-     * @return            message as string whether deletion was successfully or not
+     * @param accountData  string as json with account specifications (mail and password)
+     * @param sessionToken token of an authenticated session, can replace the account data
+     * @param response     async response with message as string whether deletion was successfully or not
      */
     @POST
     @Path("deleteAccount")
-    public String deleteAccount(@FormParam(ACCOUNT) String accountData) {
+    public void deleteAccount(@FormParam(ACCOUNT) final String accountData,
+                              @HeaderParam(SESSION_TOKEN) final String sessionToken,
+                              @Suspended AsyncResponse response) {
         Logger.getGlobal().info("Account Deletion Request");
-        if (accountData == null) {
-            return FAILURE;
+        if (accountData == null && sessionToken == null) {
+            response.resume(FAILURE);
+            return;
         }
-        String accountStatus = setUpForRequest(accountData);
-        return (accountStatus.equals(SUCCESS) || accountStatus.equals(NOT_VERIFIED)) ?
-                accountManager.deleteAccount(videoManager) : WRONG_ACCOUNT;
+        RequestExecutor.getInstance().submit(response, new Callable<String>() {
+            @Override
+            public String call() {
+                String accountStatus = setUpForRequest(accountData, sessionToken);
+                return (accountStatus.equals(SUCCESS) || accountStatus.equals(NOT_VERIFIED)) ?
+                        accountManager.deleteAccount(videoManager) : denied(accountStatus);
+            }
+        });
     }
 
     /**
@@ -279,49 +407,122 @@ public class ServerProxy {
      * because account only needs to verify once.
      *
      * @param uuid        uuid from user to compare with corresponding uuid in database
-     * @return            message as string whether verification was successfully or not (or already verified)
+     * @param response    async response with message as string whether verification was successfully or not
+     *                    (or already verified)
      */
     @GET
     @Path("verifyAccount")
     @Produces(MediaType.TEXT_PLAIN)
-    public String verifyAccount(@QueryParam(UUID) String uuid) {
+    public void verifyAccount(@QueryParam(UUID) final String uuid, @Suspended AsyncResponse response) {
         Logger.getGlobal().info("Account Verification Request");
         if (uuid == null) {
-            return FAILURE;
+            response.resume(FAILURE);
+            return;
         }
-        AccountManager accountManager = new AccountManager(null);
-        return accountManager.verifyAccount(uuid);
+        RequestExecutor.getInstance().submit(response, new Callable<String>() {
+            @Override
+            public String call() {
+                AccountManager accountManager = new AccountManager(null);
+                return accountManager.verifyAccount(uuid);
+            }
+        });
+    }
+
+    /**
+     * Authenticates the download request and answers it with the video of the given id.
+     *
+     * @param videoId      integer of specific video to download
+     * @param accountData  string as json with account specifications (mail and password)
+     * @param sessionToken token of an authenticated session, can replace the account data
+     * @param headers      request headers holding range and cache validators
+     * @param response     async response returning the video or the failure status
+     */
+    private void download(final int videoId, final String accountData, final String sessionToken,
+                          final HttpHeaders headers, AsyncResponse response) {
+        if ((accountData == null && sessionToken == null) || videoId == 0) {
+            response.resume(Response.status(400).build());
+            return;
+        }
+        RequestExecutor.getInstance().submit(response, new Callable<Response>() {
+            @Override
+            public Response call() {
+                String accountStatus = setUpForRequest(accountData, sessionToken);
+                if (accountStatus.equals(SUCCESS)) {
+                    File video = videoManager.getVideoFile(videoId);
+                    if (video == null) {
+                        return Response.status(400).build();
+                    }
+                    return new FileDownload(video, VIDEO_TYPE).createResponse(headers);
+                }
+                return Response.status(401).build();
+            }
+        });
     }
 
     /**
      * Every public method in ServerProxy calls the setUpForRequest-method
      * to verify the correctness of each incoming request and setting up the needed manager classes.
-     * The verification is fulfilled by comparing the send accountData
+     * A valid session token is resolved from memory without touching the database.
+     * Otherwise the verification is fulfilled by comparing the send accountData
      * with the database content and giving a account status back to the calling methods.
      *
-     * @param accountData string as json with account specifications (mail and password)
-     * @return            account specific status (3 different variants) as string
+     * @param accountData  string as json with account specifications (mail and password), may be null
+     *                     if a session token is given
+     * @param sessionToken token of an authenticated session, may be null
+     * @return             account specific status as string
+     * @throws WebApplicationException with status 500 if the account could not be looked up in the database.
      */
-    private String setUpForRequest(String accountData) {
+    private String setUpForRequest(String accountData, String sessionToken) {
+        //resolve session
+        if (sessionToken != null) {
+            Account sessionAccount = SessionManager.getInstance().getAccount(sessionToken);
+            if (sessionAccount != null) {
+                setUpManagers(sessionAccount);
+                return SUCCESS;
+            }
+            if (accountData == null)
+                return SESSION_EXPIRED;
+        }
+
         //setup account and managers
-        Account account = new Account(accountData);
-        videoManager = new VideoManager(account);
-        accountManager = new AccountManager(account);
+        setUpManagers(new Account(accountData));
 
         //authentication process
-        int accountId = accountManager.getAccountId();
-        if (accountId < 1)
-            return NOT_EXISTING;
-
-        account.setId(accountId);
-
-        byte[] salt = accountManager.getSalt();
-        if (salt == null || !account.hashPassword(salt))
-            return FAILURE;
+        AccountStatus status = accountManager.authenticateAccount();
+        switch (status) {
+            case SUCCESS:
+                return SUCCESS;
+            case NOT_VERIFIED:
+                return NOT_VERIFIED;
+            case WRONG_PASSWORD:
+                return WRONG_PASSWORD;
+            case NOT_EXISTING:
+                return NOT_EXISTING;
+            default:
+                // the account could not be looked up, which is no answer about the account itself
+                throw new WebApplicationException(Response.Status.INTERNAL_SERVER_ERROR);
+        }
+    }
 
-        if (!accountManager.authenticate())
-            return WRONG_PASSWORD;
+    /**
+     * Gets the answer for a request whose account could not be set up. An expired session is passed on,
+     * so the client knows it has to authenticate again instead of having sent wrong account data.
+     *
+     * @param accountStatus status returned by setUpForRequest
+     * @return             SESSION_EXPIRED or WRONG_ACCOUNT
+     */
+    private static String denied(String accountStatus) {
+        return accountStatus.equals(SESSION_EXPIRED) ? SESSION_EXPIRED : WRONG_ACCOUNT;
+    }
 
-        return (!accountManager.isVerified()) ? NOT_VERIFIED : SUCCESS;
+    /**
+     * Sets up the active account and the manager classes working on it.
+     *
+     * @param account active user account
+     */
+    private void setUpManagers(Account account) {
+        this.account = account;
+        videoManager = new VideoManager(account);
+        accountManager = new AccountManager(account);
     }
 }
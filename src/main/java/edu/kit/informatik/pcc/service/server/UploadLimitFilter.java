@@ -0,0 +1,149 @@
+package edu.kit.informatik.pcc.service.server;
+
+import edu.kit.informatik.pcc.service.videoprocessing.UploadSpooler;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Logger;
+
+/**
+ * Rejects oversized uploads before their multipart body gets parsed.
+ * Requests announcing a larger body than the upload limit are answered with 413 right away.
+ * Requests without a content length, e.g. chunked ones, get their body counted while it is read,
+ * so the multipart reader stops buffering parts as soon as the limit is exceeded.
+ *
+ * @author Fabian Wenzel
+ */
+public class UploadLimitFilter implements ContainerRequestFilter {
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Maximum amount of bytes a multipart request may have.
+     */
+    private final long maxSize;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Creates a filter limiting uploads to the total size of video, metadata and key.
+     */
+    public UploadLimitFilter() {
+        this(UploadSpooler.getMaxUploadSize());
+    }
+
+    /**
+     * Creates a filter with the given limit.
+     *
+     * @param maxSize Maximum amount of bytes a multipart request may have.
+     */
+    public UploadLimitFilter(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (!MediaType.MULTIPART_FORM_DATA_TYPE.isCompatible(requestContext.getMediaType())) {
+            return;
+        }
+        long length = getLength(requestContext);
+        if (length > maxSize) {
+            Logger.getGlobal().info("Upload of " + length + " bytes exceeds the limit");
+            requestContext.abortWith(tooLarge());
+            return;
+        }
+        // the announced length can't be trusted, so the body gets counted as well
+        requestContext.setEntityStream(new LimitedInputStream(requestContext.getEntityStream(), maxSize));
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    /**
+     * Reads the announced length of the body.
+     *
+     * @return Returns the content length or -1 if it is missing or invalid.
+     */
+    private static long getLength(ContainerRequestContext requestContext) {
+        String length = requestContext.getHeaderString(HttpHeaders.CONTENT_LENGTH);
+        if (length == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(length.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Response tooLarge() {
+        return Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE).entity("Upload too large").build();
+    }
+
+    /**
+     * Fails reading as soon as more than the limit was read.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long maxSize;
+        private long read;
+
+        LimitedInputStream(InputStream in, long maxSize) {
+            super(in);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(long n) {
+            read += n;
+            if (read > maxSize) {
+                Logger.getGlobal().info("Upload exceeded the limit of " + maxSize + " bytes while reading");
+                throw new WebApplicationException(tooLarge());
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ import edu.kit.informatik.pcc.service.data.Metadata;
 import edu.kit.informatik.pcc.service.data.VideoInfo;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -56,6 +57,10 @@ public class EditingContext {
      * Video name of the processed video.
      */
     private String videoName;
+    /**
+     * Properties of the decrypted video, probed when first needed.
+     */
+    private VideoProbe probe;
 
     /* #############################################################################################
      *                                  constructors
@@ -126,6 +131,20 @@ public class EditingContext {
         return videoName;
     }
 
+    /**
+     * Gets the properties of the decrypted video. The video gets probed on the first call only,
+     * so all stages share the same result.
+     *
+     * @return Returns the properties of the decrypted video.
+     * @throws IOException in case the decrypted video can't be probed.
+     */
+    public synchronized VideoProbe getProbe() throws IOException {
+        if (probe == null) {
+            probe = VideoProbe.probe(decVid);
+        }
+        return probe;
+    }
+
     public List<File> getAllTempFiles() {
         LinkedList<File> files = new LinkedList<>();
         files.add(encVid);
@@ -0,0 +1,118 @@
+package edu.kit.informatik.pcc.service.videoprocessing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Writes uploaded parts to their temporary files.
+ * Parts are copied with a large buffer that is reused by each thread. Every part has a size limit which
+ * is checked while copying, so oversized uploads get aborted as soon as the limit is exceeded.
+ * <p>
+ * The buffer size and the limits can be changed via system properties, e.g. <b>-Dpcc.upload.maxVideoBytes=2147483648</b>.
+ * </p>
+ *
+ * @author Josh Romanowski
+ */
+public class UploadSpooler {
+
+    /**
+     * Size of the copy buffer in bytes.
+     */
+    private static final int BUFFER_SIZE = Integer.getInteger("pcc.upload.bufferSize", 1024 * 1024);
+    /**
+     * Maximum size of an uploaded video in bytes.
+     */
+    public static final long MAX_VIDEO_SIZE = Long.getLong("pcc.upload.maxVideoBytes", 1024L * 1024 * 1024);
+    /**
+     * Maximum size of uploaded metadata in bytes.
+     */
+    public static final long MAX_METADATA_SIZE = Long.getLong("pcc.upload.maxMetadataBytes", 1024L * 1024);
+    /**
+     * Maximum size of an uploaded key in bytes.
+     */
+    public static final long MAX_KEY_SIZE = Long.getLong("pcc.upload.maxKeyBytes", 64L * 1024);
+
+    /**
+     * Copy buffer of each thread, avoids allocating a new large buffer for every part.
+     */
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    /**
+     * Writes an uploaded part to the given file and closes the input afterwards.
+     *
+     * @param input   Input stream passing the part's data.
+     * @param target  File to save the part to.
+     * @param maxSize Maximum amount of bytes the part may have.
+     * @return Returns the amount of bytes written.
+     * @throws IOException in case reading or writing fails or the part exceeds its limit.
+     */
+    public static long spool(InputStream input, File target, long maxSize) throws IOException {
+        try (InputStream in = input;
+             FileOutputStream output = new FileOutputStream(target)) {
+            byte[] buffer = BUFFER.get();
+            long written = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                written += read;
+                checkSize(written, target, maxSize);
+                output.write(buffer, 0, read);
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Reads a small uploaded part completely into memory and closes the input afterwards.
+     *
+     * @param input   Input stream passing the part's data.
+     * @param name    Name of the part used for error messages.
+     * @param maxSize Maximum amount of bytes the part may have.
+     * @return Returns the data of the part.
+     * @throws IOException in case reading fails or the part exceeds its limit.
+     */
+    public static byte[] read(InputStream input, String name, long maxSize) throws IOException {
+        try (InputStream in = input) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = BUFFER.get();
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (output.size() + read > maxSize) {
+                    throw new IOException("Upload of " + name + " exceeds the limit of " + maxSize + " bytes");
+                }
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+
+    /**
+     * Calculates the total upload size accepted for one video including its metadata and key.
+     *
+     * @return Returns the maximum upload size in bytes.
+     */
+    public static long getMaxUploadSize() {
+        return MAX_VIDEO_SIZE + MAX_METADATA_SIZE + MAX_KEY_SIZE;
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    private static void checkSize(long size, File target, long maxSize) throws IOException {
+        if (size > maxSize) {
+            throw new IOException("Upload of " + target.getName() + " exceeds the limit of " + maxSize + " bytes");
+        }
+    }
+}
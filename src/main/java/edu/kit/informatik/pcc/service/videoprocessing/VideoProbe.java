@@ -0,0 +1,164 @@
+package edu.kit.informatik.pcc.service.videoprocessing;
+
+import org.bytedeco.javacpp.avutil;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.FrameGrabber;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Properties of a video's container and video stream, read once per video and shared by all stages.
+ * The video is opened with the same FFmpeg demuxer the anonymizers use for decoding.
+ * Width and height are the size the frames are stored in, the rotation tells how they have to be
+ * rotated to be shown upright.
+ *
+ * @author Josh Romanowski
+ */
+public class VideoProbe {
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Width of the stored frames in pixels.
+     */
+    private final int width;
+    /**
+     * Height of the stored frames in pixels.
+     */
+    private final int height;
+    /**
+     * Frames per second.
+     */
+    private final double frameRate;
+    /**
+     * Bitrate of the video stream in bits per second.
+     */
+    private final int bitrate;
+    /**
+     * Duration of the video in microseconds.
+     */
+    private final long duration;
+    /**
+     * Clockwise rotation in degrees from the video's metadata, -1 if the video has none.
+     */
+    private final int rotation;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Creates a probe result out of already known properties.
+     *
+     * @param width     Width of the stored frames in pixels.
+     * @param height    Height of the stored frames in pixels.
+     * @param frameRate Frames per second.
+     * @param bitrate   Bitrate of the video stream in bits per second.
+     * @param duration  Duration of the video in microseconds.
+     * @param rotation  Clockwise rotation in degrees, -1 if unknown.
+     */
+    public VideoProbe(int width, int height, double frameRate, int bitrate, long duration, int rotation) {
+        this.width = width;
+        this.height = height;
+        this.frameRate = frameRate;
+        this.bitrate = bitrate;
+        this.duration = duration;
+        this.rotation = rotation;
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    /**
+     * Reads the properties of a video.
+     *
+     * @param video Video file to probe.
+     * @return Returns the properties of the video.
+     * @throws IOException in case the file can't be opened or contains no video stream.
+     */
+    public static VideoProbe probe(File video) throws IOException {
+        // shut ffmpeg logger
+        avutil.av_log_set_level(avutil.AV_LOG_QUIET);
+        FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(video.getAbsolutePath());
+        try {
+            grabber.start();
+            if (grabber.getImageWidth() <= 0 || grabber.getImageHeight() <= 0) {
+                throw new IOException("File " + video.getName() + " contains no video stream");
+            }
+            return new VideoProbe(grabber.getImageWidth(), grabber.getImageHeight(), grabber.getFrameRate(),
+                    grabber.getVideoBitrate(), grabber.getLengthInTime(),
+                    parseRotation(grabber.getVideoMetadata("rotate")));
+        } catch (FrameGrabber.Exception e) {
+            throw new IOException("Probing " + video.getName() + " failed: " + e.getMessage(), e);
+        } finally {
+            try {
+                grabber.release();
+            } catch (FrameGrabber.Exception e) {
+                // nothing left to clean up
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Fps:%d, Size:%d x %d, Rotation:%d, Dur:%ds",
+                (int) frameRate, width, height, rotation, duration / 1000000);
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    /**
+     * Normalizes the rotation tag to 0, 90, 180 or 270 degrees.
+     *
+     * @return Returns the rotation or -1 if the tag is missing or no multiple of 90 degrees.
+     */
+    static int parseRotation(String rotate) {
+        if (rotate == null) {
+            return -1;
+        }
+        try {
+            int rotation = ((Integer.parseInt(rotate.trim()) % 360) + 360) % 360;
+            return (rotation % 90 == 0) ? rotation : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /* #############################################################################################
+     *                                  getter/setter
+     * ###########################################################################################*/
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public double getFrameRate() {
+        return frameRate;
+    }
+
+    public int getBitrate() {
+        return bitrate;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    public boolean hasRotation() {
+        return rotation >= 0;
+    }
+}
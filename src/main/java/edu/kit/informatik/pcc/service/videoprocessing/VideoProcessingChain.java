@@ -4,9 +4,11 @@ import edu.kit.informatik.pcc.service.data.Account;
 import edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization.OpenCVAnonymizer;
 import edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization.OpenCVPythonAnonymizer;
 import edu.kit.informatik.pcc.service.videoprocessing.chain.decryption.Decryptor;
+import edu.kit.informatik.pcc.service.videoprocessing.chain.decryption.EncryptionFormat;
 import edu.kit.informatik.pcc.service.videoprocessing.chain.persistation.FileForwarder;
 import edu.kit.informatik.pcc.service.videoprocessing.chain.persistation.Persistor;
 
+import javax.crypto.SecretKey;
 import javax.ws.rs.container.AsyncResponse;
 import java.io.*;
 import java.util.LinkedList;
@@ -21,6 +23,13 @@ import java.util.logging.Logger;
  */
 public class VideoProcessingChain implements Runnable {
 
+    /**
+     * Whether uploads get decrypted while being saved instead of by a separate decryption stage.
+     * The chain then doesn't write and read back encrypted copies. The multipart reader still buffers
+     * large parts in its own temporary files before the request gets processed.
+     */
+    private static final boolean STREAMING_DECRYPTION = Boolean.getBoolean("pcc.upload.streamingDecryption");
+
     /* #############################################################################################
      *                                  attributes
      * ###########################################################################################*/
@@ -41,6 +50,14 @@ public class VideoProcessingChain implements Runnable {
      * Name of the video being processed.
      */
     private String videoName;
+    /**
+     * Whether a stage of the chain needs the properties of the video.
+     */
+    private boolean probing;
+    /**
+     * Format the uploaded video and metadata are encrypted in.
+     */
+    private EncryptionFormat encryptionFormat;
 
     /* #############################################################################################
      *                                  constructors
@@ -49,10 +66,18 @@ public class VideoProcessingChain implements Runnable {
     protected VideoProcessingChain(InputStream video, InputStream metadata, InputStream key, Account account,
                                    String videoName, AsyncResponse response, Chain chain)
             throws IllegalArgumentException {
+        this(video, metadata, key, account, videoName, response, chain, EncryptionFormat.AES_ECB);
+    }
+
+    protected VideoProcessingChain(InputStream video, InputStream metadata, InputStream key, Account account,
+                                   String videoName, AsyncResponse response, Chain chain,
+                                   EncryptionFormat encryptionFormat)
+            throws IllegalArgumentException {
 
         // save response
         this.response = response;
         this.videoName = videoName;
+        this.encryptionFormat = encryptionFormat;
 
         // create context
         context = new EditingContext(account, videoName);
@@ -120,24 +145,39 @@ public class VideoProcessingChain implements Runnable {
             case EMPTY:
                 break;
             case SIMPLE:
-                stages.add(new Decryptor());
+                addDecryptor();
                 stages.add(new FileForwarder());
                 stages.add(new Persistor());
                 break;
             case NORMAL:
-                stages.add(new Decryptor());
+                addDecryptor();
                 stages.add(new OpenCVAnonymizer());
                 stages.add(new Persistor());
+                probing = true;
                 break;
             case PYTHON:
-                stages.add(new Decryptor());
+                addDecryptor();
                 stages.add(new OpenCVPythonAnonymizer());
                 stages.add(new Persistor());
+                probing = true;
+        }
+    }
+
+    /**
+     * Adds the decryption stage unless the uploads get decrypted while being saved.
+     */
+    private void addDecryptor() {
+        if (!STREAMING_DECRYPTION) {
+            stages.add(new Decryptor(encryptionFormat));
         }
     }
 
     /**
      * Saves all provided inputs to their temporary location on the server.
+     * Each input is checked against its size limit while being saved.
+     * With streaming decryption the key is decrypted first and the video and metadata
+     * are decrypted while being copied, so the chain doesn't save encrypted copies of them.
+     * All inputs are closed afterwards, even if saving fails.
      *
      * @param video    Uploaded video file as stream.
      * @param metadata Uploaded metadata file as stream.
@@ -147,42 +187,89 @@ public class VideoProcessingChain implements Runnable {
     private void saveTempFiles(InputStream video, InputStream metadata, InputStream key)
             throws IllegalArgumentException {
 
-        try {
-
-            //create output files
-            FileOutputStream videoOut = new FileOutputStream(context.getEncVid());
-            FileOutputStream metaOut = new FileOutputStream(context.getEncMetadata());
-            FileOutputStream keyOut = new FileOutputStream(context.getEncKey());
+        long startTime = System.nanoTime();
+        long bytes;
 
-            //save files
-            saveFile(video, videoOut);
-            saveFile(metadata, metaOut);
-            saveFile(key, keyOut);
+        try {
+            if (STREAMING_DECRYPTION) {
+                bytes = saveDecryptedFiles(video, metadata, key);
+            } else {
+                //save files
+                bytes = UploadSpooler.spool(video, context.getEncVid(), UploadSpooler.MAX_VIDEO_SIZE);
+                bytes += UploadSpooler.spool(metadata, context.getEncMetadata(), UploadSpooler.MAX_METADATA_SIZE);
+                bytes += UploadSpooler.spool(key, context.getEncKey(), UploadSpooler.MAX_KEY_SIZE);
+            }
         } catch (IOException e) {
             cleanUp();
-            throw new IllegalArgumentException();
+            throw new IllegalArgumentException(e.getMessage());
+        } finally {
+            close(video, metadata, key);
         }
+
+        double seconds = Math.max(System.nanoTime() - startTime, 1) / 1e9;
+        Logger.getGlobal().info(String.format("Saved upload of video %s with %d bytes in %.2f seconds (%.2f MB/s)",
+                videoName, bytes, seconds, bytes / seconds / (1024 * 1024)));
     }
 
     /**
-     * Saves a file provided to a location provided.
+     * Decrypts the key and saves the decrypted video and metadata to their temporary location.
+     * The saved video gets probed right away if the chain needs its properties, so broken videos
+     * get rejected before they are queued.
      *
-     * @param input  Input stream passing the file's data.
-     * @param output Output stream saving to the new file.
-     * @throws IOException in case writing or reading fails.
+     * @param video    Uploaded video file as stream.
+     * @param metadata Uploaded metadata file as stream.
+     * @param key      Uploaded SecretKey file as stream.
+     * @return Returns the amount of decrypted bytes written.
+     * @throws IOException in case the key could not be decrypted, saving the files failed
+     *                     or the video can't be probed.
      */
-    private void saveFile(InputStream input, OutputStream output) throws IOException {
-        int read;
-        byte[] bytes = new byte[1024];
+    private long saveDecryptedFiles(InputStream video, InputStream metadata, InputStream key)
+            throws IOException {
+        Decryptor decryptor = new Decryptor(encryptionFormat);
+
+        SecretKey secretKey = decryptor.decryptKey(
+                UploadSpooler.read(key, context.getEncKey().getName(), UploadSpooler.MAX_KEY_SIZE));
+        if (secretKey == null) {
+            throw new IOException("Decrypting the key failed");
+        }
 
+        InputStream decVideo = null;
+        InputStream decMetadata = null;
         try {
-            while ((read = input.read(bytes)) != -1) {
-                output.write(bytes, 0, read);
+            decVideo = decryptor.decryptStream(video, secretKey);
+            decMetadata = decryptor.decryptStream(metadata, secretKey);
+            if (decVideo == null || decMetadata == null) {
+                throw new IOException("Setting up decryption failed");
+            }
+
+            // metadata first so invalid uploads fail before the video is saved
+            long bytes = UploadSpooler.spool(decMetadata, context.getDecMetadata(), UploadSpooler.MAX_METADATA_SIZE);
+            if (!Decryptor.isMetadataValid(context.getDecMetadata())) {
+                throw new IOException("Uploaded metadata is invalid");
+            }
+            bytes += UploadSpooler.spool(decVideo, context.getDecVid(), UploadSpooler.MAX_VIDEO_SIZE);
+            if (probing) {
+                context.getProbe();
             }
+            return bytes;
         } finally {
-            input.close();
-            output.flush();
-            output.close();
+            close(decVideo, decMetadata);
+        }
+    }
+
+    /**
+     * Closes all given streams. Streams that are null or fail to close get skipped.
+     */
+    private static void close(InputStream... streams) {
+        for (InputStream stream : streams) {
+            if (stream == null) {
+                continue;
+            }
+            try {
+                stream.close();
+            } catch (IOException e) {
+                Logger.getGlobal().warning("Closing an upload stream failed");
+            }
         }
     }
 
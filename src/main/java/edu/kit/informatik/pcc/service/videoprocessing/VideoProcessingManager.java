@@ -1,6 +1,7 @@
 package edu.kit.informatik.pcc.service.videoprocessing;
 
 import edu.kit.informatik.pcc.service.data.Account;
+import edu.kit.informatik.pcc.service.videoprocessing.chain.decryption.EncryptionFormat;
 
 import javax.ws.rs.container.AsyncResponse;
 import java.io.InputStream;
@@ -90,11 +91,12 @@ public class VideoProcessingManager {
      * @param key       Uploaded key.
      * @param account   User account who uploaded the video.
      * @param videoName Video name of the uploaded video.
+     * @param format    Format the uploaded video and metadata are encrypted in.
      * @param response  Object use for giving responses.
      */
     public void addTask(InputStream video, InputStream metadata, InputStream key,
-                        Account account, String videoName, AsyncResponse response) {
-        addTask(video, metadata, key, account, videoName, response, VideoProcessingChain.Chain.NORMAL);
+                        Account account, String videoName, EncryptionFormat format, AsyncResponse response) {
+        addTask(video, metadata, key, account, videoName, response, VideoProcessingChain.Chain.NORMAL, format);
     }
 
     /**
@@ -111,6 +113,25 @@ public class VideoProcessingManager {
      */
     protected void addTask(InputStream video, InputStream metadata, InputStream key,
                            Account account, String videoName, AsyncResponse response, VideoProcessingChain.Chain chainType) {
+        addTask(video, metadata, key, account, videoName, response, chainType, EncryptionFormat.AES_ECB);
+    }
+
+    /**
+     * Adds a new task to the queue, which gets executed as soon as resources get free.
+     * Gives response via the response object.
+     *
+     * @param video     Uploaded video.
+     * @param metadata  Uploaded metadata.
+     * @param key       Uploaded key.
+     * @param account   User account who uploaded the video.
+     * @param videoName Video name of the uploaded video without extension.
+     * @param response  Object use for giving responses.
+     * @param chainType Chain type which will get executed.
+     * @param format    Format the uploaded video and metadata are encrypted in.
+     */
+    protected void addTask(InputStream video, InputStream metadata, InputStream key, Account account,
+                           String videoName, AsyncResponse response, VideoProcessingChain.Chain chainType,
+                           EncryptionFormat format) {
         if (response == null) {
             Logger.getGlobal().warning("No response given.");
             return;
@@ -126,10 +147,11 @@ public class VideoProcessingManager {
         VideoProcessingChain chain;
 
         try {
-            chain = new VideoProcessingChain(video, metadata, key, account, videoName, response, chainType);
+            chain = new VideoProcessingChain(video, metadata, key, account, videoName, response, chainType, format);
         } catch (IllegalArgumentException e) {
             Logger.getGlobal().warning("Setting up for editing video "
-                    + videoName + " of user " + account.getId() + " failed. Processing aborted");
+                    + videoName + " of user " + account.getId() + " failed. Processing aborted"
+                    + ((e.getMessage() != null) ? ": " + e.getMessage() : ""));
             response.resume("Setting up for editing video failed. Processing aborted");
             return;
         }
@@ -138,6 +160,15 @@ public class VideoProcessingManager {
         executor.execute(chain);
     }
 
+    /**
+     * Gets the amount of videos that get processed at the same time.
+     *
+     * @return Returns the size of the thread pool.
+     */
+    public static int getPoolSize() {
+        return POOL_SIZE;
+    }
+
     /**
      * Shuts down the queue. Waits 10 Seconds for termination of due tasks.
      */
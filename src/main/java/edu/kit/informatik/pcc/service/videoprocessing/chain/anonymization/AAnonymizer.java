@@ -2,14 +2,18 @@ package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
 
 import edu.kit.informatik.pcc.service.videoprocessing.EditingContext;
 import edu.kit.informatik.pcc.service.videoprocessing.IStage;
+import edu.kit.informatik.pcc.service.videoprocessing.VideoProbe;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
 
 /**
  * Interface for single video anonymization classes.
  * Takes a video file analyzes it for personal content and
  * makes it unrecognizable. Puts the anonymized video to
- * the desired output file.
+ * the desired output file. The properties of the video are probed
+ * once per video and shared with the other stages via the {@link EditingContext}.
  *
  * @author Josh Romanowski
  */
@@ -21,7 +25,14 @@ public abstract class AAnonymizer implements IStage {
 
     @Override
     public boolean execute(EditingContext context) {
-        return anonymize(context.getDecVid(), context.getAnonymizedVid());
+        VideoProbe probe;
+        try {
+            probe = context.getProbe();
+        } catch (IOException e) {
+            Logger.getGlobal().warning(e.getMessage());
+            return false;
+        }
+        return anonymize(context.getDecVid(), context.getAnonymizedVid(), probe);
     }
 
     @Override
@@ -37,5 +48,27 @@ public abstract class AAnonymizer implements IStage {
      * @param output Output video file.
      * @return Returns whether the anonymization was successful or not.
      */
-    public abstract boolean anonymize(File input, File output);
+    public boolean anonymize(File input, File output) {
+        if (input == null || output == null) {
+            Logger.getGlobal().warning("Invalid input/output");
+            return false;
+        }
+        try {
+            return anonymize(input, output, VideoProbe.probe(input));
+        } catch (IOException e) {
+            Logger.getGlobal().warning(e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Takes an input video file, analyzes it for personal content
+     * and makes the personal content unrecognizable.
+     *
+     * @param input  Input video file.
+     * @param output Output video file.
+     * @param probe  Properties of the input video.
+     * @return Returns whether the anonymization was successful or not.
+     */
+    public abstract boolean anonymize(File input, File output, VideoProbe probe);
 }
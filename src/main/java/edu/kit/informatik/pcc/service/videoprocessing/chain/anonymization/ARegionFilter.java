@@ -0,0 +1,104 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import org.bytedeco.javacpp.opencv_core.Mat;
+import org.bytedeco.javacpp.opencv_core.Rect;
+import org.bytedeco.javacpp.opencv_core.RectVector;
+
+/**
+ * Base class for filters that only edit the regions of the detections.
+ * Every detection gets clipped to the frame and handed to the subclass as a sub matrix
+ * sharing the frame's data, so the cost of filtering depends on the size of the detections
+ * instead of the size of the frame and pixels outside of the detections are never changed.
+ *
+ * <p>Filters get used by several workers at the same time, so subclasses must not keep state
+ * between calls.</p>
+ *
+ * @author Josh Romanowski
+ */
+public abstract class ARegionFilter implements IFilter {
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Strength of the filter relative to the size of a detection.
+     */
+    private final double strength;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Creates a new filter with the given strength.
+     *
+     * @param strength Strength of the filter relative to the size of a detection, from zero (exclusive) to one.
+     * @throws IllegalArgumentException in case the strength is out of its range.
+     */
+    protected ARegionFilter(double strength) {
+        if (strength <= 0 || strength > 1) {
+            throw new IllegalArgumentException("Invalid filter strength");
+        }
+        this.strength = strength;
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    @Override
+    public Mat applyFilter(Mat frame, RectVector detections) {
+        if (detections.size() == 0) {
+            return frame;
+        }
+
+        Rect region = new Rect();
+        for (int i = 0; i < detections.size(); i++) {
+            Rect detection = detections.get(i);
+            int left = Math.max(0, detection.x());
+            int top = Math.max(0, detection.y());
+            int right = Math.min(frame.cols(), detection.x() + detection.width());
+            int bottom = Math.min(frame.rows(), detection.y() + detection.height());
+            if (right <= left || bottom <= top) {
+                continue;
+            }
+
+            Mat roi = frame.apply(region.x(left).y(top).width(right - left).height(bottom - top));
+            filterRegion(roi);
+            roi.deallocate();
+        }
+        region.deallocate();
+        return frame;
+    }
+
+    /**
+     * Makes a single region unrecognizable. The region shares its data with the frame,
+     * so it has to be edited in place.
+     *
+     * @param region Region of one detection.
+     */
+    protected abstract void filterRegion(Mat region);
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    /**
+     * Gets the size of the filter's kernel or blocks along one side of a region.
+     *
+     * @param length Length of the region's side.
+     * @return Returns the length scaled by the strength, at least one.
+     */
+    protected int scale(int length) {
+        return Math.max(1, (int) Math.round(length * strength));
+    }
+
+    /* #############################################################################################
+     *                                  getter/setter
+     * ###########################################################################################*/
+
+    public double getStrength() {
+        return strength;
+    }
+}
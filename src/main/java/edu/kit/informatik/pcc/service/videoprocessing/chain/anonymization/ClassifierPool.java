@@ -0,0 +1,183 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import edu.kit.informatik.pcc.service.data.LocationConfig;
+import edu.kit.informatik.pcc.service.videoprocessing.VideoProcessingManager;
+import org.bytedeco.javacpp.opencv_objdetect.CascadeClassifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+
+/**
+ * Pool of loaded face classifiers shared by all anonymization jobs.
+ * Loading a classifier parses the whole Haar cascade, so the classifiers are loaded once at startup
+ * and leased by the jobs. A classifier must only be used by one thread at a time, therefore every
+ * job leases its own one and returns it when it is finished.
+ *
+ * <p>A pool that got shut down stays the singleton instance and refuses further leases, so jobs running
+ * while the server stops fail instead of loading the classifiers again. {@link #start()} replaces it
+ * when the server gets started again.</p>
+ *
+ * <p>By default the pool keeps one classifier per detection worker of every video processing thread,
+ * the amount can be changed via <b>-Dpcc.anonymizer.classifiers</b>.</p>
+ *
+ * @author Josh Romanowski
+ */
+public class ClassifierPool {
+
+    /**
+     * Classpath location of the cascade used for face detection.
+     */
+    private static final String CASCADE_RESOURCE = "/haarcascade_frontalface_alt.xml";
+    /**
+     * Location the cascade gets copied to, as OpenCV can only load it from a file.
+     */
+    private static final String CASCADE_LOCATION = LocationConfig.PROJECT_DIR + File.separator + "cascade.xml";
+    /**
+     * Amount of classifiers kept loaded.
+     */
+    private static final int POOL_SIZE = Integer.getInteger("pcc.anonymizer.classifiers",
+            VideoProcessingManager.getPoolSize() * FramePipeline.getWorkerCount());
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Instance of the ClassifierPool used for Singleton behaviour.
+     */
+    private static ClassifierPool instance;
+
+    /**
+     * Loaded classifiers that are currently not leased.
+     */
+    private final BlockingQueue<CascadeClassifier> idle;
+    /**
+     * Whether the pool got shut down. Leasing fails afterwards and returned classifiers get released directly.
+     */
+    private volatile boolean closed;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Copies the cascade to the project directory if necessary and loads all classifiers.
+     *
+     * @throws IllegalStateException in case the cascade can't be loaded.
+     */
+    private ClassifierPool() {
+        if (!new File(CASCADE_LOCATION).exists()) {
+            copyCascade();
+        }
+
+        idle = new ArrayBlockingQueue<>(Math.max(POOL_SIZE, 1));
+        for (int i = 0; i < POOL_SIZE; i++) {
+            idle.add(load());
+        }
+    }
+
+    /**
+     * Gets the singleton instance of the ClassifierPool. Loads the classifiers on first access.
+     * Returns the stopped pool after a shutdown.
+     *
+     * @return Returns the singleton instance.
+     * @throws IllegalStateException in case the cascade can't be loaded.
+     */
+    public static synchronized ClassifierPool getInstance() {
+        return (instance == null) ? instance = new ClassifierPool() : instance;
+    }
+
+    /**
+     * Loads the classifiers unless a running pool exists already. Replaces a pool that got shut down.
+     *
+     * @return Returns the running singleton instance.
+     * @throws IllegalStateException in case the cascade can't be loaded.
+     */
+    public static synchronized ClassifierPool start() {
+        if (instance == null || instance.closed) {
+            instance = new ClassifierPool();
+        }
+        return instance;
+    }
+
+    /**
+     * Shuts down the pool if it got created. Doesn't load the classifiers just to release them.
+     */
+    public static synchronized void shutdownIfStarted() {
+        if (instance != null) {
+            instance.shutdown();
+        }
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    /**
+     * Leases a classifier for exclusive use. If all loaded classifiers are leased already
+     * an additional one is loaded, so leasing never blocks.
+     *
+     * @return Returns the leased classifier.
+     * @throws IllegalStateException in case the pool got shut down or an additional classifier can't be loaded.
+     */
+    public CascadeClassifier lease() {
+        if (closed) {
+            throw new IllegalStateException("Classifier pool got shut down");
+        }
+        CascadeClassifier classifier = idle.poll();
+        return (classifier != null) ? classifier : load();
+    }
+
+    /**
+     * Returns a leased classifier to the pool. Releases it if the pool is full or shut down.
+     *
+     * @param classifier Classifier that is not used anymore.
+     */
+    public void release(CascadeClassifier classifier) {
+        if (classifier == null) {
+            return;
+        }
+        if (closed || !idle.offer(classifier)) {
+            classifier.deallocate();
+        }
+    }
+
+    /**
+     * Releases all idle classifiers. Classifiers that are still leased get released when returned.
+     */
+    public void shutdown() {
+        closed = true;
+        CascadeClassifier classifier;
+        while ((classifier = idle.poll()) != null) {
+            classifier.deallocate();
+        }
+        Logger.getGlobal().info("Classifier pool stopped");
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    private CascadeClassifier load() {
+        CascadeClassifier classifier = new CascadeClassifier(CASCADE_LOCATION);
+        if (classifier.empty()) {
+            classifier.deallocate();
+            throw new IllegalStateException("Classifier couldn't be loaded");
+        }
+        return classifier;
+    }
+
+    private void copyCascade() {
+        try (InputStream is = getClass().getResourceAsStream(CASCADE_RESOURCE)) {
+            Files.copy(is, new File(CASCADE_LOCATION).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Logger.getGlobal().warning("Copying the cascade failed");
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import org.bytedeco.javacpp.opencv_core.Rect;
+import org.bytedeco.javacpp.opencv_core.RectVector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Estimates the detections of frames between two analyzed keyframes.
+ * Every detection of the previous keyframe is matched with the closest detection of the next keyframe
+ * and moved linearly towards it. Detections without a partner are kept where they are, so a face that
+ * appears or disappears between the keyframes is covered on all frames in between.
+ * All estimated detections are enlarged by a margin to cover the movement the interpolation misses.
+ * The estimated detections are written into a vector given by the caller, so it can be reused for every frame.
+ *
+ * <p>The margin relative to the detection's size can be changed via <b>-Dpcc.anonymizer.interpolationMargin</b>.</p>
+ *
+ * @author Josh Romanowski
+ */
+public class DetectionInterpolator {
+
+    /**
+     * Margin added on each side of an estimated detection relative to its size.
+     */
+    private static final double MARGIN = Double.parseDouble(
+            System.getProperty("pcc.anonymizer.interpolationMargin", "0.2"));
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    /**
+     * Estimates the detections of a frame between two keyframes.
+     *
+     * @param previous Detections of the previous keyframe.
+     * @param next     Detections of the next keyframe or null if there is no next keyframe.
+     * @param progress Position of the frame between the keyframes from 0 (previous) to 1 (next).
+     * @param width    Width of the frame.
+     * @param height   Height of the frame.
+     * @param result   Vector the estimated detections get written to, its previous content gets replaced.
+     */
+    public static void interpolate(RectVector previous, RectVector next, double progress,
+                                   int width, int height, RectVector result) {
+        int previousCount = (int) previous.size();
+        int nextCount = (next == null) ? 0 : (int) next.size();
+        boolean[] matched = new boolean[nextCount];
+
+        List<int[]> estimated = new ArrayList<>();
+        for (int i = 0; i < previousCount; i++) {
+            Rect from = previous.get(i);
+            int partner = findPartner(from, next, matched);
+            if (partner == -1) {
+                add(estimated, from.x(), from.y(), from.width(), from.height(), width, height);
+                continue;
+            }
+
+            matched[partner] = true;
+            Rect to = next.get(partner);
+            add(estimated,
+                    blend(from.x(), to.x(), progress), blend(from.y(), to.y(), progress),
+                    blend(from.width(), to.width(), progress), blend(from.height(), to.height(), progress),
+                    width, height);
+        }
+
+        // faces appearing until the next keyframe get covered from the previous keyframe on
+        for (int i = 0; i < nextCount; i++) {
+            if (!matched[i]) {
+                Rect to = next.get(i);
+                add(estimated, to.x(), to.y(), to.width(), to.height(), width, height);
+            }
+        }
+        result.resize(estimated.size());
+        Rect rect = new Rect();
+        for (int i = 0; i < estimated.size(); i++) {
+            int[] detection = estimated.get(i);
+            result.put(i, rect.x(detection[0]).y(detection[1]).width(detection[2]).height(detection[3]));
+        }
+        rect.deallocate();
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    /**
+     * Finds the closest unmatched detection whose center moved at most by the size of the detection.
+     *
+     * @return Returns the index of the partner or -1 if there is none.
+     */
+    private static int findPartner(Rect from, RectVector next, boolean[] matched) {
+        double fromX = from.x() + from.width() / 2.0;
+        double fromY = from.y() + from.height() / 2.0;
+        double maxDistance = Math.max(from.width(), from.height());
+
+        int partner = -1;
+        double partnerDistance = Double.MAX_VALUE;
+        for (int i = 0; i < matched.length; i++) {
+            if (matched[i]) {
+                continue;
+            }
+            Rect to = next.get(i);
+            double distance = Math.hypot(to.x() + to.width() / 2.0 - fromX, to.y() + to.height() / 2.0 - fromY);
+            if (distance <= maxDistance && distance < partnerDistance) {
+                partner = i;
+                partnerDistance = distance;
+            }
+        }
+        return partner;
+    }
+
+    private static int blend(int from, int to, double progress) {
+        return (int) Math.round(from + (to - from) * progress);
+    }
+
+    /**
+     * Adds a detection enlarged by the margin and clipped to the frame.
+     */
+    private static void add(List<int[]> detections, int x, int y, int w, int h, int width, int height) {
+        int marginX = (int) Math.round(w * MARGIN);
+        int marginY = (int) Math.round(h * MARGIN);
+        int left = Math.max(0, x - marginX);
+        int top = Math.max(0, y - marginY);
+        int right = Math.min(width, x + w + marginX);
+        int bottom = Math.min(height, y + h + marginY);
+        if (right > left && bottom > top) {
+            detections.add(new int[]{left, top, right - left, bottom - top});
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import java.util.Properties;
+
+/**
+ * Settings of the face detection done by an {@link IAnalyzer}.
+ * Frames get converted to grayscale and scaled down to the detection width before analyzing,
+ * sizes are given in pixels of the full resolution frame.
+ *
+ * <p>With a full sweep interval above one, consecutive frames are only searched around the faces
+ * detected in the previous frame. The whole frame is searched every full sweep interval frames
+ * and whenever the mean difference to the previous frame exceeds the scene change threshold.</p>
+ *
+ * <p>The default settings can be changed via system properties, e.g. <b>-Dpcc.detection.width=480</b>.</p>
+ *
+ * @author Josh Romanowski
+ */
+public class DetectionSettings {
+
+    /**
+     * Settings read from the system properties, read on first use.
+     */
+    private static DetectionSettings defaults;
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Width frames are scaled down to before analyzing, zero analyzes the full resolution.
+     */
+    private final int detectionWidth;
+    /**
+     * Factor the search window grows by between two scans, has to be greater than one.
+     */
+    private final double scaleFactor;
+    /**
+     * Amount of overlapping hits needed to accept a detection.
+     */
+    private final int minNeighbors;
+    /**
+     * Minimum size of detected faces, zero for no limit.
+     */
+    private final int minFaceSize;
+    /**
+     * Maximum size of detected faces, zero for no limit.
+     */
+    private final int maxFaceSize;
+    /**
+     * Whether the histogram of the grayscale frame gets equalized.
+     */
+    private final boolean equalizeHistogram;
+    /**
+     * Amount of frames after which the whole frame gets searched again, one searches every frame completely.
+     */
+    private final int fullSweepInterval;
+    /**
+     * Margin around the previous detections that gets searched, relative to the detection's size.
+     */
+    private final double regionMargin;
+    /**
+     * Mean difference of the gray values of two frames from which on the scene is considered changed.
+     */
+    private final double sceneChangeThreshold;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Creates new detection settings that search every frame completely.
+     *
+     * @param detectionWidth    Width frames are scaled down to before analyzing, zero analyzes the full resolution.
+     * @param scaleFactor       Factor the search window grows by between two scans, has to be greater than one.
+     * @param minNeighbors      Amount of overlapping hits needed to accept a detection.
+     * @param minFaceSize       Minimum size of detected faces in full resolution pixels, zero for no limit.
+     * @param maxFaceSize       Maximum size of detected faces in full resolution pixels, zero for no limit.
+     * @param equalizeHistogram Whether the histogram of the grayscale frame gets equalized.
+     * @throws IllegalArgumentException in case a setting is out of its range.
+     */
+    public DetectionSettings(int detectionWidth, double scaleFactor, int minNeighbors,
+                             int minFaceSize, int maxFaceSize, boolean equalizeHistogram) {
+        this(detectionWidth, scaleFactor, minNeighbors, minFaceSize, maxFaceSize, equalizeHistogram, 1, 0.5, 20);
+    }
+
+    /**
+     * Creates new detection settings.
+     *
+     * @param detectionWidth       Width frames are scaled down to before analyzing, zero analyzes the full resolution.
+     * @param scaleFactor          Factor the search window grows by between two scans, has to be greater than one.
+     * @param minNeighbors         Amount of overlapping hits needed to accept a detection.
+     * @param minFaceSize          Minimum size of detected faces in full resolution pixels, zero for no limit.
+     * @param maxFaceSize          Maximum size of detected faces in full resolution pixels, zero for no limit.
+     * @param equalizeHistogram    Whether the histogram of the grayscale frame gets equalized.
+     * @param fullSweepInterval    Amount of frames after which the whole frame gets searched again.
+     * @param regionMargin         Margin around previous detections that gets searched, relative to their size.
+     * @param sceneChangeThreshold Mean gray value difference of two frames that counts as scene change.
+     * @throws IllegalArgumentException in case a setting is out of its range.
+     */
+    public DetectionSettings(int detectionWidth, double scaleFactor, int minNeighbors,
+                             int minFaceSize, int maxFaceSize, boolean equalizeHistogram,
+                             int fullSweepInterval, double regionMargin, double sceneChangeThreshold) {
+        if (detectionWidth < 0 || scaleFactor <= 1 || minNeighbors < 0 || minFaceSize < 0 || maxFaceSize < 0
+                || (maxFaceSize != 0 && maxFaceSize < minFaceSize)
+                || fullSweepInterval < 1 || regionMargin < 0 || sceneChangeThreshold < 0) {
+            throw new IllegalArgumentException("Invalid detection settings");
+        }
+        this.detectionWidth = detectionWidth;
+        this.scaleFactor = scaleFactor;
+        this.minNeighbors = minNeighbors;
+        this.minFaceSize = minFaceSize;
+        this.maxFaceSize = maxFaceSize;
+        this.equalizeHistogram = equalizeHistogram;
+        this.fullSweepInterval = fullSweepInterval;
+        this.regionMargin = regionMargin;
+        this.sceneChangeThreshold = sceneChangeThreshold;
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    /**
+     * Reads the settings from the given properties, missing ones get their default value.
+     *
+     * @param properties Properties holding the pcc.detection.* settings.
+     * @return Returns the configured settings.
+     * @throws IllegalArgumentException in case a property is no number or out of its range.
+     */
+    static DetectionSettings load(Properties properties) {
+        return new DetectionSettings(
+                Integer.parseInt(properties.getProperty("pcc.detection.width", "640")),
+                Double.parseDouble(properties.getProperty("pcc.detection.scaleFactor", "1.1")),
+                Integer.parseInt(properties.getProperty("pcc.detection.minNeighbors", "3")),
+                Integer.parseInt(properties.getProperty("pcc.detection.minFaceSize", "0")),
+                Integer.parseInt(properties.getProperty("pcc.detection.maxFaceSize", "0")),
+                Boolean.parseBoolean(properties.getProperty("pcc.detection.equalizeHistogram", "true")),
+                Integer.parseInt(properties.getProperty("pcc.detection.fullSweepInterval", "1")),
+                Double.parseDouble(properties.getProperty("pcc.detection.regionMargin", "0.5")),
+                Double.parseDouble(properties.getProperty("pcc.detection.sceneChangeThreshold", "20")));
+    }
+
+    /* #############################################################################################
+     *                                  getter/setter
+     * ###########################################################################################*/
+
+    /**
+     * Gets the settings configured via system properties.
+     *
+     * @return Returns the default settings.
+     * @throws IllegalArgumentException in case a property is no number or out of its range.
+     */
+    public static synchronized DetectionSettings getDefault() {
+        if (defaults == null) {
+            defaults = load(System.getProperties());
+        }
+        return defaults;
+    }
+
+    public int getDetectionWidth() {
+        return detectionWidth;
+    }
+
+    public double getScaleFactor() {
+        return scaleFactor;
+    }
+
+    public int getMinNeighbors() {
+        return minNeighbors;
+    }
+
+    public int getMinFaceSize() {
+        return minFaceSize;
+    }
+
+    public int getMaxFaceSize() {
+        return maxFaceSize;
+    }
+
+    public boolean isEqualizeHistogram() {
+        return equalizeHistogram;
+    }
+
+    public int getFullSweepInterval() {
+        return fullSweepInterval;
+    }
+
+    public double getRegionMargin() {
+        return regionMargin;
+    }
+
+    public double getSceneChangeThreshold() {
+        return sceneChangeThreshold;
+    }
+}
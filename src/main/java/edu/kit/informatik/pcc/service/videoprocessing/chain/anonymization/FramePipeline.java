@@ -0,0 +1,414 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import org.bytedeco.javacpp.opencv_core.Mat;
+import org.bytedeco.javacpp.opencv_core.RectVector;
+import org.bytedeco.javacpp.opencv_objdetect.CascadeClassifier;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.FrameGrabber;
+import org.bytedeco.javacv.FrameRecorder;
+import org.bytedeco.javacv.OpenCVFrameConverter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Anonymizes the frames of a single video on several threads.
+ * A decoder thread grabs the frames, several detection workers analyze and filter them,
+ * each with its own classifier, and the calling thread records them in their original order.
+ * The stages are connected by bounded queues and at most a fixed amount of frames is in flight,
+ * so memory usage doesn't depend on the length of the video. The buffers of the frames in flight
+ * get allocated once per video and reused, so no native memory is allocated per frame.
+ *
+ * <p>Frames stay in the orientation they are stored in. Only the analyzers rotate their scaled down copies
+ * upright, so the recorder has to tag the output with the same rotation as the input.</p>
+ *
+ * <p>With a detection stride above one only every stride-th frame is analyzed. The detections of the
+ * frames in between are interpolated from the surrounding keyframes by the {@link DetectionInterpolator},
+ * which happens while recording as it needs the frames in order.</p>
+ *
+ * <p>If the analyzers reuse detections of previous frames, every worker gets batches of consecutive frames
+ * instead of single frames. A batch holds the frames of one full sweep interval, so every batch starts with
+ * a search of the whole frame.</p>
+ *
+ * <p>The amount of detection workers per video, of frames in flight and the detection stride can be changed
+ * via <b>-Dpcc.anonymizer.workers</b>, <b>-Dpcc.anonymizer.bufferedFrames</b> and
+ * <b>-Dpcc.anonymizer.detectionStride</b>.</p>
+ *
+ * @author Josh Romanowski
+ */
+public class FramePipeline {
+
+    /**
+     * Amount of detection workers per video.
+     */
+    private static final int WORKERS = Math.max(1, Integer.getInteger("pcc.anonymizer.workers",
+            Runtime.getRuntime().availableProcessors()));
+    /**
+     * Default distance between two analyzed keyframes, one analyzes every frame.
+     */
+    private static final int DETECTION_STRIDE = Math.max(1, Integer.getInteger("pcc.anonymizer.detectionStride", 1));
+    /**
+     * Configured amount of frames that are decoded but not recorded yet.
+     */
+    private static final int BUFFERED_FRAMES = Integer.getInteger("pcc.anonymizer.bufferedFrames", 4 * WORKERS);
+    /**
+     * Time the recorder waits for a frame before checking the other stages for failures.
+     */
+    private static final long POLL_INTERVAL = 100;
+    /**
+     * Time to wait for the workers to stop before the frame buffers get released.
+     */
+    private static final long SHUTDOWN_TIMEOUT = 10000;
+    /**
+     * Marks the end of the video in the queue of decoded frames.
+     */
+    private static final List<FrameSlot> END = new ArrayList<>();
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Filter that makes the detections unrecognizable.
+     */
+    private IFilter filter;
+    /**
+     * Settings the analyzers of the workers use.
+     */
+    private DetectionSettings settings;
+    /**
+     * Distance between two analyzed keyframes, one analyzes every frame.
+     */
+    private int detectionStride;
+    /**
+     * Amount of consecutive frames analyzed by the same worker.
+     */
+    private int batchSize;
+    /**
+     * Maximum amount of frames that are decoded but not recorded yet. Has to include the batch
+     * of the next keyframe of every frame so its detections can be interpolated.
+     */
+    private int bufferedFrames;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Creates a pipeline using the given filter and the configured detection stride and settings.
+     * The filter gets used by all workers at the same time.
+     *
+     * @param filter Filter that makes the detections unrecognizable.
+     */
+    public FramePipeline(IFilter filter) {
+        this(filter, DETECTION_STRIDE, DetectionSettings.getDefault());
+    }
+
+    /**
+     * Creates a pipeline using the given filter, detection stride and settings.
+     * The filter gets used by all workers at the same time.
+     *
+     * @param filter          Filter that makes the detections unrecognizable.
+     * @param detectionStride Distance between two analyzed keyframes, one analyzes every frame.
+     * @param settings        Settings the analyzers use.
+     * @throws IllegalArgumentException in case the stride is below one.
+     */
+    public FramePipeline(IFilter filter, int detectionStride, DetectionSettings settings) {
+        if (detectionStride < 1) {
+            throw new IllegalArgumentException("Invalid detection stride");
+        }
+        this.filter = filter;
+        this.settings = settings;
+        this.detectionStride = detectionStride;
+        this.batchSize = (settings.getFullSweepInterval() == 1) ? 1 : settings.getFullSweepInterval() * detectionStride;
+        this.bufferedFrames = Math.max(WORKERS * batchSize + detectionStride, BUFFERED_FRAMES);
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    /**
+     * Anonymizes all frames of the grabber and records them. Grabber and recorder have to be started already.
+     *
+     * @param grabber  Grabber the frames get read from.
+     * @param recorder Recorder the anonymized frames get written to.
+     * @param name     Name of the video used for logging.
+     * @param rotation Clockwise rotation in degrees that makes the frames upright.
+     * @return Returns the amount of recorded frames.
+     * @throws Exception in case any of the stages failed.
+     */
+    public long process(final FrameGrabber grabber, FrameRecorder recorder, final String name,
+                        final int rotation) throws Exception {
+        final BlockingQueue<FrameSlot> free = new ArrayBlockingQueue<>(bufferedFrames);
+        final BlockingQueue<List<FrameSlot>> decoded = new ArrayBlockingQueue<>(bufferedFrames + WORKERS);
+        final BlockingQueue<FrameSlot> processed = new ArrayBlockingQueue<>(bufferedFrames);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicInteger frameCount = new AtomicInteger(-1);
+
+        FrameSlot[] slots = new FrameSlot[bufferedFrames];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new FrameSlot();
+            free.add(slots[i]);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(WORKERS + 1, new ThreadFactory() {
+            private final AtomicInteger threads = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "pcc-frames-" + name + "-" + threads.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        long startTime = System.nanoTime();
+        int recorded = 0;
+        // frames in flight are consecutive and at most as many as there are slots
+        FrameSlot[] pending = new FrameSlot[bufferedFrames];
+        RectVector keyframeDetections = new RectVector();
+        RectVector interpolated = new RectVector();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    decode(grabber, free, decoded, failure, frameCount);
+                }
+            });
+            for (int i = 0; i < WORKERS; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        detect(decoded, processed, failure, rotation);
+                    }
+                });
+            }
+
+            // record the frames in their original order
+            while (recorded != frameCount.get()) {
+                FrameSlot slot = getPending(pending, recorded);
+                if (slot == null || !isReady(slot, pending, frameCount.get())) {
+                    FrameSlot done = processed.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    if (failure.get() != null) {
+                        throw new IllegalStateException("Processing frames failed", failure.get());
+                    }
+                    if (done != null) {
+                        pending[done.index % pending.length] = done;
+                    }
+                    continue;
+                }
+                pending[recorded % pending.length] = null;
+
+                Mat mat = slot.mat;
+                if (!slot.filtered) {
+                    if (isKeyframe(slot.index)) {
+                        keyframeDetections.put(slot.detections);
+                        filter.applyFilter(mat, keyframeDetections);
+                    } else {
+                        FrameSlot nextKeyframe = getPending(pending,
+                                slot.index - slot.index % detectionStride + detectionStride);
+                        DetectionInterpolator.interpolate(keyframeDetections,
+                                (nextKeyframe == null) ? null : nextKeyframe.detections,
+                                (double) (slot.index % detectionStride) / detectionStride,
+                                mat.cols(), mat.rows(), interpolated);
+                        filter.applyFilter(mat, interpolated);
+                    }
+                }
+
+                recorder.record(slot.converter.convert(mat));
+                free.put(slot);
+                recorded++;
+            }
+        } finally {
+            executor.shutdownNow();
+            // the workers may still use the slots until they noticed the shutdown
+            if (executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                for (FrameSlot slot : slots) {
+                    slot.release();
+                }
+            } else {
+                Logger.getGlobal().warning("Frame workers of " + name + " didn't stop, leaving their buffers");
+            }
+            keyframeDetections.deallocate();
+            interpolated.deallocate();
+        }
+
+        double seconds = Math.max(System.nanoTime() - startTime, 1) / 1e9;
+        Logger.getGlobal().info(String.format("Anonymized %d frames of %s in %.1f seconds (%.1f fps, %d workers)",
+                recorded, name, seconds, recorded / seconds, WORKERS));
+        return recorded;
+    }
+
+    /**
+     * Gets the amount of detection workers used per video.
+     *
+     * @return Returns the amount of workers.
+     */
+    public static int getWorkerCount() {
+        return WORKERS;
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    /**
+     * Grabs all frames and copies them into free slots. Stops the workers when finished.
+     */
+    private void decode(FrameGrabber grabber, BlockingQueue<FrameSlot> free, BlockingQueue<List<FrameSlot>> decoded,
+                        AtomicReference<Throwable> failure, AtomicInteger frameCount) {
+        OpenCVFrameConverter.ToMat converter = new OpenCVFrameConverter.ToMat();
+        int index = 0;
+        List<FrameSlot> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                FrameSlot slot = free.take();
+                Frame frame = grabImage(grabber);
+                if (frame == null) {
+                    break;
+                }
+                // copy the frame out of the grabber's buffer
+                converter.convert(frame).copyTo(slot.mat);
+                slot.reset(index++);
+                batch.add(slot);
+                if (batch.size() == batchSize) {
+                    decoded.put(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                decoded.put(batch);
+            }
+            frameCount.set(index);
+            for (int i = 0; i < WORKERS; i++) {
+                decoded.put(END);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception | Error e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    /**
+     * Grabs the next video frame, skipping audio frames.
+     *
+     * @return Returns the frame or null at the end of the video.
+     */
+    private static Frame grabImage(FrameGrabber grabber) throws FrameGrabber.Exception {
+        if (grabber instanceof FFmpegFrameGrabber) {
+            return ((FFmpegFrameGrabber) grabber).grabImage();
+        }
+        Frame frame;
+        do {
+            frame = grabber.grab();
+        } while (frame != null && frame.image == null);
+        return frame;
+    }
+
+    /**
+     * Analyzes and filters decoded frames until the end of the video is reached.
+     */
+    private void detect(BlockingQueue<List<FrameSlot>> decoded, BlockingQueue<FrameSlot> processed,
+                        AtomicReference<Throwable> failure, int rotation) {
+        ClassifierPool classifierPool = null;
+        CascadeClassifier classifier = null;
+        IAnalyzer analyzer = null;
+        try {
+            classifierPool = ClassifierPool.getInstance();
+            classifier = classifierPool.lease();
+            analyzer = new OpenCVAnalyzer(classifier, settings);
+            analyzer.setRotation(rotation);
+
+            List<FrameSlot> batch;
+            while ((batch = decoded.take()) != END) {
+                // the batch doesn't follow the frames analyzed before
+                analyzer.reset();
+                for (FrameSlot slot : batch) {
+                    process(slot, analyzer);
+                    processed.put(slot);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception | Error e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            if (analyzer != null) {
+                analyzer.close();
+            }
+            if (classifierPool != null) {
+                classifierPool.release(classifier);
+            }
+        }
+    }
+
+    /**
+     * Analyzes a frame. Filters the frame directly if every frame gets analyzed.
+     */
+    private void process(FrameSlot slot, IAnalyzer analyzer) {
+        Mat mat = slot.mat;
+        if (detectionStride == 1) {
+            filter.applyFilter(mat, analyzer.analyze(mat));
+            slot.filtered = true;
+        } else if (isKeyframe(slot.index)) {
+            // only keyframes get analyzed, the others get filtered while recording
+            slot.detections.put(analyzer.analyze(mat));
+        }
+    }
+
+    private boolean isKeyframe(int index) {
+        return index % detectionStride == 0;
+    }
+
+    private static FrameSlot getPending(FrameSlot[] pending, int index) {
+        FrameSlot slot = pending[index % pending.length];
+        return (slot != null && slot.index == index) ? slot : null;
+    }
+
+    /**
+     * Checks whether a frame can be recorded. Frames between keyframes need the next keyframe's
+     * detections, unless the video ends before the next keyframe.
+     */
+    private boolean isReady(FrameSlot slot, FrameSlot[] pending, int frameCount) {
+        if (slot.filtered || isKeyframe(slot.index)) {
+            return true;
+        }
+        int nextKeyframe = slot.index - slot.index % detectionStride + detectionStride;
+        return getPending(pending, nextKeyframe) != null || (frameCount != -1 && nextKeyframe >= frameCount);
+    }
+
+    /**
+     * Buffers of one frame in flight. The slots get allocated once per video and are reused for
+     * every frame, so the frame loop doesn't allocate native memory.
+     */
+    private static class FrameSlot {
+        private final Mat mat = new Mat();
+        private final RectVector detections = new RectVector();
+        private final OpenCVFrameConverter.ToMat converter = new OpenCVFrameConverter.ToMat();
+        private int index;
+        private boolean filtered;
+
+        void reset(int index) {
+            this.index = index;
+            this.filtered = false;
+            detections.resize(0);
+        }
+
+        void release() {
+            mat.deallocate();
+            detections.deallocate();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Directory of video frames saved as single pictures, named by their position in the video.
+ * Frames are saved as uncompressed 24 bit BMP, which is fast to write and read and keeps the frames lossless.
+ * Encoding and decoding is done on several threads, while the frames are handed in and out in order.
+ *
+ * <p>A store is used either for writing or for reading the frames of a directory.</p>
+ *
+ * @author Josh Romanowski
+ */
+class FrameStore implements AutoCloseable {
+
+    /**
+     * Image format of the frames.
+     */
+    static final String FORMAT = "bmp";
+    /**
+     * File extension of the frames.
+     */
+    static final String EXTENSION = "." + FORMAT;
+    /**
+     * Format of the frame names, wide enough for every int position so sorting by name keeps the order.
+     */
+    static final String NAME_FORMAT = "%010d";
+    /**
+     * Amount of threads encoding or decoding frames.
+     */
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    /**
+     * Maximum amount of frames waiting to be encoded or already decoded but not read yet.
+     */
+    private static final int BUFFERED_FRAMES = 2 * THREADS;
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Directory the frames are stored in.
+     */
+    private final File dir;
+    /**
+     * Threads encoding or decoding the frames.
+     */
+    private final ExecutorService executor;
+    /**
+     * Limits the amount of frames waiting to be encoded.
+     */
+    private final Semaphore writing = new Semaphore(BUFFERED_FRAMES);
+    /**
+     * First failure while encoding.
+     */
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+    /**
+     * Frames that are decoded in advance, in order.
+     */
+    private final Deque<Future<BufferedImage>> reading = new ArrayDeque<>();
+    /**
+     * Frame files to read, sorted by their position.
+     */
+    private File[] files;
+    /**
+     * Position of the next frame file to start decoding.
+     */
+    private int nextFile;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Creates a store for the given directory.
+     *
+     * @param dir Directory the frames are stored in.
+     */
+    FrameStore(File dir) {
+        this.dir = dir;
+        this.executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+            private final AtomicInteger threads = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "pcc-frame-store-" + threads.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    /**
+     * Saves a frame in the background. Blocks while too many frames are waiting to be encoded.
+     * The image must not be changed afterwards.
+     *
+     * @param index Position of the frame in the video.
+     * @param image Frame to save.
+     * @throws IOException in case saving a previous frame failed or the store is closed.
+     */
+    void write(final int index, final BufferedImage image) throws IOException {
+        checkFailure();
+        writing.acquireUninterruptibly();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!ImageIO.write(image, FORMAT, getFile(index))) {
+                            throw new IOException("No writer for " + image.getType());
+                        }
+                    } catch (IOException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        writing.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the task won't release the permit, flush would wait for it forever
+            writing.release();
+            throw new IOException("Frame store is closed", e);
+        }
+    }
+
+    /**
+     * Waits until all frames are saved.
+     *
+     * @throws IOException in case saving a frame failed.
+     */
+    void flush() throws IOException {
+        writing.acquireUninterruptibly(BUFFERED_FRAMES);
+        writing.release(BUFFERED_FRAMES);
+        checkFailure();
+    }
+
+    /**
+     * Reads the next frame. Following frames get decoded in the background.
+     *
+     * @return Returns the next frame or null if all frames were read.
+     * @throws IOException in case the frame can't be read.
+     */
+    BufferedImage next() throws IOException {
+        if (files == null) {
+            files = list(dir);
+        }
+        while (nextFile < files.length && reading.size() < BUFFERED_FRAMES) {
+            final File file = files[nextFile++];
+            reading.add(executor.submit(new Callable<BufferedImage>() {
+                @Override
+                public BufferedImage call() throws IOException {
+                    BufferedImage image = ImageIO.read(file);
+                    if (image == null) {
+                        throw new IOException("Unreadable frame " + file.getName());
+                    }
+                    return image;
+                }
+            }));
+        }
+
+        Future<BufferedImage> frame = reading.poll();
+        if (frame == null) {
+            return null;
+        }
+        try {
+            return frame.get();
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof IOException) ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading frames", e);
+        }
+    }
+
+    /**
+     * Stops the encoding and decoding threads. Frames that are still waiting get dropped.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Gets the file a frame is stored in. The position is zero padded, so sorting by name keeps the order.
+     *
+     * @param index Position of the frame in the video.
+     * @return Returns the frame's file.
+     */
+    File getFile(int index) {
+        return new File(dir, String.format(NAME_FORMAT, index) + EXTENSION);
+    }
+
+    /**
+     * Lists the frames in a directory in their order.
+     *
+     * @param dir Directory the frames are stored in.
+     * @return Returns the frame files sorted by their position, empty if the directory doesn't exist.
+     */
+    static File[] list(File dir) {
+        File[] files = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith(EXTENSION);
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    private void checkFailure() throws IOException {
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+}
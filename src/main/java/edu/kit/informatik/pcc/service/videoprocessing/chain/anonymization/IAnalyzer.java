@@ -10,7 +10,7 @@ import org.bytedeco.javacpp.opencv_core.Mat;
  *
  * @author Josh Romanowski
  */
-public interface IAnalyzer {
+public interface IAnalyzer extends AutoCloseable {
 
     /* #############################################################################################
      *                                  methods
@@ -21,7 +21,35 @@ public interface IAnalyzer {
      * data.
      *
      * @param frame Input frame.
-     * @return Returns all face detections.
+     * @return Returns all face detections in coordinates of the input frame.
      */
     public RectVector analyze(Mat frame);
+
+    /**
+     * Changes how frames get prepared and analyzed.
+     *
+     * @param settings New detection settings.
+     */
+    public void setSettings(DetectionSettings settings);
+
+    /**
+     * Sets how the frames have to be rotated to be upright. Detection happens on an upright
+     * copy, the detections are still returned in coordinates of the input frame.
+     *
+     * @param rotation Clockwise rotation in degrees, a multiple of 90.
+     * @throws IllegalArgumentException in case the rotation is no multiple of 90.
+     */
+    public void setRotation(int rotation);
+
+    /**
+     * Forgets everything known about previous frames. Has to be called before analyzing
+     * a frame that doesn't follow the previously analyzed one.
+     */
+    public void reset();
+
+    /**
+     * Releases the native buffers of the analyzer. It must not be used afterwards.
+     */
+    @Override
+    public void close();
 }
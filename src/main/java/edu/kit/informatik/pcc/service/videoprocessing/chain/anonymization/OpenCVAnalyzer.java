@@ -1,28 +1,39 @@
 package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
 
-import edu.kit.informatik.pcc.service.data.LocationConfig;
-import edu.kit.informatik.pcc.service.server.Main;
+import org.bytedeco.javacpp.opencv_core;
 import org.bytedeco.javacpp.opencv_core.Mat;
+import org.bytedeco.javacpp.opencv_core.Rect;
 import org.bytedeco.javacpp.opencv_core.RectVector;
+import org.bytedeco.javacpp.opencv_core.Scalar;
+import org.bytedeco.javacpp.opencv_core.Size;
+import org.bytedeco.javacpp.opencv_imgproc;
 import org.bytedeco.javacpp.opencv_objdetect.CascadeClassifier;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
-import java.util.logging.Logger;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Class that analyzes a frame with the OpenCV
  * framework and identifies all frontal faces.
+ * The classifier is leased from the {@link ClassifierPool}, so the analyzer
+ * must only be used by one thread at a time.
+ *
+ * <p>Frames are converted to grayscale, scaled down to the detection width of the
+ * {@link DetectionSettings} and equalized before detecting. If the frames are stored rotated,
+ * only the scaled down copy gets rotated upright. The detections are rotated back and
+ * scaled up to the coordinates of the original frame.</p>
+ *
+ * <p>If the settings define a full sweep interval, consecutive frames are only searched in the
+ * regions around the previous detections. The whole frame gets searched periodically and whenever
+ * the frame differs too much from the previous one, e.g. because the scene changed.</p>
+ *
+ * <p>All native buffers are allocated once per analyzer and reused for every frame,
+ * they get freed by {@link #close()}.</p>
  *
  * @author Josh Romanowski
  */
 public class OpenCVAnalyzer implements IAnalyzer {
 
-    private static final String CASCADE_LOCATION = LocationConfig.PROJECT_DIR + File.separator + "cascade.xml";
-
     /* #############################################################################################
      *                                  attributes
      * ###########################################################################################*/
@@ -31,45 +42,387 @@ public class OpenCVAnalyzer implements IAnalyzer {
      * Classifier used to detect faces.
      */
     private CascadeClassifier classifier;
+    /**
+     * Settings used for preparing and analyzing the frames.
+     */
+    private DetectionSettings settings;
+    /**
+     * Grayscale version of the current frame, reused for all frames.
+     */
+    private Mat gray;
+    /**
+     * Scaled down version of the current frame, reused for all frames.
+     */
+    private Mat scaled;
+    /**
+     * Upright version of the scaled down frame, reused for all frames.
+     */
+    private Mat rotated;
+    /**
+     * Prepared image of the previous frame, used to detect scene changes.
+     */
+    private Mat previous;
+    /**
+     * Difference between the current and the previous frame.
+     */
+    private Mat difference;
+    /**
+     * Detections of the current frame, returned by {@link #analyze(Mat)}.
+     */
+    private RectVector detections;
+    /**
+     * Detections inside a single region.
+     */
+    private RectVector regionDetections;
+    /**
+     * Rectangle used for regions and scaling detections.
+     */
+    private Rect rect;
+    /**
+     * Minimum and maximum face size in the prepared image.
+     */
+    private Size minSize;
+    private Size maxSize;
+    /**
+     * Size of the scaled down image.
+     */
+    private Size scaledSize;
+    /**
+     * Detections of the previous frame in coordinates of the prepared image as x, y, width, height.
+     */
+    private List<int[]> previousDetections;
+    /**
+     * Amount of frames analyzed since the whole frame was searched the last time, -1 forces a full sweep.
+     */
+    private int framesSinceSweep;
+    /**
+     * Clockwise rotation in degrees that makes the frames upright.
+     */
+    private int rotation;
 
     /* #############################################################################################
      *                                  constructors
      * ###########################################################################################*/
 
     /**
-     * Loads the classifier.
+     * Creates an analyzer using the given classifier and the default detection settings.
+     *
+     * @param classifier Loaded classifier leased from the {@link ClassifierPool}.
      */
-    public OpenCVAnalyzer() {
-
-        if (!new File(CASCADE_LOCATION).exists()) {
-            copyCascade();
-        }
-
-        classifier = new CascadeClassifier(CASCADE_LOCATION);
-        if (classifier.empty()) {
-            Logger.getGlobal().severe("Classifier couldn't be loaded");
-            Main.stopServer();
-        }
+    public OpenCVAnalyzer(CascadeClassifier classifier) {
+        this(classifier, DetectionSettings.getDefault());
     }
 
+    /**
+     * Creates an analyzer using the given classifier and detection settings.
+     *
+     * @param classifier Loaded classifier leased from the {@link ClassifierPool}.
+     * @param settings   Settings used for preparing and analyzing the frames.
+     */
+    public OpenCVAnalyzer(CascadeClassifier classifier, DetectionSettings settings) {
+        this.classifier = classifier;
+        this.settings = settings;
+        this.gray = new Mat();
+        this.scaled = new Mat();
+        this.rotated = new Mat();
+        this.previous = new Mat();
+        this.difference = new Mat();
+        this.detections = new RectVector();
+        this.regionDetections = new RectVector();
+        this.rect = new Rect();
+        this.minSize = new Size();
+        this.maxSize = new Size();
+        this.scaledSize = new Size();
+        this.previousDetections = new ArrayList<>();
+        this.framesSinceSweep = -1;
+    }
 
     /* #############################################################################################
      *                                  methods
      * ###########################################################################################*/
 
+    /**
+     * {@inheritDoc}
+     * The returned detections get overwritten by the next call.
+     */
     @Override
     public RectVector analyze(Mat frame) {
-        RectVector detections = new RectVector();
-        classifier.detectMultiScale(frame, detections);
+        Mat prepared = prepare(frame);
+        double scale = (double) frame.cols() / prepared.cols();
+        Mat image = prepared;
+        if (rotation != 0) {
+            rotate(prepared, rotated, rotation);
+            image = rotated;
+        }
+
+        setDetectionSize(minSize, settings.getMinFaceSize(), scale);
+        setDetectionSize(maxSize, settings.getMaxFaceSize(), scale);
+        if (settings.getFullSweepInterval() == 1) {
+            detect(image, detections);
+        } else {
+            if (needsFullSweep(image)) {
+                detect(image, detections);
+                framesSinceSweep = 0;
+            } else {
+                detectInRegions(image);
+                framesSinceSweep++;
+            }
+            remember(image);
+        }
+
+        if (rotation != 0) {
+            rotateBack(prepared.cols(), prepared.rows());
+        }
+        if (scale != 1) {
+            scaleDetections(scale, frame.cols(), frame.rows());
+        }
         return detections;
     }
 
-    private void copyCascade() {
-        InputStream is = getClass().getResourceAsStream("/haarcascade_frontalface_alt.xml");
-        try {
-            Files.copy(is, new File(CASCADE_LOCATION).toPath(), StandardCopyOption.REPLACE_EXISTING);
-        } catch (IOException e) {
-            e.printStackTrace();
+    @Override
+    public void setSettings(DetectionSettings settings) {
+        this.settings = settings;
+        reset();
+    }
+
+    @Override
+    public void setRotation(int rotation) {
+        if (rotation % 90 != 0) {
+            throw new IllegalArgumentException("Only multiples of 90 degrees are supported");
+        }
+        this.rotation = ((rotation % 360) + 360) % 360;
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        framesSinceSweep = -1;
+        previousDetections.clear();
+    }
+
+    @Override
+    public void close() {
+        gray.release();
+        scaled.release();
+        rotated.release();
+        previous.release();
+        difference.release();
+        detections.deallocate();
+        regionDetections.deallocate();
+        rect.deallocate();
+        minSize.deallocate();
+        maxSize.deallocate();
+        scaledSize.deallocate();
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    /**
+     * Converts the frame to grayscale, scales it down and equalizes it as configured.
+     *
+     * @return Returns the image to run the detection on.
+     */
+    private Mat prepare(Mat frame) {
+        Mat image = frame;
+        if (frame.channels() > 1) {
+            opencv_imgproc.cvtColor(frame, gray, opencv_imgproc.COLOR_BGR2GRAY);
+            image = gray;
+        }
+
+        // the detection width refers to the upright frame
+        int width = settings.getDetectionWidth();
+        int uprightWidth = (rotation % 180 == 0) ? image.cols() : image.rows();
+        if (width > 0 && width < uprightWidth) {
+            double factor = (double) width / uprightWidth;
+            scaledSize.width((int) Math.round(image.cols() * factor))
+                    .height((int) Math.round(image.rows() * factor));
+            opencv_imgproc.resize(image, scaled, scaledSize, 0, 0, opencv_imgproc.INTER_AREA);
+            image = scaled;
+        }
+
+        if (settings.isEqualizeHistogram() && image.channels() == 1) {
+            if (image == frame) {
+                image.copyTo(gray);
+                image = gray;
+            }
+            opencv_imgproc.equalizeHist(image, image);
+        }
+        return image;
+    }
+
+    private void detect(Mat image, RectVector result) {
+        classifier.detectMultiScale(image, result, settings.getScaleFactor(), settings.getMinNeighbors(),
+                0, minSize, maxSize);
+    }
+
+    /**
+     * Checks whether the whole image has to be searched, because the interval passed,
+     * the previous frame is unknown or the scene changed.
+     */
+    private boolean needsFullSweep(Mat image) {
+        if (framesSinceSweep == -1 || framesSinceSweep + 1 >= settings.getFullSweepInterval()
+                || previous.cols() != image.cols() || previous.rows() != image.rows()
+                || previous.type() != image.type()) {
+            return true;
+        }
+        opencv_core.absdiff(image, previous, difference);
+        Scalar mean = opencv_core.mean(difference);
+        double change = mean.get(0);
+        mean.deallocate();
+        return change > settings.getSceneChangeThreshold();
+    }
+
+    /**
+     * Searches the regions around the previous detections only.
+     */
+    private void detectInRegions(Mat image) {
+        List<int[]> found = new ArrayList<>();
+        for (int[] region : getRegions(image.cols(), image.rows())) {
+            rect.x(region[0]).y(region[1]).width(region[2]).height(region[3]);
+            Mat roi = image.apply(rect);
+            detect(roi, regionDetections);
+            roi.deallocate();
+            for (int i = 0; i < regionDetections.size(); i++) {
+                Rect detection = regionDetections.get(i);
+                found.add(new int[]{detection.x() + region[0], detection.y() + region[1],
+                        detection.width(), detection.height()});
+            }
+        }
+
+        detections.resize(found.size());
+        for (int i = 0; i < found.size(); i++) {
+            int[] detection = found.get(i);
+            detections.put(i, rect.x(detection[0]).y(detection[1]).width(detection[2]).height(detection[3]));
+        }
+    }
+
+    /**
+     * Calculates the regions around the previous detections, enlarged by the margin
+     * and merged where they overlap, so no area gets searched twice.
+     *
+     * @return Returns the regions as x, y, width, height.
+     */
+    private List<int[]> getRegions(int width, int height) {
+        List<int[]> regions = new ArrayList<>();
+        for (int[] detection : previousDetections) {
+            int marginX = (int) Math.round(detection[2] * settings.getRegionMargin());
+            int marginY = (int) Math.round(detection[3] * settings.getRegionMargin());
+            regions.add(new int[]{Math.max(0, detection[0] - marginX), Math.max(0, detection[1] - marginY),
+                    Math.min(width, detection[0] + detection[2] + marginX),
+                    Math.min(height, detection[1] + detection[3] + marginY)});
+        }
+
+        // merge overlapping regions given as left, top, right, bottom
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < regions.size() && !merged; i++) {
+                for (int j = i + 1; j < regions.size() && !merged; j++) {
+                    int[] a = regions.get(i);
+                    int[] b = regions.get(j);
+                    if (a[0] < b[2] && b[0] < a[2] && a[1] < b[3] && b[1] < a[3]) {
+                        a[0] = Math.min(a[0], b[0]);
+                        a[1] = Math.min(a[1], b[1]);
+                        a[2] = Math.max(a[2], b[2]);
+                        a[3] = Math.max(a[3], b[3]);
+                        regions.remove(j);
+                        merged = true;
+                    }
+                }
+            }
+        }
+
+        for (int[] region : regions) {
+            region[2] -= region[0];
+            region[3] -= region[1];
+        }
+        return regions;
+    }
+
+    /**
+     * Keeps the image and its detections for analyzing the next frame.
+     */
+    private void remember(Mat image) {
+        image.copyTo(previous);
+        previousDetections.clear();
+        for (int i = 0; i < detections.size(); i++) {
+            Rect detection = detections.get(i);
+            previousDetections.add(new int[]{detection.x(), detection.y(), detection.width(), detection.height()});
+        }
+    }
+
+    /**
+     * Converts a face size of the full resolution frame into the scaled down image.
+     */
+    private void setDetectionSize(Size size, int faceSize, double scale) {
+        int detectionSize = (int) Math.round(faceSize / scale);
+        size.width(detectionSize).height(detectionSize);
+    }
+
+    /**
+     * Rotates an image clockwise by the given degrees.
+     */
+    private static void rotate(Mat image, Mat result, int rotation) {
+        switch (rotation) {
+            case 90:
+                opencv_core.transpose(image, result);
+                opencv_core.flip(result, result, 1);
+                break;
+            case 180:
+                opencv_core.flip(image, result, -1);
+                break;
+            case 270:
+                opencv_core.transpose(image, result);
+                opencv_core.flip(result, result, 0);
+                break;
+            default:
+                image.copyTo(result);
+        }
+    }
+
+    /**
+     * Rotates the detections from the upright image back into the image before rotating.
+     *
+     * @param width  Width of the image before rotating.
+     * @param height Height of the image before rotating.
+     */
+    private void rotateBack(int width, int height) {
+        for (int i = 0; i < detections.size(); i++) {
+            Rect detection = detections.get(i);
+            int x = detection.x();
+            int y = detection.y();
+            int w = detection.width();
+            int h = detection.height();
+            switch (rotation) {
+                case 90:
+                    rect.x(y).y(height - x - w).width(h).height(w);
+                    break;
+                case 180:
+                    rect.x(width - x - w).y(height - y - h).width(w).height(h);
+                    break;
+                case 270:
+                    rect.x(width - y - h).y(x).width(h).height(w);
+                    break;
+                default:
+                    rect.x(x).y(y).width(w).height(h);
+            }
+            detections.put(i, rect);
+        }
+    }
+
+    /**
+     * Scales the detections up to the full resolution frame.
+     */
+    private void scaleDetections(double scale, int width, int height) {
+        for (int i = 0; i < detections.size(); i++) {
+            Rect detection = detections.get(i);
+            int x = (int) Math.floor(detection.x() * scale);
+            int y = (int) Math.floor(detection.y() * scale);
+            int right = Math.min(width, (int) Math.ceil((detection.x() + detection.width()) * scale));
+            int bottom = Math.min(height, (int) Math.ceil((detection.y() + detection.height()) * scale));
+            detections.put(i, rect.x(x).y(y).width(right - x).height(bottom - y));
         }
     }
 }
@@ -1,16 +1,8 @@
 package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
 
-import com.xuggle.xuggler.IContainer;
-import com.xuggle.xuggler.IStream;
-import com.xuggle.xuggler.IStreamCoder;
-import org.bytedeco.javacpp.avutil;
-import org.bytedeco.javacpp.opencv_core;
-import org.bytedeco.javacpp.opencv_core.Mat;
-import org.bytedeco.javacpp.opencv_core.RectVector;
+import edu.kit.informatik.pcc.service.videoprocessing.VideoProbe;
 import org.bytedeco.javacv.FFmpegFrameGrabber;
 import org.bytedeco.javacv.FFmpegFrameRecorder;
-import org.bytedeco.javacv.Frame;
-import org.bytedeco.javacv.OpenCVFrameConverter;
 
 import java.io.File;
 import java.util.logging.Logger;
@@ -21,34 +13,51 @@ import java.util.logging.Logger;
  * Then it analyzes each frames for faces and finally
  * makes it unrecognizable.
  *
+ * <p>The frames are not rotated. The rotation stored in the video's metadata is only used for detecting
+ * and gets copied to the output, so players show it the same way as the input. Videos without the metadata
+ * are treated as rotated by <b>-Dpcc.anonymizer.defaultRotation</b> degrees, 0 by default as they are
+ * stored upright. The recordings of the app set the metadata.</p>
+ *
  * @author Josh Romanowski
  */
 public class OpenCVAnonymizer extends AAnonymizer {
 
+    /**
+     * Rotation assumed for videos without rotation metadata.
+     */
+    private static final int DEFAULT_ROTATION = Integer.getInteger("pcc.anonymizer.defaultRotation", 0);
+
     /* #############################################################################################
      *                                  attributes
      * ###########################################################################################*/
 
     /**
-     * Analyzer that takes a frame and analyzes it for faces.
+     * Pipeline that anonymizes the frames on several threads.
      */
-    private IAnalyzer analyzer;
-    /**
-     * Filter that makes a face recognition unrecognizable.
-     */
-    private IFilter filter;
+    private FramePipeline pipeline;
 
     /* #############################################################################################
      *                                  constructors
      * ###########################################################################################*/
 
     /**
-     * Loads the OpenCV library and creates the filters
+     * Creates the filters and the pipeline. The classifiers used for analyzing are leased per video.
+     * The filter can be chosen via <b>-Dpcc.anonymizer.filter</b> (solid, box, gaussian or mosaic)
+     * and its strength via <b>-Dpcc.anonymizer.filterStrength</b>.
      */
     public OpenCVAnonymizer() {
 
-        analyzer = new OpenCVAnalyzer();
-        filter = new OpenCVBoxfilter();
+        pipeline = new FramePipeline(createFilter());
+    }
+
+    /**
+     * Creates the configured filter and a pipeline using the given detection stride and settings.
+     *
+     * @param detectionStride Distance between two analyzed keyframes, one analyzes every frame.
+     * @param settings        Settings the analyzers use.
+     */
+    public OpenCVAnonymizer(int detectionStride, DetectionSettings settings) {
+        pipeline = new FramePipeline(createFilter(), detectionStride, settings);
     }
 
     /* #############################################################################################
@@ -56,77 +65,82 @@ public class OpenCVAnonymizer extends AAnonymizer {
      * ###########################################################################################*/
 
     @Override
-    public boolean anonymize(File input, File output) {
-        if (input == null || output == null) {
+    public boolean anonymize(File input, File output, VideoProbe probe) {
+        if (input == null || output == null || probe == null) {
             Logger.getGlobal().warning("Invalid input/output");
             return false;
         }
-        // shut ffmpeg logger
-        avutil.av_log_set_level(avutil.AV_LOG_QUIET);
-
-        // Read settings
-        IContainer container = IContainer.make();
-        container.open(input.getAbsolutePath(), IContainer.Type.READ, null);
-        IStream stream = container.getStream(0);
-
-        if (stream == null) {
-            Logger.getGlobal().warning("Uploaded file contained no video stream");
-            return false;
-        }
+        int rotation = probe.hasRotation() ? probe.getRotation() : DEFAULT_ROTATION;
+        Logger.getGlobal().info(String.format("Start anonymizing %s. %s", input.getName(), probe));
 
-        IStreamCoder coder = stream.getStreamCoder();
-        // video codec is rotated by 90 degrees!!!
-        int width = coder.getHeight();
-        int heigth = coder.getWidth();
-        double fps = coder.getFrameRate().getValue();
-        int bitrate = coder.getBitRate();
-        long length = container.getDuration() / 1000000;
-        coder.close();
-        container.close();
-
-        Logger.getGlobal().info(String.format(
-                "Start anonymizing %s. Fps:%d, Size:%d x %d, Dur:%ds",
-                input.getName(), (int) fps, width, heigth, length));
-
-        // initialize grabber and recorder
+        // initialize grabber and recorder, frames keep the size they are stored in
         FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(input.getAbsolutePath());
-        grabber.setImageHeight(heigth);
-        grabber.setImageWidth(width);
-        grabber.setFrameRate(fps);
+        grabber.setFrameRate(probe.getFrameRate());
 
         FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(output.getAbsoluteFile(),
-                width, heigth);
+                probe.getWidth(), probe.getHeight());
         recorder.setFormat("mp4");
-        recorder.setFrameRate(fps);
+        recorder.setFrameRate(probe.getFrameRate());
         recorder.setVideoCodec(8);
-        recorder.setVideoBitrate(bitrate);
-
-        OpenCVFrameConverter converter = new OpenCVFrameConverter.ToMat();
+        recorder.setVideoBitrate(probe.getBitrate());
+        if (rotation != 0) {
+            recorder.setVideoMetadata("rotate", String.valueOf(rotation));
+        }
 
         //record
         try {
             grabber.start();
             recorder.start();
-            Frame frame;
-            while ((frame = grabber.grabImage()) != null) {
-                // detect faces
-                Mat mat = converter.convertToMat(frame);
-                // rotate mat by 90 degrees
-                opencv_core.transpose(mat, mat);
-                opencv_core.flip(mat, mat, 1);
-                RectVector detections = analyzer.analyze(mat);
-                mat = filter.applyFilter(mat, detections);
-                Frame end = converter.convert(mat);
-                recorder.record(end);
-            }
+            pipeline.process(grabber, recorder, input.getName(), rotation);
             grabber.stop();
             recorder.stop();
         } catch (Exception e) {
-            e.printStackTrace();
+            Logger.getGlobal().warning("Anonymizing video " + input.getName() + " failed: " + e.getMessage());
+            release(grabber, recorder);
+            return false;
         }
 
 
         Logger.getGlobal().info("Finished anonymization video " + input.getName());
         return true;
     }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    /**
+     * Creates the configured filter. Falls back to filling the detections if the filter is unknown.
+     */
+    private static IFilter createFilter() {
+        String filter = System.getProperty("pcc.anonymizer.filter", "solid");
+        String strength = System.getProperty("pcc.anonymizer.filterStrength");
+        switch (filter) {
+            case "box":
+                return (strength == null) ? new OpenCVBlurfilter() : new OpenCVBlurfilter(Double.parseDouble(strength));
+            case "gaussian":
+                return (strength == null) ? new OpenCVGaussianfilter()
+                        : new OpenCVGaussianfilter(Double.parseDouble(strength));
+            case "mosaic":
+                return (strength == null) ? new OpenCVMosaicfilter()
+                        : new OpenCVMosaicfilter(Double.parseDouble(strength));
+            case "solid":
+                return new OpenCVBoxfilter();
+            default:
+                Logger.getGlobal().warning("Unknown filter " + filter + ", filling detections instead");
+                return new OpenCVBoxfilter();
+        }
+    }
+
+    /**
+     * Releases the native resources of grabber and recorder after a failed anonymization.
+     */
+    private void release(FFmpegFrameGrabber grabber, FFmpegFrameRecorder recorder) {
+        try {
+            grabber.release();
+            recorder.release();
+        } catch (Exception e) {
+            Logger.getGlobal().warning("Releasing grabber/recorder failed");
+        }
+    }
 }
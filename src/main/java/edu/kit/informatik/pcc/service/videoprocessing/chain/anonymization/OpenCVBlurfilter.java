@@ -1,27 +1,50 @@
 package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
 
 import org.bytedeco.javacpp.opencv_core.Mat;
-import org.bytedeco.javacpp.opencv_core.Rect;
-import org.bytedeco.javacpp.opencv_core.RectVector;
+import org.bytedeco.javacpp.opencv_core.Size;
 import org.bytedeco.javacpp.opencv_imgproc;
 
 /**
- * Uses an OpenCV box filter to anonymize face detections.
+ * Uses an OpenCV box blur to anonymize face detections.
+ * The kernel size is the strength times the size of the detection.
  *
  * @author Josh Romanowski
  */
-public class OpenCVBlurfilter implements IFilter {
+public class OpenCVBlurfilter extends ARegionFilter {
+
+    /**
+     * Strength used if none is given.
+     */
+    public static final double DEFAULT_STRENGTH = 0.5;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Creates a new blur filter with the default strength.
+     */
+    public OpenCVBlurfilter() {
+        this(DEFAULT_STRENGTH);
+    }
+
+    /**
+     * Creates a new blur filter.
+     *
+     * @param strength Kernel size relative to the size of a detection, from zero (exclusive) to one.
+     */
+    public OpenCVBlurfilter(double strength) {
+        super(strength);
+    }
 
     /* #############################################################################################
      *                                  methods
      * ###########################################################################################*/
 
     @Override
-    public Mat applyFilter(Mat frame, RectVector detections) {
-        for (int i = 0; i < detections.size(); i++) {
-            Rect rect = detections.get(i);
-            opencv_imgproc.blur(frame, frame, rect.size());
-        }
-        return frame;
+    protected void filterRegion(Mat region) {
+        Size kernel = new Size(scale(region.cols()), scale(region.rows()));
+        opencv_imgproc.blur(region, region, kernel);
+        kernel.deallocate();
     }
 }
@@ -1,19 +1,23 @@
 package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
 
 import org.bytedeco.javacpp.opencv_core.Mat;
-import org.bytedeco.javacpp.opencv_core.Rect;
 import org.bytedeco.javacpp.opencv_core.RectVector;
 import org.bytedeco.javacpp.opencv_core.Scalar;
 import org.bytedeco.javacpp.opencv_imgproc;
 
 
 /**
- * Uses an OpenCV box filter to anonymize face detections.
+ * Fills face detections with a solid color to anonymize them.
  *
  * @author Josh Romanowski
  */
 public class OpenCVBoxfilter implements IFilter {
 
+    /**
+     * Color the detections get filled with, only read so it can be shared by all threads.
+     */
+    private static final Scalar COLOR = new Scalar(0, 0);
+
     /* #############################################################################################
      *                                  methods
      * ###########################################################################################*/
@@ -21,9 +25,7 @@ public class OpenCVBoxfilter implements IFilter {
     @Override
     public Mat applyFilter(Mat frame, RectVector detections) {
         for (int i = 0; i < detections.size(); i++) {
-            Rect rect = detections.get(i);
-            opencv_imgproc.rectangle(frame, rect.tl(), rect.br(), new Scalar(0, 0),
-                    opencv_imgproc.CV_FILLED, 0, 0);
+            opencv_imgproc.rectangle(frame, detections.get(i), COLOR, opencv_imgproc.CV_FILLED, 0, 0);
         }
         return frame;
     }
@@ -0,0 +1,52 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import org.bytedeco.javacpp.opencv_core.Mat;
+import org.bytedeco.javacpp.opencv_core.Size;
+import org.bytedeco.javacpp.opencv_imgproc;
+
+/**
+ * Uses an OpenCV Gaussian blur to anonymize face detections.
+ * The kernel size is the strength times the size of the detection, rounded up to an odd size.
+ * The kernel is separable, so the cost grows linearly with the kernel size.
+ *
+ * @author Josh Romanowski
+ */
+public class OpenCVGaussianfilter extends ARegionFilter {
+
+    /**
+     * Strength used if none is given.
+     */
+    public static final double DEFAULT_STRENGTH = 0.5;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Creates a new Gaussian filter with the default strength.
+     */
+    public OpenCVGaussianfilter() {
+        this(DEFAULT_STRENGTH);
+    }
+
+    /**
+     * Creates a new Gaussian filter.
+     *
+     * @param strength Kernel size relative to the size of a detection, from zero (exclusive) to one.
+     */
+    public OpenCVGaussianfilter(double strength) {
+        super(strength);
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    @Override
+    protected void filterRegion(Mat region) {
+        // Gaussian kernels need an odd size, the sigma is derived from it
+        Size kernel = new Size(scale(region.cols()) | 1, scale(region.rows()) | 1);
+        opencv_imgproc.GaussianBlur(region, region, kernel, 0);
+        kernel.deallocate();
+    }
+}
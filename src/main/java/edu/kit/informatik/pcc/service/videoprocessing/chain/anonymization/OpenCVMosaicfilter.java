@@ -0,0 +1,62 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import org.bytedeco.javacpp.opencv_core.Mat;
+import org.bytedeco.javacpp.opencv_core.Size;
+import org.bytedeco.javacpp.opencv_imgproc;
+
+/**
+ * Pixelates face detections by scaling them down and up again.
+ * The size of the blocks is the strength times the size of the detection,
+ * the cost barely depends on it.
+ *
+ * @author Josh Romanowski
+ */
+public class OpenCVMosaicfilter extends ARegionFilter {
+
+    /**
+     * Strength used if none is given.
+     */
+    public static final double DEFAULT_STRENGTH = 0.15;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Creates a new mosaic filter with the default strength.
+     */
+    public OpenCVMosaicfilter() {
+        this(DEFAULT_STRENGTH);
+    }
+
+    /**
+     * Creates a new mosaic filter.
+     *
+     * @param strength Block size relative to the size of a detection, from zero (exclusive) to one.
+     */
+    public OpenCVMosaicfilter(double strength) {
+        super(strength);
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    @Override
+    protected void filterRegion(Mat region) {
+        int columns = (region.cols() + scale(region.cols()) - 1) / scale(region.cols());
+        int rows = (region.rows() + scale(region.rows()) - 1) / scale(region.rows());
+        Size blocks = new Size(columns, rows);
+        Size size = new Size(region.cols(), region.rows());
+        Mat small = new Mat();
+
+        // averaging while scaling down and repeating while scaling up results in uniform blocks
+        opencv_imgproc.resize(region, small, blocks, 0, 0, opencv_imgproc.INTER_AREA);
+        opencv_imgproc.resize(small, region, size, 0, 0, opencv_imgproc.INTER_NEAREST);
+
+        small.release();
+        small.deallocate();
+        blocks.deallocate();
+        size.deallocate();
+    }
+}
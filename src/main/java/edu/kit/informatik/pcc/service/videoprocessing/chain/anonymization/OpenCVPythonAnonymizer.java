@@ -1,26 +1,51 @@
 package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
 
-import com.xuggle.xuggler.IContainer;
-import com.xuggle.xuggler.IStream;
-import com.xuggle.xuggler.IStreamCoder;
 import edu.kit.informatik.pcc.service.data.LocationConfig;
+import edu.kit.informatik.pcc.service.videoprocessing.VideoProbe;
 import org.apache.commons.io.FileUtils;
+import org.bytedeco.javacpp.opencv_core;
+import org.bytedeco.javacpp.opencv_core.Mat;
+import org.bytedeco.javacpp.opencv_core.RectVector;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.OpenCVFrameConverter;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 
 /**
  * Implements the AAnonymizer interface.
- * Takes a video file and divides it into pictures.
- * Than it takes a python-script to anonymize each picture.
- * After anonymization the pictures get merged into a mp4-File again.
+ * Takes a video file and hands its frames to a python-script that detects the people on them.
+ * By default the frames are streamed through a pipe to a detector leased from the {@link PythonWorkerPool}
+ * and only the detections come back, the detections are blurred while recording the anonymized video.
+ * Alternatively the video gets divided into pictures that the script anonymizes on disk and
+ * that get merged into a mp4-File again.
+ *
+ * <p>The transport can be chosen via <b>-Dpcc.python.transport</b>, either pipe or files.</p>
  *
  * @author Josh Romanowski
  */
 public class OpenCVPythonAnonymizer extends AAnonymizer {
     private static final String PYTHON_DIR = LocationConfig.PROJECT_DIR + File.separator + "Python";
     private static final String ANONYM_SUFFIX = "_out_inverse_result_inverted";
+    /**
+     * Blur kernel size relative to the size of a detection, same as the file based chain uses.
+     */
+    private static final double BLUR_STRENGTH = 0.1;
+    /**
+     * Amount of frames that are sent to the detector but not recorded yet.
+     */
+    private static final int BUFFERED_FRAMES = 16;
+    /**
+     * Marks the end of the video in the queue of sent frames.
+     */
+    private static final Mat END = new Mat();
 
     /* #############################################################################################
      *                                  attributes
@@ -30,16 +55,35 @@ public class OpenCVPythonAnonymizer extends AAnonymizer {
      * Converter used to convert the video into pictures and vise-versa
      */
     private VideoPictureConverter converter;
+    /**
+     * Whether frames get streamed to the script or written to disk.
+     */
+    private boolean streaming;
+    /**
+     * Filter used to blur the streamed detections.
+     */
+    private IFilter filter;
 
     /* #############################################################################################
      *                                  constructors
      * ###########################################################################################*/
 
     /**
-     * Creates a new anonymizer.
+     * Creates a new anonymizer using the configured transport.
      */
     public OpenCVPythonAnonymizer() {
+        this(!"files".equals(System.getProperty("pcc.python.transport", "pipe")));
+    }
+
+    /**
+     * Creates a new anonymizer.
+     *
+     * @param streaming Whether frames get streamed to the script or written to disk.
+     */
+    public OpenCVPythonAnonymizer(boolean streaming) {
         this.converter = new VideoPictureConverter();
+        this.streaming = streaming;
+        this.filter = new OpenCVGaussianfilter(BLUR_STRENGTH);
     }
 
     /* #############################################################################################
@@ -47,17 +91,22 @@ public class OpenCVPythonAnonymizer extends AAnonymizer {
      * ###########################################################################################*/
 
     @Override
-    public boolean anonymize(File input, File output) {
-        if (input == null || output == null)
+    public boolean anonymize(File input, File output, VideoProbe probe) {
+        if (input == null || output == null || probe == null)
             return false;
 
+        Logger.getGlobal().info(String.format("Start anonymizing %s. %s", input.getName(), probe));
+
+        if (streaming)
+            return anonymizeStreamed(input, output, probe);
+
         // make temporary editing dir
         File editingDir = new File(LocationConfig.TEMP_DIR + File.separator + System.currentTimeMillis());
         if (!editingDir.mkdir())
             return false;
 
         // clean up in ANY case (!)
-        return anonymizeVideo(input, output, editingDir) & cleanUp(editingDir);
+        return anonymizeVideo(input, output, editingDir, probe) & cleanUp(editingDir);
     }
 
     /* #############################################################################################
@@ -70,30 +119,10 @@ public class OpenCVPythonAnonymizer extends AAnonymizer {
      * @param input      Input video file.
      * @param output     Output video file.
      * @param editingDir Directory used to temporarily save data.
+     * @param probe      Properties of the input video.
      * @return Returns whether editing was successful or not.
      */
-    private boolean anonymizeVideo(File input, File output, File editingDir) {
-        IContainer container = IContainer.make();
-        container.open(input.getAbsolutePath(), IContainer.Type.READ, null);
-        IStream stream = container.getStream(0);
-
-        if (stream == null) {
-            Logger.getGlobal().warning("Uploaded file contained no video stream");
-            return false;
-        }
-
-        // read settings
-        IStreamCoder coder = stream.getStreamCoder();
-        int width = coder.getHeight();
-        int height = coder.getWidth();
-        double fps = coder.getFrameRate().getValue();
-        long length = container.getDuration() / 1000000;
-
-        coder.setWidth(width);
-        coder.setHeight(height);
-        coder.close();
-        container.close();
-
+    private boolean anonymizeVideo(File input, File output, File editingDir, VideoProbe probe) {
         Logger.getGlobal().info(String.format("Start splitting %s", input.getName()));
 
         // make temporary dir for pictures
@@ -102,11 +131,13 @@ public class OpenCVPythonAnonymizer extends AAnonymizer {
             return false;
 
         // split up video
-        converter.splitUp(input, picDir, fps);
-
-        Logger.getGlobal().info(String.format(
-                "Start anonymizing %s. Fps:%d, Size:%d x %d, Dur:%ds",
-                input.getName(), (int) fps, width, height, length));
+        int frames;
+        try {
+            frames = converter.splitUp(input, picDir);
+        } catch (IOException e) {
+            Logger.getGlobal().warning("Splitting video " + input.getName() + " failed: " + e.getMessage());
+            return false;
+        }
 
         //anonymize
         try {
@@ -130,11 +161,154 @@ public class OpenCVPythonAnonymizer extends AAnonymizer {
 
         // merge video again
         File anonymPicDir = new File(picDir + ANONYM_SUFFIX);
-        converter.merge(anonymPicDir, fps, width, height, output);
+        try {
+            // the pictures were rotated by 90 degrees while splitting
+            int merged = converter.merge(anonymPicDir, probe.getFrameRate(), probe.getHeight(), probe.getWidth(),
+                    output);
+            if (merged != frames) {
+                Logger.getGlobal().warning(String.format("Merged %d of %d frames of %s",
+                        merged, frames, input.getName()));
+                return false;
+            }
+        } catch (IOException e) {
+            Logger.getGlobal().warning("Merging video " + input.getName() + " failed: " + e.getMessage());
+            return false;
+        }
 
         return true;
     }
 
+    /**
+     * Anonymizes a video by streaming its frames to a python-script.
+     *
+     * @param input  Input video file.
+     * @param output Output video file.
+     * @param probe  Properties of the input video.
+     * @return Returns whether editing was successful or not.
+     */
+    private boolean anonymizeStreamed(File input, File output, VideoProbe probe) {
+        FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(input.getAbsolutePath());
+        // the frames get rotated by 90 degrees
+        FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(output.getAbsoluteFile(),
+                probe.getHeight(), probe.getWidth());
+        recorder.setFormat("mp4");
+        recorder.setFrameRate(probe.getFrameRate());
+        recorder.setVideoCodec(8);
+        recorder.setVideoBitrate(probe.getBitrate());
+
+        long startTime = System.nanoTime();
+        PythonWorkerPool pool = PythonWorkerPool.getInstance();
+        PythonWorker detector = null;
+        ScheduledFuture<?> timeout = null;
+        boolean healthy = false;
+        try {
+            detector = pool.lease();
+            timeout = pool.watch(detector, input.getName());
+            detector.startVideo(input.getName());
+            grabber.start();
+            recorder.start();
+            int frames = streamFrames(grabber, recorder, detector);
+            healthy = true;
+            grabber.stop();
+            recorder.stop();
+
+            Logger.getGlobal().info(String.format("Anonymized %d frames of %s in %.1f seconds using %s",
+                    frames, input.getName(), (System.nanoTime() - startTime) / 1e9, detector.getName()));
+        } catch (Exception e) {
+            Logger.getGlobal().warning("Anonymizing video " + input.getName() + " failed: " + e.getMessage());
+            try {
+                grabber.release();
+                recorder.release();
+            } catch (Exception ex) {
+                Logger.getGlobal().warning("Releasing grabber/recorder failed");
+            }
+            return false;
+        } finally {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            pool.release(detector, healthy);
+        }
+        return true;
+    }
+
+    /**
+     * Sends the rotated frames to the detector on a separate thread while recording
+     * the answered frames with their detections blurred. Returns once the detector answered all frames.
+     *
+     * @return Returns the amount of recorded frames.
+     * @throws Exception in case sending, receiving or recording failed.
+     */
+    private int streamFrames(final FFmpegFrameGrabber grabber, FFmpegFrameRecorder recorder,
+                             final PythonWorker detector) throws Exception {
+        final BlockingQueue<Mat> sent = new ArrayBlockingQueue<>(BUFFERED_FRAMES);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                OpenCVFrameConverter.ToMat converter = new OpenCVFrameConverter.ToMat();
+                try {
+                    Frame frame;
+                    while ((frame = grabber.grabImage()) != null) {
+                        // rotate mat by 90 degrees
+                        Mat mat = new Mat();
+                        opencv_core.transpose(converter.convert(frame), mat);
+                        opencv_core.flip(mat, mat, 1);
+                        detector.send(mat);
+                        sent.put(mat);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+
+                // the detector answers all frames sent so far
+                try {
+                    detector.finishVideo();
+                } catch (IOException e) {
+                    failure.compareAndSet(null, e);
+                }
+                try {
+                    sent.put(END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "pcc-python-sender");
+        sender.setDaemon(true);
+        sender.start();
+
+        OpenCVFrameConverter.ToMat converter = new OpenCVFrameConverter.ToMat();
+        RectVector detections = new RectVector();
+        int recorded = 0;
+        try {
+            Mat mat;
+            while ((mat = sent.take()) != END) {
+                detector.receive(detections);
+                filter.applyFilter(mat, detections);
+                recorder.record(converter.convert(mat));
+                mat.release();
+                recorded++;
+            }
+            detector.awaitVideoEnd();
+        } finally {
+            sender.interrupt();
+            Mat mat;
+            while ((mat = sent.poll()) != null) {
+                mat.release();
+            }
+            detections.deallocate();
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return recorded;
+    }
+
     /**
      * Deletes a files in a directory and the directory itself.
      *
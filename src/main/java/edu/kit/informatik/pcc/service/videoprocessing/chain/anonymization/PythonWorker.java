@@ -0,0 +1,271 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import org.bytedeco.javacpp.opencv_core;
+import org.bytedeco.javacpp.opencv_core.Mat;
+import org.bytedeco.javacpp.opencv_core.Rect;
+import org.bytedeco.javacpp.opencv_core.RectVector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Long-lived python detector that gets frames via its standard input and answers
+ * with the detections via its standard output, so no images have to be written to disk.
+ * The detector handles one video after the other, so the interpreter and its model are only loaded once.
+ * Everything the detector writes to its error stream gets logged together with the current video.
+ *
+ * <p>Frames are sent as width, height and the raw BGR pixels. The detector answers every frame,
+ * in the order they were sent, with the amount of detections followed by x, y, width and height
+ * of each detection. A width of zero ends the video, the detector answers the remaining frames and -1 then.
+ * Between two videos a width of -1 checks the health of the detector, which answers with -2.
+ * All integers are 32 bit big endian.</p>
+ *
+ * <p>Sending and receiving block until the detector reads or answers, so they have to be called
+ * from different threads.</p>
+ *
+ * @author Josh Romanowski
+ */
+class PythonWorker implements AutoCloseable {
+
+    private static final int END_OF_VIDEO = -1;
+    private static final int HEALTHY = -2;
+    private static final AtomicInteger WORKER_IDS = new AtomicInteger();
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Name of the worker used for logging.
+     */
+    private final String name;
+    /**
+     * Running python detector.
+     */
+    private final Process process;
+    /**
+     * Standard input of the detector.
+     */
+    private final DataOutputStream out;
+    /**
+     * Standard output of the detector.
+     */
+    private final DataInputStream in;
+    /**
+     * Name of the video currently handled, null between videos.
+     */
+    private volatile String video;
+    /**
+     * Time of the last answer of the detector as given by {@link System#nanoTime()}.
+     */
+    private volatile long lastAnswer = System.nanoTime();
+    /**
+     * Buffer the pixels of a frame get copied to before sending, reused for all frames of the same size.
+     */
+    private byte[] pixels = new byte[0];
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Starts the detector.
+     *
+     * @param pythonDir Directory the python scripts are located in.
+     * @param script    Detector script.
+     * @throws IOException in case python can't be started.
+     */
+    PythonWorker(File pythonDir, String script) throws IOException {
+        name = "python-" + WORKER_IDS.getAndIncrement();
+        process = new ProcessBuilder("python", script).directory(pythonDir).start();
+        out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+        in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+
+        Thread logger = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                logErrors();
+            }
+        }, "pcc-" + name + "-log");
+        logger.setDaemon(true);
+        logger.start();
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    /**
+     * Starts handling a new video.
+     *
+     * @param video Name of the video used for logging.
+     */
+    void startVideo(String video) {
+        this.video = video;
+    }
+
+    /**
+     * Sends a frame to the detector.
+     *
+     * @param frame Frame with three 8 bit channels in BGR order.
+     * @throws IOException in case the detector stopped reading.
+     */
+    void send(Mat frame) throws IOException {
+        if (frame.type() != opencv_core.CV_8UC3) {
+            throw new IllegalArgumentException("Only BGR frames can be sent");
+        }
+
+        int size = frame.cols() * frame.rows() * 3;
+        if (pixels.length != size) {
+            pixels = new byte[size];
+        }
+        if (frame.isContinuous()) {
+            frame.data().get(pixels);
+        } else {
+            Mat copy = frame.clone();
+            copy.data().get(pixels);
+            copy.release();
+        }
+
+        out.writeInt(frame.cols());
+        out.writeInt(frame.rows());
+        out.write(pixels);
+    }
+
+    /**
+     * Tells the detector that no more frames of the current video follow.
+     *
+     * @throws IOException in case the detector stopped reading.
+     */
+    void finishVideo() throws IOException {
+        out.writeInt(0);
+        out.writeInt(0);
+        out.flush();
+    }
+
+    /**
+     * Receives the detections of the oldest frame that wasn't answered yet.
+     *
+     * @param detections Vector the detections get written to, its previous content gets replaced.
+     * @throws IOException in case the detector exited or answered unexpectedly.
+     */
+    void receive(RectVector detections) throws IOException {
+        int count = readInt();
+        if (count < 0) {
+            throw new IOException("Detector answered less frames than sent");
+        }
+        detections.resize(count);
+        Rect rect = new Rect();
+        for (int i = 0; i < count; i++) {
+            detections.put(i, rect.x(readInt()).y(readInt()).width(readInt()).height(readInt()));
+        }
+        rect.deallocate();
+    }
+
+    /**
+     * Waits until the detector answered all frames of the current video.
+     *
+     * @throws IOException in case the detector exited or answered unexpectedly.
+     */
+    void awaitVideoEnd() throws IOException {
+        if (readInt() != END_OF_VIDEO) {
+            throw new IOException("Detector answered more frames than sent");
+        }
+        video = null;
+    }
+
+    /**
+     * Checks whether the detector still answers. Must only be called between two videos.
+     *
+     * @return Returns whether the detector answered correctly.
+     */
+    boolean ping() {
+        try {
+            out.writeInt(-1);
+            out.writeInt(0);
+            out.flush();
+            return readInt() == HEALTHY;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Restarts the time since the last answer, e.g. before a new video gets sent.
+     */
+    void touch() {
+        lastAnswer = System.nanoTime();
+    }
+
+    /**
+     * Checks whether the detector process is still running.
+     *
+     * @return Returns whether the detector is running.
+     */
+    boolean isAlive() {
+        try {
+            process.exitValue();
+            return false;
+        } catch (IllegalThreadStateException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Stops the detector. Blocked reads and writes fail afterwards.
+     */
+    @Override
+    public void close() {
+        process.destroy();
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    private int readInt() throws IOException {
+        try {
+            int value = in.readInt();
+            lastAnswer = System.nanoTime();
+            return value;
+        } catch (EOFException e) {
+            throw new IOException("Detector " + name + " exited", e);
+        }
+    }
+
+    /**
+     * Logs the error stream of the detector until it exits.
+     */
+    private void logErrors() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String current = video;
+                Logger.getGlobal().info("[" + name + ((current == null) ? "" : " " + current) + "] " + line);
+            }
+        } catch (IOException e) {
+            Logger.getGlobal().warning("Reading the log of " + name + " failed");
+        }
+    }
+
+    /* #############################################################################################
+     *                                  getter/setter
+     * ###########################################################################################*/
+
+    public String getName() {
+        return name;
+    }
+
+    public long getLastAnswer() {
+        return lastAnswer;
+    }
+}
@@ -0,0 +1,307 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import edu.kit.informatik.pcc.service.data.LocationConfig;
+import edu.kit.informatik.pcc.service.videoprocessing.VideoProcessingManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Pool of running python detectors shared by all python anonymization jobs.
+ * Starting python and loading OpenCV and the detection model takes several seconds, so the detectors
+ * keep running between videos. Detectors get started when first needed and every job leases its own one.
+ *
+ * <p>Idle detectors are checked periodically and replaced if they don't answer anymore. Detectors that
+ * fail during a job get replaced as well. A job whose detector doesn't answer a frame within the answer
+ * timeout gets its detector killed, which makes the job fail. The timeout restarts with every answer,
+ * so long videos don't hit it as long as the detector keeps up.</p>
+ *
+ * <p>A pool that got shut down stays the singleton instance and refuses further leases, so jobs running
+ * while the server stops fail instead of starting new detectors. {@link #start()} replaces it
+ * when the server gets started again.</p>
+ *
+ * <p>The amount of detectors kept running, the answer timeout and the interval of the health checks can be
+ * changed via <b>-Dpcc.python.workers</b>, <b>-Dpcc.python.answerTimeoutSeconds</b> and
+ * <b>-Dpcc.python.healthCheckSeconds</b>.</p>
+ *
+ * @author Josh Romanowski
+ */
+public class PythonWorkerPool {
+
+    private static final String PYTHON_DIR = LocationConfig.PROJECT_DIR + File.separator + "Python";
+    private static final String SCRIPT = "stream_detector.py";
+    /**
+     * Amount of detectors kept running.
+     */
+    private static final int POOL_SIZE = Math.max(1, Integer.getInteger("pcc.python.workers",
+            VideoProcessingManager.getPoolSize()));
+    /**
+     * Maximum time in seconds a detector may take to answer the next frame of a video.
+     */
+    private static final long ANSWER_TIMEOUT = Math.max(1, Long.getLong("pcc.python.answerTimeoutSeconds", 60));
+    /**
+     * Time in seconds between two checks whether a leased detector still answers.
+     */
+    private static final long ANSWER_CHECK_INTERVAL = Math.max(1, ANSWER_TIMEOUT / 10);
+    /**
+     * Time in seconds between two health checks of the idle detectors.
+     */
+    private static final long HEALTH_CHECK_INTERVAL = Long.getLong("pcc.python.healthCheckSeconds", 60);
+    /**
+     * Maximum time in seconds a detector may take to answer a health check.
+     */
+    private static final long PING_TIMEOUT = 10;
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Instance of the PythonWorkerPool used for Singleton behaviour.
+     */
+    private static PythonWorkerPool instance;
+
+    /**
+     * Running detectors that are currently not leased.
+     */
+    private final BlockingQueue<PythonWorker> idle;
+    /**
+     * Runs the health checks, timeouts and restarts.
+     */
+    private final ScheduledExecutorService scheduler;
+    /**
+     * Whether the pool got shut down. Leasing fails afterwards and returned detectors get stopped directly.
+     */
+    private volatile boolean closed;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Creates the pool and schedules the health checks. No detector gets started yet.
+     */
+    private PythonWorkerPool() {
+        idle = new ArrayBlockingQueue<>(POOL_SIZE);
+        // two threads, so timeouts can fire while a health check is waiting for an answer
+        scheduler = Executors.newScheduledThreadPool(2, new ThreadFactory() {
+            private final AtomicInteger threads = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "pcc-python-watchdog-" + threads.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                checkIdle();
+            }
+        }, HEALTH_CHECK_INTERVAL, HEALTH_CHECK_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Gets the singleton instance of the PythonWorkerPool. Creates the pool on first access.
+     * Returns the stopped pool after a shutdown.
+     *
+     * @return Returns the singleton instance.
+     */
+    public static synchronized PythonWorkerPool getInstance() {
+        return (instance == null) ? instance = new PythonWorkerPool() : instance;
+    }
+
+    /**
+     * Creates the pool unless a running pool exists already. Replaces a pool that got shut down.
+     * No detector gets started yet.
+     *
+     * @return Returns the running singleton instance.
+     */
+    public static synchronized PythonWorkerPool start() {
+        if (instance == null || instance.closed) {
+            instance = new PythonWorkerPool();
+        }
+        return instance;
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    /**
+     * Leases a detector for exclusive use. Starts a new one if all running detectors are leased already,
+     * so leasing never waits for other jobs. Detectors that stopped running get replaced.
+     *
+     * @return Returns the leased detector.
+     * @throws IOException           in case a new detector can't be started.
+     * @throws IllegalStateException in case the pool got shut down.
+     */
+    PythonWorker lease() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Python worker pool got shut down");
+        }
+        PythonWorker worker;
+        while ((worker = idle.poll()) != null) {
+            if (worker.isAlive()) {
+                return worker;
+            }
+            Logger.getGlobal().warning("Detector " + worker.getName() + " stopped, replacing it");
+            worker.close();
+        }
+        return startWorker();
+    }
+
+    /**
+     * Returns a leased detector to the pool. Stops it if it failed, the pool is full or shut down.
+     * Failed detectors get replaced in the background.
+     *
+     * @param worker  Detector that is not used anymore.
+     * @param healthy Whether the detector finished its last video correctly.
+     */
+    void release(PythonWorker worker, boolean healthy) {
+        if (worker == null) {
+            return;
+        }
+        if (healthy && !closed && worker.isAlive() && idle.offer(worker)) {
+            return;
+        }
+        worker.close();
+
+        if (!healthy && !closed) {
+            Logger.getGlobal().warning("Detector " + worker.getName() + " failed, replacing it");
+            scheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    replenish();
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops the detector of a job once it didn't answer for longer than the answer timeout.
+     *
+     * @param worker Detector leased by the job.
+     * @param video  Name of the video used for logging.
+     * @return Returns the timeout, which has to be cancelled when the job finishes.
+     */
+    ScheduledFuture<?> watch(final PythonWorker worker, final String video) {
+        worker.touch();
+        return scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                long silent = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - worker.getLastAnswer());
+                if (silent >= ANSWER_TIMEOUT && worker.isAlive()) {
+                    Logger.getGlobal().warning("Anonymizing " + video + " timed out after " + silent
+                            + " seconds without an answer, stopping detector " + worker.getName());
+                    worker.close();
+                }
+            }
+        }, ANSWER_CHECK_INTERVAL, ANSWER_CHECK_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Shuts down the pool if it got created. Doesn't start a pool just to stop it.
+     */
+    public static synchronized void shutdownIfStarted() {
+        if (instance != null) {
+            instance.shutdown();
+        }
+    }
+
+    /**
+     * Stops all idle detectors. Detectors that are still leased get stopped when returned.
+     */
+    public void shutdown() {
+        closed = true;
+        scheduler.shutdownNow();
+        PythonWorker worker;
+        while ((worker = idle.poll()) != null) {
+            worker.close();
+        }
+        Logger.getGlobal().info("Python worker pool stopped");
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    private PythonWorker startWorker() throws IOException {
+        PythonWorker worker = new PythonWorker(new File(PYTHON_DIR), SCRIPT);
+        Logger.getGlobal().info("Started detector " + worker.getName());
+        return worker;
+    }
+
+    /**
+     * Schedules stopping a detector.
+     */
+    private ScheduledFuture<?> kill(final PythonWorker worker, long seconds, final String reason) {
+        return scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                Logger.getGlobal().warning(reason + ", stopping detector " + worker.getName());
+                worker.close();
+            }
+        }, seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Pings all idle detectors and replaces the ones that don't answer in time.
+     */
+    private void checkIdle() {
+        int count = idle.size();
+        for (int i = 0; i < count && !closed; i++) {
+            PythonWorker worker = idle.poll();
+            if (worker == null) {
+                return;
+            }
+            if (isHealthy(worker)) {
+                if (!idle.offer(worker)) {
+                    worker.close();
+                }
+                continue;
+            }
+            Logger.getGlobal().warning("Detector " + worker.getName() + " failed the health check, replacing it");
+            worker.close();
+            replenish();
+        }
+    }
+
+    private boolean isHealthy(PythonWorker worker) {
+        if (!worker.isAlive()) {
+            return false;
+        }
+        // the ping blocks while the detector hangs, so it gets stopped after the timeout
+        ScheduledFuture<?> timeout = kill(worker, PING_TIMEOUT, "Health check timed out");
+        boolean healthy = worker.ping();
+        timeout.cancel(false);
+        return healthy;
+    }
+
+    /**
+     * Starts a detector if the pool has room for it.
+     */
+    private void replenish() {
+        if (closed || idle.remainingCapacity() == 0) {
+            return;
+        }
+        try {
+            PythonWorker worker = startWorker();
+            if (closed || !idle.offer(worker)) {
+                worker.close();
+            }
+        } catch (IOException e) {
+            Logger.getGlobal().warning("Starting a detector failed: " + e.getMessage());
+        }
+    }
+}
@@ -5,135 +5,157 @@ import com.xuggle.mediatool.IMediaWriter;
 import com.xuggle.mediatool.MediaListenerAdapter;
 import com.xuggle.mediatool.ToolFactory;
 import com.xuggle.mediatool.event.IVideoPictureEvent;
-import com.xuggle.xuggler.Global;
 import com.xuggle.xuggler.ICodec;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
 /**
+ * Splits videos into single pictures and merges pictures into videos.
+ * The pictures are kept in a {@link FrameStore}, so their names follow the order of the frames.
+ *
  * @author Josh Romanowski
  */
 class VideoPictureConverter {
 
-    void splitUp(File video, File picDir, double fps) {
-        Reader reader = new Reader(video.getAbsolutePath(), picDir.getAbsolutePath(), fps);
-        reader.splitVideo();
+    /**
+     * Splits a video into pictures, rotated by 90 degrees as the mp4 header is messed up.
+     *
+     * @param video  Video to split.
+     * @param picDir Directory the pictures get saved to.
+     * @return Returns the amount of saved pictures.
+     * @throws IOException in case a picture can't be saved.
+     */
+    int splitUp(File video, File picDir) throws IOException {
+        try (FrameStore store = new FrameStore(picDir)) {
+            Reader reader = new Reader(video.getAbsolutePath(), store);
+            int frames = reader.splitVideo();
+            store.flush();
+            return frames;
+        }
     }
 
-    void merge(File picDir, double fps, int width, int height, File output) {
-        Writer writer = new Writer(picDir.getAbsolutePath(), fps, width, height, output.getAbsolutePath());
-        writer.readImages();
+    /**
+     * Merges the pictures of a directory into a video in the order of their names.
+     *
+     * @param picDir Directory the pictures are saved in.
+     * @param fps    Frame rate of the video.
+     * @param width  Width of the video.
+     * @param height Height of the video.
+     * @param output Video file to write.
+     * @return Returns the amount of merged pictures.
+     * @throws IOException in case a picture can't be read.
+     */
+    int merge(File picDir, double fps, int width, int height, File output) throws IOException {
+        try (FrameStore store = new FrameStore(picDir)) {
+            Writer writer = new Writer(store, fps, width, height, output.getAbsolutePath());
+            return writer.readImages();
+        }
     }
 
     private class Reader extends MediaListenerAdapter {
-        private double secondsBetweenFrames;
-        private long microSecondsBetweenFrames;
-        private long mLastPtsWrite = Global.NO_PTS;
         private int mVideoStreamIndex = -1;
+        private int frames = 0;
         private String videoPath;
-        private String outputDir;
+        private FrameStore store;
+        private IOException failure;
 
-        Reader(String videoPath, String outputDir, double fps) {
-            this.outputDir = outputDir;
+        Reader(String videoPath, FrameStore store) {
             this.videoPath = videoPath;
-
-            secondsBetweenFrames = 1 / fps;
-            microSecondsBetweenFrames = (long) (Global.DEFAULT_PTS_PER_SECOND * secondsBetweenFrames);
+            this.store = store;
         }
 
-        void splitVideo() {
+        int splitVideo() throws IOException {
             IMediaReader reader = ToolFactory.makeReader(videoPath);
             reader.setBufferedImageTypeToGenerate(BufferedImage.TYPE_3BYTE_BGR);
             reader.addListener(this);
-            while (reader.readPacket() == null) ;
+            while (failure == null && reader.readPacket() == null) ;
+
+            // the reader closes itself at the end of the video only
+            if (failure != null) {
+                reader.close();
+                throw failure;
+            }
+            return frames;
         }
 
         public void onVideoPicture(IVideoPictureEvent event) {
-            try {
-                if (event.getStreamIndex() != mVideoStreamIndex) {
-                    if (-1 == mVideoStreamIndex)
-                        mVideoStreamIndex = event.getStreamIndex();
-                    else
-                        return;
-                }
-
-                if (mLastPtsWrite == Global.NO_PTS)
-                    mLastPtsWrite = event.getTimeStamp() - microSecondsBetweenFrames;
-
-
-                saveImage(event.getImage());
-                mLastPtsWrite += microSecondsBetweenFrames;
-            } catch (Exception e) {
-                e.printStackTrace();
+            if (event.getStreamIndex() != mVideoStreamIndex) {
+                if (-1 == mVideoStreamIndex)
+                    mVideoStreamIndex = event.getStreamIndex();
+                else
+                    return;
             }
-        }
 
-        private boolean saveImage(BufferedImage image) {
             try {
-                // Rotate image by 90 degrees as the mp4 header is messed up
-                double sin = Math.abs(Math.sin(Math.toRadians(90))), cos = Math.abs(Math.cos(Math.toRadians(90)));
-                int w = image.getWidth(null), h = image.getHeight(null);
-                int neww = (int) Math.floor(w * cos + h * sin), newh = (int) Math.floor(h * cos + w * sin);
-                BufferedImage bimg = new BufferedImage(neww, newh, BufferedImage.TYPE_INT_ARGB);
-                Graphics2D g = bimg.createGraphics();
-                g.translate((neww - w) / 2, (newh - h) / 2);
-                g.rotate(Math.toRadians(90), w / 2, h / 2);
-                g.drawRenderedImage(image, null);
-                g.dispose();
-
-                String fileName = outputDir + File.separator + System.currentTimeMillis() + ".png";
-                ImageIO.write(bimg, "png", new File(fileName));
+                store.write(frames, rotate(event.getImage()));
+                frames++;
             } catch (IOException e) {
-                return false;
+                failure = e;
+            }
+        }
+
+        /**
+         * Rotates a BGR image clockwise by 90 degrees by copying its pixels.
+         */
+        private BufferedImage rotate(BufferedImage image) {
+            int w = image.getWidth();
+            int h = image.getHeight();
+            BufferedImage rotated = new BufferedImage(h, w, BufferedImage.TYPE_3BYTE_BGR);
+            byte[] src = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            byte[] dst = ((DataBufferByte) rotated.getRaster().getDataBuffer()).getData();
+
+            // pixel (x, y) moves to (h - 1 - y, x)
+            for (int y = 0; y < h; y++) {
+                int dstX = h - 1 - y;
+                for (int x = 0; x < w; x++) {
+                    int from = (y * w + x) * 3;
+                    int to = (x * h + dstX) * 3;
+                    dst[to] = src[from];
+                    dst[to + 1] = src[from + 1];
+                    dst[to + 2] = src[from + 2];
+                }
             }
-            return true;
+            return rotated;
         }
     }
 
     private class Writer {
         IMediaWriter writer;
-        private String picLocation;
-        private int timeStamp = 0;
-        private int frameLength;
+        private FrameStore store;
+        private long timeStamp = 0;
+        private long frameLength;
         private int width;
         private int heigth;
         private String outLocation;
 
-        Writer(String picLocation, double fps, int width, int height, String outLocation) {
-            this.picLocation = picLocation;
+        Writer(FrameStore store, double fps, int width, int height, String outLocation) {
+            this.store = store;
             this.width = width;
             this.heigth = height;
             this.outLocation = outLocation;
-            frameLength = (int) Math.round(1 / fps * 1000000);
+            frameLength = Math.round(1 / fps * 1000000);
         }
 
-        void readImages() {
+        int readImages() throws IOException {
             writer = ToolFactory.makeWriter(outLocation);
             writer.addVideoStream(0, 0, ICodec.ID.CODEC_ID_MPEG4, width, heigth);
 
-            File picDir = new File(picLocation);
-
-            File[] pics = picDir.listFiles();
-            if (pics == null)
-                return;
-
-            for (File file : pics) {
-
+            int frames = 0;
+            try {
                 BufferedImage bgrScreen;
-                try {
-                    bgrScreen = ImageIO.read(file);
-                } catch (IOException e) {
-                    return;
+                while ((bgrScreen = store.next()) != null) {
+                    writer.encodeVideo(0, bgrScreen, timeStamp, TimeUnit.MICROSECONDS);
+                    timeStamp += frameLength;
+                    frames++;
                 }
-                writer.encodeVideo(0, bgrScreen, timeStamp, TimeUnit.MICROSECONDS);
-                timeStamp += frameLength;
+            } finally {
+                writer.close();
             }
-            writer.close();
+            return frames;
         }
     }
 }
@@ -1,10 +1,18 @@
 package edu.kit.informatik.pcc.service.videoprocessing.chain.decryption;
 
+import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.CipherOutputStream;
+import javax.crypto.CipherInputStream;
+import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
-import java.io.*;
+import javax.crypto.ShortBufferException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.logging.Logger;
@@ -17,10 +25,56 @@ import java.util.logging.Logger;
  * Also exclusively uses 128 bit keys as some Android devices use other formats as default
  * but 128 bit is the only size supported by all Java JRE's.</p>
  *
+ * <p>Files are decrypted between file channels in large chunks. Each thread reuses its cipher and
+ * buffers for all files it decrypts. The buffer size can be changed with <b>-Dpcc.aes.bufferSize</b>
+ * and heap buffers can be used instead of direct ones with <b>-Dpcc.aes.directBuffers=false</b>.</p>
+ *
  * @author Josh Romanowski
  */
 public class AESDecryptor implements IFileDecryptor {
 
+    /**
+     * Algorithm used for decryption.
+     */
+    private static final String ALGORITHM = "AES/ECB/PKCS5Padding";
+    /**
+     * Size of the buffer encrypted data is read into.
+     */
+    private static final int BUFFER_SIZE = Integer.getInteger("pcc.aes.bufferSize", 512 * 1024);
+    /**
+     * Whether the buffers are allocated outside the heap.
+     */
+    private static final boolean DIRECT_BUFFERS =
+            Boolean.parseBoolean(System.getProperty("pcc.aes.directBuffers", "true"));
+
+    /**
+     * Cipher of each thread. Getting a cipher instance is expensive, initializing it with a new key is not.
+     */
+    private static final ThreadLocal<Cipher> CIPHER = new ThreadLocal<Cipher>() {
+        @Override
+        protected Cipher initialValue() {
+            try {
+                return Cipher.getInstance(ALGORITHM);
+            } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+                Logger.getGlobal().severe("Cipher " + ALGORITHM + " is not available");
+                return null;
+            }
+        }
+    };
+    /**
+     * Buffers of each thread, the first one for encrypted and the second one for decrypted data.
+     */
+    private static final ThreadLocal<ByteBuffer[]> BUFFERS = new ThreadLocal<ByteBuffer[]>() {
+        @Override
+        protected ByteBuffer[] initialValue() {
+            // the decrypted output of a chunk can be one block larger than the chunk itself
+            int outputSize = BUFFER_SIZE + 16;
+            return DIRECT_BUFFERS
+                    ? new ByteBuffer[]{ByteBuffer.allocateDirect(BUFFER_SIZE), ByteBuffer.allocateDirect(outputSize)}
+                    : new ByteBuffer[]{ByteBuffer.allocate(BUFFER_SIZE), ByteBuffer.allocate(outputSize)};
+        }
+    };
+
     /* #############################################################################################
      *                                  methods
      * ###########################################################################################*/
@@ -32,45 +86,86 @@ public class AESDecryptor implements IFileDecryptor {
             return false;
         }
 
-        // open files
-        FileInputStream encfis;
-        FileOutputStream decfos;
-        try {
-            encfis = new FileInputStream(input);
-            decfos = new FileOutputStream(output);
-        } catch (FileNotFoundException e) {
-            Logger.getGlobal().warning("Could not open input/output " + input.getName() + ", " + output.getName());
+        // initialize the thread's cipher
+        Cipher decipher = CIPHER.get();
+        if (decipher == null) {
             return false;
         }
-
-        // create cipher
-        Cipher decipher;
         try {
-            decipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
             decipher.init(Cipher.DECRYPT_MODE, key);
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException e) {
+        } catch (InvalidKeyException e) {
             Logger.getGlobal().warning("Creating cipher failed");
             return false;
         }
 
         // decrypt
-        try {
-            int read;
-            byte[] buffer = new byte[1024];
-            CipherOutputStream cos = new CipherOutputStream(decfos, decipher);
+        try (FileChannel in = FileChannel.open(input.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output.toPath(), StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] buffers = BUFFERS.get();
+            ByteBuffer encrypted = buffers[0];
+            ByteBuffer decrypted = buffers[1];
 
-            while ((read = encfis.read(buffer)) != -1) {
-                cos.write(buffer, 0, read);
-                cos.flush();
+            encrypted.clear();
+            while (in.read(encrypted) != -1) {
+                encrypted.flip();
+                decrypted.clear();
+                decipher.update(encrypted, decrypted);
+                write(decrypted, out);
+                encrypted.clear();
             }
-            cos.close();
-            decfos.flush();
-            decfos.close();
-            encfis.close();
-        } catch (IOException e) {
+
+            encrypted.flip();
+            decrypted.clear();
+            decipher.doFinal(encrypted, decrypted);
+            write(decrypted, out);
+        } catch (IOException | ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
             Logger.getGlobal().warning("Error while decrypting file " + input.getName());
             return false;
         }
         return true;
     }
+
+    @Override
+    public InputStream decrypt(InputStream input, SecretKey key) {
+        if (input == null || key == null) {
+            Logger.getGlobal().warning("Empty input/key");
+            return null;
+        }
+
+        // the stream keeps using its cipher after returning, so it can't share the thread's cipher
+        Cipher decipher = createCipher(key);
+        return (decipher == null) ? null : new CipherInputStream(input, decipher);
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    /**
+     * Creates a cipher for decrypting with the given key.
+     *
+     * @param key Symmetric key for decryption.
+     * @return Returns the initialized cipher or null if creating it failed.
+     */
+    private Cipher createCipher(SecretKey key) {
+        try {
+            Cipher decipher = Cipher.getInstance(ALGORITHM);
+            decipher.init(Cipher.DECRYPT_MODE, key);
+            return decipher;
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException e) {
+            Logger.getGlobal().warning("Creating cipher failed");
+            return null;
+        }
+    }
+
+    /**
+     * Writes the decrypted data of the buffer completely to the output channel.
+     */
+    private void write(ByteBuffer decrypted, FileChannel out) throws IOException {
+        decrypted.flip();
+        while (decrypted.hasRemaining()) {
+            out.write(decrypted);
+        }
+    }
 }
@@ -0,0 +1,316 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.decryption;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Versioned container format for files encrypted with AES-GCM in independent chunks.
+ * Clients can use it instead of plain AES/ECB to get authenticated files that can still be
+ * decrypted in parallel. Clients announce the format with the upload, see {@link EncryptionFormat}.
+ *
+ * <p>Layout of version 1, all numbers big endian:</p>
+ * <pre>
+ * header: magic "PCCG" (4) | version (1) | reserved, zero (3) | chunk size (4) | nonce prefix (8)
+ * chunks: ciphertext of chunk size plaintext bytes (the last chunk may be shorter) | GCM tag (16)
+ * </pre>
+ * <p>Chunk i is encrypted with the nonce <i>nonce prefix | i (4)</i> and the additional
+ * authenticated data <i>header | i (4) | last chunk flag (1)</i>, so chunks can neither be
+ * reordered nor cut off. Empty files consist of a single empty last chunk.</p>
+ *
+ * <p>The chunk size is chosen by the client and buffers of that size are allocated before any chunk
+ * is authenticated, so it is limited to {@link #MAX_CHUNK_SIZE}.</p>
+ *
+ * @author Josh Romanowski
+ */
+public class ChunkedGCMFormat {
+
+    /**
+     * Magic bytes every file of this format starts with.
+     */
+    public static final byte[] MAGIC = {'P', 'C', 'C', 'G'};
+    /**
+     * Version of the format written by this class.
+     */
+    public static final byte VERSION = 1;
+    /**
+     * Size of the header in bytes.
+     */
+    public static final int HEADER_SIZE = 20;
+    /**
+     * Size of the authentication tag of each chunk in bytes.
+     */
+    public static final int TAG_SIZE = 16;
+    /**
+     * Default amount of plaintext bytes per chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    /**
+     * Maximum amount of plaintext bytes per chunk.
+     */
+    public static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private static final String ALGORITHM = "AES/GCM/NoPadding";
+    private static final int NONCE_PREFIX_SIZE = 8;
+
+    /**
+     * Cipher of each thread.
+     */
+    private static final ThreadLocal<Cipher> CIPHER = new ThreadLocal<Cipher>() {
+        @Override
+        protected Cipher initialValue() {
+            try {
+                return Cipher.getInstance(ALGORITHM);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cipher " + ALGORITHM + " is not available", e);
+            }
+        }
+    };
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Raw header of the file.
+     */
+    private final byte[] header;
+    /**
+     * Amount of plaintext bytes per chunk.
+     */
+    private final int chunkSize;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Parses the header of a file.
+     *
+     * @param header Raw header bytes.
+     * @throws IOException in case the header is no valid header of a supported version
+     *                     or the chunk size exceeds {@link #MAX_CHUNK_SIZE}.
+     */
+    public ChunkedGCMFormat(byte[] header) throws IOException {
+        if (header.length != HEADER_SIZE || !hasMagic(header)) {
+            throw new IOException("Not a chunked GCM file");
+        }
+        if (header[4] != VERSION) {
+            throw new IOException("Unsupported chunked GCM version " + header[4]);
+        }
+        this.header = header.clone();
+        this.chunkSize = ByteBuffer.wrap(header, 8, 4).getInt();
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IOException("Invalid chunk size " + chunkSize);
+        }
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    /**
+     * Checks whether data starts with the magic bytes of the format.
+     *
+     * @param start First bytes of the data.
+     * @return Returns whether the data is in chunked GCM format.
+     */
+    public static boolean hasMagic(byte[] start) {
+        return start.length >= MAGIC.length && Arrays.equals(Arrays.copyOf(start, MAGIC.length), MAGIC);
+    }
+
+    /**
+     * Encrypts a stream into the chunked GCM format. This is the reference implementation for clients.
+     *
+     * @param input     Plaintext input, gets read completely.
+     * @param output    Output the encrypted file is written to.
+     * @param key       Symmetric AES key.
+     * @param chunkSize Amount of plaintext bytes per chunk.
+     * @throws IOException              in case reading or writing fails.
+     * @throws GeneralSecurityException in case encrypting fails.
+     */
+    public static void encrypt(InputStream input, OutputStream output, SecretKey key, int chunkSize)
+            throws IOException, GeneralSecurityException {
+        byte[] noncePrefix = new byte[NONCE_PREFIX_SIZE];
+        new SecureRandom().nextBytes(noncePrefix);
+
+        byte[] header = ByteBuffer.allocate(HEADER_SIZE).put(MAGIC).put(VERSION).put(new byte[3])
+                .putInt(chunkSize).put(noncePrefix).array();
+        output.write(header);
+        ChunkedGCMFormat format = new ChunkedGCMFormat(header);
+
+        PushbackInputStream in = new PushbackInputStream(input, 1);
+        byte[] chunk = new byte[chunkSize];
+        Cipher cipher = CIPHER.get();
+        for (int index = 0; ; index++) {
+            int length = readFully(in, chunk, chunkSize);
+            boolean last = isEnd(in);
+            cipher.init(Cipher.ENCRYPT_MODE, key, format.getParameters(index));
+            cipher.updateAAD(format.getAssociatedData(index, last));
+            output.write(cipher.doFinal(chunk, 0, length));
+            if (last) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Wraps an encrypted stream so it gets decrypted chunk by chunk while being read.
+     *
+     * @param input Encrypted input stream starting with the header.
+     * @param key   Symmetric AES key.
+     * @return Returns the decrypting stream.
+     * @throws IOException in case the header can't be read or is invalid.
+     */
+    public static InputStream decrypt(InputStream input, SecretKey key) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        if (readFully(input, header, HEADER_SIZE) != HEADER_SIZE) {
+            throw new IOException("Chunked GCM header is incomplete");
+        }
+        return new DecryptingInputStream(new ChunkedGCMFormat(header), input, key);
+    }
+
+    /**
+     * Decrypts a single chunk.
+     *
+     * @param key        Symmetric AES key.
+     * @param index      Index of the chunk.
+     * @param last       Whether the chunk is the last one of the file.
+     * @param input      Encrypted chunk including its tag.
+     * @param inputSize  Size of the encrypted chunk.
+     * @param output     Buffer for the decrypted chunk, has to hold at least the chunk size.
+     * @return Returns the amount of decrypted bytes.
+     * @throws GeneralSecurityException in case the chunk is not authentic.
+     */
+    public int decryptChunk(SecretKey key, int index, boolean last, byte[] input, int inputSize, byte[] output)
+            throws GeneralSecurityException {
+        Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, getParameters(index));
+        cipher.updateAAD(getAssociatedData(index, last));
+        return cipher.doFinal(input, 0, inputSize, output, 0);
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    private GCMParameterSpec getParameters(int index) {
+        byte[] nonce = ByteBuffer.allocate(NONCE_PREFIX_SIZE + 4)
+                .put(header, HEADER_SIZE - NONCE_PREFIX_SIZE, NONCE_PREFIX_SIZE).putInt(index).array();
+        return new GCMParameterSpec(TAG_SIZE * 8, nonce);
+    }
+
+    private byte[] getAssociatedData(int index, boolean last) {
+        return ByteBuffer.allocate(HEADER_SIZE + 5).put(header).putInt(index).put((byte) (last ? 1 : 0)).array();
+    }
+
+    private static int readFully(InputStream input, byte[] buffer, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int read = input.read(buffer, total, length - total);
+            if (read == -1) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static boolean isEnd(PushbackInputStream input) throws IOException {
+        int next = input.read();
+        if (next == -1) {
+            return true;
+        }
+        input.unread(next);
+        return false;
+    }
+
+    /* #############################################################################################
+     *                                  getter/setter
+     * ###########################################################################################*/
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Size of an encrypted chunk including its tag.
+     *
+     * @return Returns the size in bytes.
+     */
+    public int getEncryptedChunkSize() {
+        return chunkSize + TAG_SIZE;
+    }
+
+    /**
+     * Stream decrypting one chunk after the other.
+     */
+    private static class DecryptingInputStream extends InputStream {
+        private final ChunkedGCMFormat format;
+        private final PushbackInputStream input;
+        private final SecretKey key;
+        private final byte[] encrypted;
+        private final byte[] decrypted;
+        private int index;
+        private int position;
+        private int limit;
+        private boolean finished;
+
+        DecryptingInputStream(ChunkedGCMFormat format, InputStream input, SecretKey key) {
+            this.format = format;
+            this.input = new PushbackInputStream(input, 1);
+            this.key = key;
+            this.encrypted = new byte[format.getEncryptedChunkSize()];
+            this.decrypted = new byte[format.getChunkSize()];
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return (read(single, 0, 1) == -1) ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            while (position == limit) {
+                if (finished) {
+                    return -1;
+                }
+                nextChunk();
+            }
+            int count = Math.min(length, limit - position);
+            System.arraycopy(decrypted, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+
+        private void nextChunk() throws IOException {
+            int size = readFully(input, encrypted, encrypted.length);
+            boolean last = isEnd(input);
+            if (size < TAG_SIZE || (!last && size != encrypted.length)) {
+                throw new IOException("Chunk " + index + " is incomplete");
+            }
+            try {
+                limit = format.decryptChunk(key, index, last, encrypted, size, decrypted);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Chunk " + index + " is not authentic", e);
+            }
+            position = 0;
+            finished = last;
+            index++;
+        }
+    }
+}
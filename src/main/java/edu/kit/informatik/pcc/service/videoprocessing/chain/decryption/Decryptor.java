@@ -1,21 +1,40 @@
 package edu.kit.informatik.pcc.service.videoprocessing.chain.decryption;
 
+import edu.kit.informatik.pcc.service.data.Metadata;
 import edu.kit.informatik.pcc.service.videoprocessing.EditingContext;
 import edu.kit.informatik.pcc.service.videoprocessing.IStage;
 
 import javax.crypto.SecretKey;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
 
 /**
  * Class that decrypts uploaded the files.
  * Takes a key decryptor and decrypts the uploaded key.
  * After that it takes the key and decrypts the metadata and
- * the video with it.
+ * the video with it. The video is decrypted in the background while the metadata
+ * gets decrypted and validated, so invalid metadata stops the video decryption early.
  *
  * @author Josh Romanowski
  */
 public class Decryptor implements IStage {
 
+    /**
+     * Executor decrypting the videos in the background.
+     */
+    private static final ExecutorService VIDEO_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "pcc-video-decryption");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     /* #############################################################################################
      *                                  attributes
      * ###########################################################################################*/
@@ -35,10 +54,19 @@ public class Decryptor implements IStage {
      * ###########################################################################################*/
 
     /**
-     * Creates the used decryptors.
+     * Creates the used decryptors for files encrypted with AES/ECB.
      */
     public Decryptor() {
-        fileDecryptor = new AESDecryptor();
+        this(EncryptionFormat.AES_ECB);
+    }
+
+    /**
+     * Creates the used decryptors.
+     *
+     * @param format Format the uploaded files are encrypted in.
+     */
+    public Decryptor(EncryptionFormat format) {
+        fileDecryptor = new ParallelAESDecryptor(format);
         keyDecryptor = new RSADecryptor();
     }
 
@@ -69,13 +97,72 @@ public class Decryptor implements IStage {
      * @param decMeta Decrypted metadata file.
      * @return Returns whether decrypting was successful or not.
      */
-    protected boolean decrypt(File encVid, File encKey, File encMeta, File decVid, File decMeta) {
-        SecretKey key = keyDecryptor.decrypt(encKey);
+    protected boolean decrypt(final File encVid, File encKey, File encMeta, final File decVid, File decMeta) {
+        final SecretKey key = keyDecryptor.decrypt(encKey);
 
         if (key == null) {
             return false;
         }
 
-        return fileDecryptor.decrypt(encVid, key, decVid) && fileDecryptor.decrypt(encMeta, key, decMeta);
+        Future<Boolean> video = VIDEO_EXECUTOR.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return fileDecryptor.decrypt(encVid, key, decVid);
+            }
+        });
+
+        if (!fileDecryptor.decrypt(encMeta, key, decMeta) || !isMetadataValid(decMeta)) {
+            Logger.getGlobal().warning("Metadata invalid, cancelling decryption of the video");
+            video.cancel(true);
+            return false;
+        }
+
+        try {
+            return video.get();
+        } catch (InterruptedException e) {
+            video.cancel(true);
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            Logger.getGlobal().warning("Decrypting the video failed");
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether decrypted metadata can be read.
+     *
+     * @param decMeta Decrypted metadata file.
+     * @return Returns whether the metadata is valid or not.
+     */
+    public static boolean isMetadataValid(File decMeta) {
+        try {
+            new Metadata(new String(Files.readAllBytes(decMeta.toPath())));
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Decrypts the uploaded key given as raw data via the keyDecryptor.
+     * Used when the uploaded files get decrypted while they are saved.
+     *
+     * @param encKey Data of the encrypted key.
+     * @return Returns the decrypted key or null if decrypting failed.
+     */
+    public SecretKey decryptKey(byte[] encKey) {
+        return keyDecryptor.decryptData(encKey);
+    }
+
+    /**
+     * Wraps an uploaded stream so it gets decrypted with the given key while being read.
+     *
+     * @param input Encrypted input stream.
+     * @param key   Decrypted symmetric key.
+     * @return Returns the decrypting stream or null if the decryption could not be set up.
+     */
+    public InputStream decryptStream(InputStream input, SecretKey key) {
+        return fileDecryptor.decrypt(input, key);
     }
 }
@@ -0,0 +1,67 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.decryption;
+
+/**
+ * Formats uploaded videos and metadata can be encrypted in.
+ * The client announces the format with the upload, the content of the files is never used to guess it.
+ *
+ * @author Josh Romanowski
+ */
+public enum EncryptionFormat {
+
+    /**
+     * Plain AES/ECB with PKCS5 padding, used by all clients that don't announce a format.
+     */
+    AES_ECB("aes-ecb"),
+    /**
+     * Authenticated AES-GCM in independent chunks, see {@link ChunkedGCMFormat}.
+     */
+    CHUNKED_GCM("chunked-gcm");
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Name clients use to announce the format.
+     */
+    private final String name;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    EncryptionFormat(String name) {
+        this.name = name;
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    /**
+     * Gets the format announced by a client.
+     *
+     * @param name Name of the format, null for clients that don't announce one.
+     * @return Returns the format.
+     * @throws IllegalArgumentException in case the format is unknown.
+     */
+    public static EncryptionFormat fromName(String name) {
+        if (name == null) {
+            return AES_ECB;
+        }
+        for (EncryptionFormat format : values()) {
+            if (format.name.equalsIgnoreCase(name.trim())) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown encryption format " + name);
+    }
+
+    /* #############################################################################################
+     *                                  getter/setter
+     * ###########################################################################################*/
+
+    public String getName() {
+        return name;
+    }
+}
@@ -2,6 +2,7 @@ package edu.kit.informatik.pcc.service.videoprocessing.chain.decryption;
 
 import javax.crypto.SecretKey;
 import java.io.File;
+import java.io.InputStream;
 
 /**
  * Interface for classes that decrypt single files with
@@ -26,4 +27,13 @@ public interface IFileDecryptor {
      * @return Returns whether decryption was successfull or not.
      */
     public boolean decrypt(File input, SecretKey key, File output);
+
+    /**
+     * Wraps an encrypted stream so it gets decrypted while being read.
+     *
+     * @param input Encrypted input stream.
+     * @param key   Symmetric key for decryption.
+     * @return Returns the decrypting stream or null if the decryption could not be set up.
+     */
+    public InputStream decrypt(InputStream input, SecretKey key);
 }
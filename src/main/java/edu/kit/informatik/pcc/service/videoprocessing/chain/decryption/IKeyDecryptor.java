@@ -25,4 +25,13 @@ public interface IKeyDecryptor {
      * @return Returns the decrypted symmetric SecretKey.
      */
     public SecretKey decrypt(File encKey);
+
+    /**
+     * Decrypts the input SecretKey given as raw data with the own
+     * private asymmetric key.
+     *
+     * @param encKey Data of the encrypted input key.
+     * @return Returns the decrypted symmetric SecretKey.
+     */
+    public SecretKey decryptData(byte[] encKey);
 }
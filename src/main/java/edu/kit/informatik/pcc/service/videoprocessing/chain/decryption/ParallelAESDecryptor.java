@@ -0,0 +1,392 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.decryption;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Decrypts files in parallel by splitting them into independent segments.
+ * Files in the {@link ChunkedGCMFormat} are split into their chunks. AES/ECB files are split into
+ * block aligned segments that are decrypted without padding, only the last segment removes the padding.
+ * Every segment is read and written at its own position of the files, so the segments are decrypted
+ * by all threads of a shared ForkJoinPool at once. Each thread reuses its segment buffers.
+ * The format of the files is given by the client when uploading, see {@link EncryptionFormat}.
+ *
+ * <p>AES/ECB files smaller than the parallel threshold as well as streams are decrypted sequentially
+ * by the {@link AESDecryptor}. The segment size, threshold and parallelism can be changed via
+ * <b>-Dpcc.aes.segmentSize</b>, <b>-Dpcc.aes.parallelThreshold</b> and <b>-Dpcc.aes.parallelism</b>.</p>
+ *
+ * @author Josh Romanowski
+ */
+public class ParallelAESDecryptor implements IFileDecryptor {
+
+    /**
+     * Size of the segments of AES/ECB files, rounded down to whole blocks.
+     */
+    private static final int SEGMENT_SIZE = Integer.getInteger("pcc.aes.segmentSize", 4 * 1024 * 1024) / 16 * 16;
+    /**
+     * Minimum size of AES/ECB files that are decrypted in parallel.
+     */
+    private static final long PARALLEL_THRESHOLD = Long.getLong("pcc.aes.parallelThreshold", 8L * 1024 * 1024);
+    /**
+     * Pool shared by all decryptions.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Integer.getInteger("pcc.aes.parallelism", Runtime.getRuntime().availableProcessors()));
+    /**
+     * Whether the segment buffers are allocated outside the heap.
+     */
+    private static final boolean DIRECT_BUFFERS =
+            Boolean.parseBoolean(System.getProperty("pcc.aes.directBuffers", "true"));
+
+    /**
+     * Ciphers of each thread, the first one without padding, the second one with padding.
+     */
+    private static final ThreadLocal<Cipher[]> ECB_CIPHERS = new ThreadLocal<Cipher[]>() {
+        @Override
+        protected Cipher[] initialValue() {
+            try {
+                return new Cipher[]{Cipher.getInstance("AES/ECB/NoPadding"),
+                        Cipher.getInstance("AES/ECB/PKCS5Padding")};
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("AES/ECB is not available", e);
+            }
+        }
+    };
+    /**
+     * Buffers of each thread for AES/ECB segments, the first one for encrypted and the second one for decrypted data.
+     */
+    private static final ThreadLocal<ByteBuffer[]> ECB_BUFFERS = new ThreadLocal<ByteBuffer[]>() {
+        @Override
+        protected ByteBuffer[] initialValue() {
+            return DIRECT_BUFFERS
+                    ? new ByteBuffer[]{ByteBuffer.allocateDirect(SEGMENT_SIZE), ByteBuffer.allocateDirect(SEGMENT_SIZE)}
+                    : new ByteBuffer[]{ByteBuffer.allocate(SEGMENT_SIZE), ByteBuffer.allocate(SEGMENT_SIZE)};
+        }
+    };
+    /**
+     * Buffers of each thread for GCM chunks, the first one for encrypted and the second one for decrypted data.
+     * They grow with the largest chunk size seen, which is limited by {@link ChunkedGCMFormat#MAX_CHUNK_SIZE}.
+     */
+    private static final ThreadLocal<byte[][]> GCM_BUFFERS = new ThreadLocal<byte[][]>() {
+        @Override
+        protected byte[][] initialValue() {
+            return new byte[][]{new byte[0], new byte[0]};
+        }
+    };
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Decryptor used for small files and streams.
+     */
+    private AESDecryptor sequentialDecryptor;
+    /**
+     * Format the files are encrypted in.
+     */
+    private EncryptionFormat format;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Creates a decryptor for AES/ECB files.
+     */
+    public ParallelAESDecryptor() {
+        this(EncryptionFormat.AES_ECB);
+    }
+
+    /**
+     * Creates a decryptor for files of the given format.
+     *
+     * @param format Format the files are encrypted in.
+     */
+    public ParallelAESDecryptor(EncryptionFormat format) {
+        this.sequentialDecryptor = new AESDecryptor();
+        this.format = format;
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    @Override
+    public boolean decrypt(File input, SecretKey key, File output) {
+        if (input == null || key == null || output == null) {
+            Logger.getGlobal().warning("Empty input/key/output");
+            return false;
+        }
+
+        try (FileChannel in = FileChannel.open(input.toPath(), StandardOpenOption.READ)) {
+            ChunkedGCMFormat gcmFormat = (format == EncryptionFormat.CHUNKED_GCM) ? readFormat(in) : null;
+            if (gcmFormat == null && in.size() < PARALLEL_THRESHOLD) {
+                return sequentialDecryptor.decrypt(input, key, output);
+            }
+
+            try (FileChannel out = FileChannel.open(output.toPath(), StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                SegmentDecryptor decryptor = (gcmFormat == null)
+                        ? new ECBSegmentDecryptor(in, out, key)
+                        : new GCMSegmentDecryptor(gcmFormat, in, out, key);
+                run(decryptor);
+                out.truncate(decryptor.getOutputSize());
+            }
+        } catch (IOException | RuntimeException e) {
+            Logger.getGlobal().warning("Error while decrypting file " + input.getName() + ": " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public InputStream decrypt(InputStream input, SecretKey key) {
+        if (input == null || key == null) {
+            Logger.getGlobal().warning("Empty input/key");
+            return null;
+        }
+
+        if (format != EncryptionFormat.CHUNKED_GCM) {
+            return sequentialDecryptor.decrypt(input, key);
+        }
+        try {
+            return ChunkedGCMFormat.decrypt(input, key);
+        } catch (IOException e) {
+            Logger.getGlobal().warning("Setting up decryption failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    /**
+     * Reads the chunked GCM header of a file.
+     *
+     * @return Returns the format of the file.
+     * @throws IOException in case the file has no valid header.
+     */
+    private static ChunkedGCMFormat readFormat(FileChannel in) throws IOException {
+        if (in.size() < ChunkedGCMFormat.HEADER_SIZE) {
+            throw new IOException("Chunked GCM header is incomplete");
+        }
+        byte[] header = new byte[ChunkedGCMFormat.HEADER_SIZE];
+        readFully(in, ByteBuffer.wrap(header), 0);
+        return new ChunkedGCMFormat(header);
+    }
+
+    /**
+     * Decrypts all segments on the pool and waits for them. If the waiting thread gets interrupted,
+     * the segments that did not start yet are skipped.
+     */
+    private void run(SegmentDecryptor decryptor) throws IOException {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        ForkJoinTask<Void> task = POOL.submit(new SegmentAction(decryptor, cancelled, 0, decryptor.getSegmentCount()));
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Decryption was cancelled");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = in.read(buffer, position);
+            if (read == -1) {
+                throw new EOFException("File ended unexpectedly");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += out.write(buffer, position);
+        }
+    }
+
+    /**
+     * Decrypts a file segment by segment. Segments have to be independent of each other.
+     */
+    private interface SegmentDecryptor {
+        int getSegmentCount();
+
+        long getOutputSize();
+
+        void decryptSegment(int segment) throws IOException, GeneralSecurityException;
+    }
+
+    /**
+     * Splits a range of segments until each task decrypts a single segment.
+     */
+    private static class SegmentAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SegmentDecryptor decryptor;
+        private final AtomicBoolean cancelled;
+        private final int from;
+        private final int to;
+
+        SegmentAction(SegmentDecryptor decryptor, AtomicBoolean cancelled, int from, int to) {
+            this.decryptor = decryptor;
+            this.cancelled = cancelled;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled.get()) {
+                return;
+            }
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SegmentAction(decryptor, cancelled, from, middle),
+                        new SegmentAction(decryptor, cancelled, middle, to));
+                return;
+            }
+            if (from == to) {
+                return;
+            }
+            try {
+                decryptor.decryptSegment(from);
+            } catch (IOException | GeneralSecurityException e) {
+                throw new IllegalStateException("Decrypting segment " + from + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * Decrypts AES/ECB files. Every segment except the last one has the same size before and after decryption.
+     */
+    private static class ECBSegmentDecryptor implements SegmentDecryptor {
+        private final FileChannel in;
+        private final FileChannel out;
+        private final SecretKey key;
+        private final long size;
+        private final int segments;
+        private volatile long outputSize;
+
+        ECBSegmentDecryptor(FileChannel in, FileChannel out, SecretKey key) throws IOException {
+            this.in = in;
+            this.out = out;
+            this.key = key;
+            this.size = in.size();
+            if (size == 0 || size % 16 != 0) {
+                throw new IOException("Encrypted size " + size + " is no multiple of the block size");
+            }
+            this.segments = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        }
+
+        @Override
+        public int getSegmentCount() {
+            return segments;
+        }
+
+        @Override
+        public long getOutputSize() {
+            return outputSize;
+        }
+
+        @Override
+        public void decryptSegment(int segment) throws IOException, GeneralSecurityException {
+            boolean last = segment == segments - 1;
+            long position = (long) segment * SEGMENT_SIZE;
+            int length = (int) Math.min(SEGMENT_SIZE, size - position);
+
+            ByteBuffer[] buffers = ECB_BUFFERS.get();
+            ByteBuffer encrypted = buffers[0];
+            encrypted.clear().limit(length);
+            readFully(in, encrypted, position);
+            encrypted.flip();
+
+            Cipher cipher = ECB_CIPHERS.get()[last ? 1 : 0];
+            cipher.init(Cipher.DECRYPT_MODE, key);
+            ByteBuffer decrypted = buffers[1];
+            decrypted.clear();
+            cipher.doFinal(encrypted, decrypted);
+            decrypted.flip();
+
+            if (last) {
+                outputSize = position + decrypted.remaining();
+            }
+            writeFully(out, decrypted, position);
+        }
+    }
+
+    /**
+     * Decrypts files of the chunked GCM format, every chunk is a segment.
+     */
+    private static class GCMSegmentDecryptor implements SegmentDecryptor {
+        private final ChunkedGCMFormat format;
+        private final FileChannel in;
+        private final FileChannel out;
+        private final SecretKey key;
+        private final long size;
+        private final int chunks;
+
+        GCMSegmentDecryptor(ChunkedGCMFormat format, FileChannel in, FileChannel out, SecretKey key)
+                throws IOException {
+            this.format = format;
+            this.in = in;
+            this.out = out;
+            this.key = key;
+            this.size = in.size() - ChunkedGCMFormat.HEADER_SIZE;
+            long chunkCount = (size + format.getEncryptedChunkSize() - 1) / format.getEncryptedChunkSize();
+            long lastSize = size - (chunkCount - 1) * format.getEncryptedChunkSize();
+            if (chunkCount == 0 || chunkCount > Integer.MAX_VALUE || lastSize < ChunkedGCMFormat.TAG_SIZE) {
+                throw new IOException("Chunked GCM file is truncated");
+            }
+            this.chunks = (int) chunkCount;
+        }
+
+        @Override
+        public int getSegmentCount() {
+            return chunks;
+        }
+
+        @Override
+        public long getOutputSize() {
+            return size - (long) chunks * ChunkedGCMFormat.TAG_SIZE;
+        }
+
+        @Override
+        public void decryptSegment(int chunk) throws IOException, GeneralSecurityException {
+            long position = (long) chunk * format.getEncryptedChunkSize();
+            int length = (int) Math.min(format.getEncryptedChunkSize(), size - position);
+
+            byte[][] buffers = GCM_BUFFERS.get();
+            if (buffers[0].length < format.getEncryptedChunkSize()) {
+                buffers[0] = new byte[format.getEncryptedChunkSize()];
+                buffers[1] = new byte[format.getChunkSize()];
+            }
+            byte[] encrypted = buffers[0];
+            byte[] decrypted = buffers[1];
+            readFully(in, ByteBuffer.wrap(encrypted, 0, length), ChunkedGCMFormat.HEADER_SIZE + position);
+
+            int decryptedLength = format.decryptChunk(key, chunk, chunk == chunks - 1,
+                    encrypted, length, decrypted);
+            writeFully(out, ByteBuffer.wrap(decrypted, 0, decryptedLength), (long) chunk * format.getChunkSize());
+        }
+    }
+}
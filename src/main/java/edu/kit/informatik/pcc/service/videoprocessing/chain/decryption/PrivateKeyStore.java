@@ -0,0 +1,148 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.decryption;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.security.PrivateKey;
+import java.util.logging.Logger;
+
+/**
+ * Holds the private asymmetric key shared by all key decryptors.
+ * The key is loaded once, by default from the classpath resource <b>/private.key</b>.
+ * If a key file is given via <b>-Dpcc.privateKey.file</b>, the key is read from that file instead
+ * and reloaded as soon as the file changes, so keys can be rotated without restarting the server.
+ * Both sources contain the serialized {@link PrivateKey} object.
+ *
+ * @author Josh Romanowski
+ */
+public class PrivateKeyStore {
+
+    /**
+     * Classpath location of the private key used if no key file is given.
+     */
+    private static final String PRIVATE_KEY_RESOURCE = "/private.key";
+    /**
+     * Optional key file that gets watched for changes.
+     */
+    private static final String PRIVATE_KEY_FILE = System.getProperty("pcc.privateKey.file");
+    /**
+     * Minimum time between two checks of the key file for changes.
+     */
+    private static final long RELOAD_CHECK_INTERVAL = Long.getLong("pcc.privateKey.reloadCheckMs", 5000L);
+
+    /* #############################################################################################
+     *                                  attributes
+     * ###########################################################################################*/
+
+    /**
+     * Instance of the PrivateKeyStore used for Singleton behaviour.
+     */
+    private static PrivateKeyStore instance;
+
+    /**
+     * Current private key.
+     */
+    private volatile PrivateKey privateKey;
+    /**
+     * Key file or null if the key is loaded from the classpath.
+     */
+    private final File keyFile;
+    /**
+     * Modification time of the key file when it was loaded last.
+     */
+    private long lastModified;
+    /**
+     * Time of the next check of the key file.
+     */
+    private long nextCheck;
+
+    /* #############################################################################################
+     *                                  constructors
+     * ###########################################################################################*/
+
+    /**
+     * Loads the private key.
+     *
+     * @throws IllegalStateException in case the key is missing or can't be read.
+     */
+    private PrivateKeyStore() {
+        keyFile = (PRIVATE_KEY_FILE == null) ? null : new File(PRIVATE_KEY_FILE);
+        try {
+            if (keyFile != null) {
+                lastModified = keyFile.lastModified();
+                nextCheck = System.currentTimeMillis() + RELOAD_CHECK_INTERVAL;
+            }
+            privateKey = load();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            throw new IllegalStateException("Reading the private key failed", e);
+        }
+    }
+
+    /**
+     * Gets the singleton instance of the PrivateKeyStore. Loads the key on first access.
+     *
+     * @return Returns the singleton instance.
+     * @throws IllegalStateException in case the key is missing or can't be read.
+     */
+    public static synchronized PrivateKeyStore getInstance() {
+        return (instance == null) ? instance = new PrivateKeyStore() : instance;
+    }
+
+    /* #############################################################################################
+     *                                  methods
+     * ###########################################################################################*/
+
+    /**
+     * Gets the current private key. Reloads the key first if the key file changed.
+     *
+     * @return Returns the private key.
+     */
+    public PrivateKey getPrivateKey() {
+        if (keyFile != null) {
+            checkForUpdate();
+        }
+        return privateKey;
+    }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    /**
+     * Reloads the key if the key file changed since it was loaded. Keeps the old key if
+     * the new one can't be read, e.g. because the file is being written at the moment.
+     */
+    private synchronized void checkForUpdate() {
+        long now = System.currentTimeMillis();
+        if (now < nextCheck) {
+            return;
+        }
+        nextCheck = now + RELOAD_CHECK_INTERVAL;
+
+        long modified = keyFile.lastModified();
+        if (modified == lastModified) {
+            return;
+        }
+
+        try {
+            privateKey = load();
+            lastModified = modified;
+            Logger.getGlobal().info("Reloaded private key from " + keyFile.getPath());
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            Logger.getGlobal().warning("Reloading the private key failed, keeping the old key");
+        }
+    }
+
+    private PrivateKey load() throws IOException, ClassNotFoundException {
+        InputStream input = (keyFile != null)
+                ? new FileInputStream(keyFile) : getClass().getResourceAsStream(PRIVATE_KEY_RESOURCE);
+        if (input == null) {
+            throw new IOException("Private key file was missing");
+        }
+        try (ObjectInputStream inputStream = new ObjectInputStream(input)) {
+            return (PrivateKey) inputStream.readObject();
+        }
+    }
+}
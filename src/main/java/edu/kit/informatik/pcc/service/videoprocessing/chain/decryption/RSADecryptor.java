@@ -1,13 +1,9 @@
 package edu.kit.informatik.pcc.service.videoprocessing.chain.decryption;
 
-import edu.kit.informatik.pcc.service.server.Main;
-
 import javax.crypto.*;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.security.InvalidKeyException;
@@ -19,6 +15,8 @@ import java.util.logging.Logger;
 /**
  * Decrypts a SecretKey with it's private asymmetric Key.
  * Therefore uses the RSA algorithm for decryption.
+ * The private key is shared via the {@link PrivateKeyStore} and every thread keeps its own cipher
+ * initialized with it, so unwrapping a key needs neither deserialization nor a provider lookup.
  *
  * @author Josh Romanowski
  */
@@ -29,32 +27,27 @@ public class RSADecryptor implements IKeyDecryptor {
      * ###########################################################################################*/
 
     /**
-     * Location of the private asymmetric key.
+     * Cipher of each thread together with the private key it is initialized with.
      */
-    private static final String PRIVATE_KEY_FILE = "/private.key";
+    private static final ThreadLocal<KeyedCipher> CIPHER = new ThreadLocal<>();
+
     /**
-     * Private asymmetric key.
+     * Store holding the private asymmetric key.
      */
-    private PrivateKey privateKey;
+    private PrivateKeyStore keyStore;
 
     /* #############################################################################################
      *                                  constructors
      * ###########################################################################################*/
 
     /**
-     * Loads the private asymmetric key.
+     * Gets the shared private asymmetric key.
      */
     public RSADecryptor() {
         try {
-            ObjectInputStream inputStream = new ObjectInputStream(getClass().getResourceAsStream(PRIVATE_KEY_FILE));
-            privateKey = (PrivateKey) inputStream.readObject();
-            inputStream.close();
-        } catch (FileNotFoundException e) {
-            Logger.getGlobal().severe("Private key file was missing");
-            Main.stopServer();
-        } catch (ClassNotFoundException | IOException e) {
+            keyStore = PrivateKeyStore.getInstance();
+        } catch (IllegalStateException e) {
             Logger.getGlobal().severe("Reading the private key failed");
-            Main.stopServer();
         }
     }
 
@@ -78,14 +71,29 @@ public class RSADecryptor implements IKeyDecryptor {
             return null;
         }
 
+        return decryptData(cipherText);
+    }
+
+    @Override
+    public SecretKey decryptData(byte[] cipherText) {
+        if (cipherText == null) {
+            Logger.getGlobal().warning("Asymmetric key missing");
+            return null;
+        }
+
+        if (keyStore == null) {
+            Logger.getGlobal().warning("Private key missing");
+            return null;
+        }
+
         // decrypt the text using the private key
         String plainText;
         try {
-            final Cipher cipher = Cipher.getInstance("RSA/ECB/PKCS1Padding");
-            cipher.init(Cipher.DECRYPT_MODE, privateKey);
-            plainText = new String(cipher.doFinal(cipherText));
+            plainText = new String(getCipher(keyStore.getPrivateKey()).doFinal(cipherText));
         } catch (NoSuchAlgorithmException | NoSuchPaddingException
                 | IllegalBlockSizeException | BadPaddingException | InvalidKeyException e) {
+            // a failed decryption can leave buffered input behind, so the cipher must not be reused
+            CIPHER.remove();
             Logger.getGlobal().warning("Creating cipher failed");
             return null;
         }
@@ -94,4 +102,40 @@ public class RSADecryptor implements IKeyDecryptor {
         byte[] decodedKey = Base64.getDecoder().decode(plainText);
         return new SecretKeySpec(decodedKey, 0, decodedKey.length, "AES");
     }
+
+    /* #############################################################################################
+     *                                  helper methods
+     * ###########################################################################################*/
+
+    /**
+     * Gets the cipher of the current thread. Creates it on first use and initializes it again
+     * only if the private key changed.
+     *
+     * @param privateKey Current private key.
+     * @return Returns the initialized cipher.
+     */
+    private Cipher getCipher(PrivateKey privateKey)
+            throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+        KeyedCipher keyedCipher = CIPHER.get();
+        if (keyedCipher == null || keyedCipher.key != privateKey) {
+            Cipher cipher = (keyedCipher == null) ? Cipher.getInstance("RSA/ECB/PKCS1Padding") : keyedCipher.cipher;
+            cipher.init(Cipher.DECRYPT_MODE, privateKey);
+            keyedCipher = new KeyedCipher(cipher, privateKey);
+            CIPHER.set(keyedCipher);
+        }
+        return keyedCipher.cipher;
+    }
+
+    /**
+     * Cipher together with the key it is initialized with.
+     */
+    private static class KeyedCipher {
+        private final Cipher cipher;
+        private final PrivateKey key;
+
+        KeyedCipher(Cipher cipher, PrivateKey key) {
+            this.cipher = cipher;
+            this.key = key;
+        }
+    }
 }
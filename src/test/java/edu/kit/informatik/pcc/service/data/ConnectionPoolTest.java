@@ -0,0 +1,72 @@
+package edu.kit.informatik.pcc.service.data;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * @author David Laubenstein
+ */
+public class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() {
+        pool = ConnectionPool.start();
+    }
+
+    @Test
+    public void singletonTest() {
+        Assert.assertSame(pool, ConnectionPool.getInstance());
+    }
+
+    @Test
+    public void borrowAndReturnTest() throws SQLException {
+        int active = pool.getActiveConnections();
+        long acquired = pool.getAcquireCount();
+
+        Connection connection = pool.getConnection();
+        Assert.assertTrue(connection.isValid(1));
+        Assert.assertEquals(active + 1, pool.getActiveConnections());
+
+        connection.close();
+        Assert.assertEquals(active, pool.getActiveConnections());
+        Assert.assertEquals(acquired + 1, pool.getAcquireCount());
+    }
+
+    @Test
+    public void reuseTest() throws SQLException {
+        // a manager must hand its connection back after every query
+        DatabaseManager databaseManager = new DatabaseManager(null, pool);
+        int active = pool.getActiveConnections();
+        for (int i = 0; i < 50; i++) {
+            databaseManager.isMailExisting("reuseTest@pcc.de");
+        }
+        Assert.assertEquals(active, pool.getActiveConnections());
+    }
+
+    @Test
+    public void shutdownTest() {
+        pool.shutdown();
+        // the stopped pool stays the instance instead of opening a new one
+        Assert.assertSame(pool, ConnectionPool.getInstance());
+        try {
+            pool.getConnection();
+            Assert.fail();
+        } catch (SQLException e) {
+            // borrowing from a stopped pool fails
+        }
+        Assert.assertNotSame(pool, ConnectionPool.start());
+        pool = ConnectionPool.getInstance();
+    }
+
+    @After
+    public void cleanUp() {
+        pool.shutdown();
+    }
+}
@@ -3,8 +3,13 @@ package edu.kit.informatik.pcc.service.data;
 import org.json.JSONObject;
 import org.junit.*;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.logging.Logger;
 
 import static edu.kit.informatik.pcc.service.server.ServerProxyTest.setFinalStatic;
 
@@ -22,6 +27,7 @@ public class DatabaseManagerTest {
 
     @BeforeClass
     public static void setUpBeforeClass() {
+        ConnectionPool.start();
     }
 
     @AfterClass
@@ -70,6 +76,17 @@ public class DatabaseManagerTest {
         Assert.assertEquals("account.getId() is not equals dm.getAccountId()", account.getId(), dm.getAccountId());
     }
 
+    @Test
+    public void getCredentialsTest() throws SQLException {
+        Assert.assertNull(dm.getCredentials());
+        registered = dm.register(OWN_UUID, bytes);
+        AccountCredentials credentials = dm.getCredentials();
+        Assert.assertNotNull(credentials);
+        Assert.assertEquals(dm.getAccountId(), credentials.getId());
+        Assert.assertEquals(bytes, credentials.getSalt());
+        Assert.assertFalse(credentials.isVerified());
+    }
+
     /**
      * same as verifyAccountTest, so we will not duplicate them
      */
@@ -217,6 +234,86 @@ public class DatabaseManagerTest {
         Assert.assertEquals(dm.getSalt(), bytes);
     }
 
+    @Test
+    public void quotedParameterTest() {
+        registered = dm.register(OWN_UUID, bytes);
+        account.setId(dm.getAccountId());
+        String videoName = "video' OR '1'='1";
+        dm.saveProcessedVideoAndMeta(videoName, "meta'Test");
+        int id = dm.getVideoIdByName(videoName);
+        Assert.assertEquals(videoName, dm.getVideoInfo(id).getName());
+        Assert.assertEquals("meta'Test", dm.getMetaName(id));
+        Assert.assertFalse(dm.isMailExisting("' OR '1'='1"));
+        dm.deleteVideoAndMeta(id);
+    }
+
+    /**
+     * Compares the throughput of the list and lookup queries as concatenated plain statements
+     * with the prepared statements used by the DatabaseManager. Both borrow a connection from the pool
+     * for every query and run warm up rounds first, so only the statements make the difference.
+     *
+     * <p>Only runs with <b>-Dpcc.test.benchmark=true</b>.</p>
+     */
+    @Test
+    public void queryBenchmarkTest() throws SQLException {
+        Assume.assumeTrue(Boolean.getBoolean("pcc.test.benchmark"));
+        registered = dm.register(OWN_UUID, bytes);
+        account.setId(dm.getAccountId());
+        String videoName = "benchmarkVideo";
+        dm.saveProcessedVideoAndMeta(videoName, "benchmarkMeta");
+        int videoId = dm.getVideoIdByName(videoName);
+        int warmUpRounds = 500;
+        int rounds = 2000;
+
+        plainQueries(videoName, warmUpRounds);
+        preparedQueries(videoName, warmUpRounds);
+
+        long start = System.nanoTime();
+        plainQueries(videoName, rounds);
+        long plain = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        preparedQueries(videoName, rounds);
+        long prepared = System.nanoTime() - start;
+
+        Logger.getGlobal().info(String.format("List and lookup queries per second: plain %.0f, prepared %.0f",
+                rounds * 2 / (plain / 1e9), rounds * 2 / (prepared / 1e9)));
+        dm.deleteVideoAndMeta(videoId);
+    }
+
+    /**
+     * Runs the list and lookup queries as plain statements, borrowing a connection for each like the DatabaseManager.
+     */
+    private void plainQueries(String videoName, int rounds) throws SQLException {
+        for (int i = 0; i < rounds; i++) {
+            plainQuery("select \"video_name\",vid.\"id\" from \"video\" as vid " +
+                    "join \"user\" as usr ON vid.user_id=usr.id where usr.id='" + account.getId() + "'");
+            plainQuery("select id from \"video\" where \"video_name\"='" + videoName + "'");
+        }
+    }
+
+    private void plainQuery(String sql) throws SQLException {
+        Connection connection = ConnectionPool.getInstance().getConnection();
+        try {
+            Statement stmt = connection.createStatement();
+            ResultSet rs = stmt.executeQuery(sql);
+            while (rs.next()) {
+                rs.getString(1);
+            }
+            rs.close();
+            stmt.close();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void preparedQueries(String videoName, int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            dm.getVideoInfoList();
+            dm.getVideoIdByName(videoName);
+        }
+    }
+
     @After
     public void cleanUpAfter() {
         dm.deleteAccount();
@@ -1,15 +1,18 @@
 package edu.kit.informatik.pcc.service.manager;
 
 import edu.kit.informatik.pcc.service.data.Account;
+import edu.kit.informatik.pcc.service.data.ConnectionPool;
 import edu.kit.informatik.pcc.service.data.DatabaseManager;
 import org.bytedeco.javacpp.presets.opencv_core;
 import org.json.JSONObject;
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Base64;
+import java.util.logging.Logger;
 
 /**
  * @author Fabian Wenzel
@@ -31,6 +34,7 @@ public class AccountManagerTest {
     //TODO: test password hashing
     @Before
     public void setUp() {
+        ConnectionPool.start();
         JSONObject jsonObject = new JSONObject();
         jsonObject.put("mail", "fabiistkrass@gmail.de");
         jsonObject.put("password", "yochilldeinlife");
@@ -98,6 +102,67 @@ public class AccountManagerTest {
         boolean status = accountManager.authenticate();
         Assert.assertTrue(status);
     }
+    @Test
+    public void authenticateAccountTest() {
+        Assert.assertEquals(AccountStatus.NOT_EXISTING, accountManager.authenticateAccount());
+        registerTestAccount();
+        Assert.assertEquals(AccountStatus.NOT_VERIFIED, accountManager.authenticateAccount());
+        databaseManager.verifyAccount(uuid);
+        Assert.assertEquals(AccountStatus.SUCCESS, accountManager.authenticateAccount());
+    }
+
+    @Test
+    public void authenticateAccountWrongPasswordTest() {
+        registerTestAccount();
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("mail", "fabiistkrass@gmail.de");
+        jsonObject.put("password", "wrongPassword");
+        AccountManager wrongAccountManager = new AccountManager(new Account(jsonObject.toString()));
+        Assert.assertEquals(AccountStatus.WRONG_PASSWORD, wrongAccountManager.authenticateAccount());
+    }
+
+    @Test
+    public void authenticateAccountFailureTest() {
+        // a database error must not look like a missing account
+        ConnectionPool.getInstance().shutdown();
+        try {
+            Assert.assertEquals(AccountStatus.FAILURE, accountManager.authenticateAccount());
+        } finally {
+            ConnectionPool.start();
+        }
+    }
+
+    /**
+     * Compares the database time per request of the former four query authentication
+     * with the single query authentication against the local test database.
+     *
+     * <p>Only runs with <b>-Dpcc.test.benchmark=true</b>.</p>
+     */
+    @Test
+    public void authenticateBenchmarkTest() {
+        Assume.assumeTrue(Boolean.getBoolean("pcc.test.benchmark"));
+        registerTestAccount();
+        databaseManager.verifyAccount(uuid);
+        int rounds = 500;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            account.setId(accountManager.getAccountId());
+            account.hashPassword(accountManager.getSalt());
+            Assert.assertTrue(accountManager.authenticate() && accountManager.isVerified());
+        }
+        long separate = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            Assert.assertEquals(AccountStatus.SUCCESS, accountManager.authenticateAccount());
+        }
+        long single = System.nanoTime() - start;
+
+        Logger.getGlobal().info(String.format("Authentication per request: four queries %.3fms, single query %.3fms",
+                separate / 1e6 / rounds, single / 1e6 / rounds));
+    }
+
     @Test
     public void verifyTest() {
         registerTestAccount();
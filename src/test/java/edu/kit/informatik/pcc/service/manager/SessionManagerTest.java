@@ -0,0 +1,56 @@
+package edu.kit.informatik.pcc.service.manager;
+
+import edu.kit.informatik.pcc.service.data.Account;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Fabian Wenzel
+ */
+public class SessionManagerTest {
+
+    private SessionManager sessionManager;
+    private Account account;
+
+    @Before
+    public void setUp() {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("mail", "fabiistkrass@gmail.de");
+        jsonObject.put("password", "yochilldeinlife");
+        account = new Account(jsonObject.toString());
+        account.setId(4711);
+
+        sessionManager = SessionManager.getInstance();
+    }
+
+    @Test
+    public void createSessionTest() {
+        String token = sessionManager.createSession(account);
+        Assert.assertNotNull(token);
+        Assert.assertSame(account, sessionManager.getAccount(token));
+    }
+
+    @Test
+    public void uniqueTokenTest() {
+        Assert.assertNotEquals(sessionManager.createSession(account), sessionManager.createSession(account));
+    }
+
+    @Test
+    public void unknownTokenTest() {
+        Assert.assertNull(sessionManager.getAccount("notAToken"));
+        Assert.assertNull(sessionManager.getAccount(null));
+    }
+
+    @Test
+    public void invalidateTest() {
+        String first = sessionManager.createSession(account);
+        String second = sessionManager.createSession(account);
+
+        sessionManager.invalidate(account.getId());
+
+        Assert.assertNull(sessionManager.getAccount(first));
+        Assert.assertNull(sessionManager.getAccount(second));
+    }
+}
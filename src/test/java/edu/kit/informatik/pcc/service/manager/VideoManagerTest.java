@@ -37,6 +37,7 @@ public class VideoManagerTest {
 
     @Before
     public void setUp() {
+        ConnectionPool.start();
         JSONObject jsonObject = new JSONObject();
         jsonObject.put("mail", "fabiistkrass@gmail.de");
         jsonObject.put("password", "yochilldeinlife");
@@ -0,0 +1,139 @@
+package edu.kit.informatik.pcc.service.server;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @author Fabian Wenzel
+ */
+public class FileDownloadTest {
+
+    private File file;
+    private byte[] content;
+    private FileDownload fileDownload;
+
+    @Before
+    public void setUp() throws Exception {
+        content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        file = File.createTempFile("download", ".mp4");
+        Files.write(file.toPath(), content);
+        fileDownload = new FileDownload(file, "video/mp4");
+    }
+
+    @After
+    public void tearDown() {
+        Assert.assertTrue(file.delete());
+    }
+
+    @Test
+    public void parseRangeTest() {
+        Assert.assertArrayEquals(new long[]{0, 99}, FileDownload.parseRange("bytes=0-99", 1000));
+        Assert.assertArrayEquals(new long[]{500, 999}, FileDownload.parseRange("bytes=500-", 1000));
+        Assert.assertArrayEquals(new long[]{900, 999}, FileDownload.parseRange("bytes=-100", 1000));
+        Assert.assertArrayEquals(new long[]{900, 999}, FileDownload.parseRange("bytes=900-5000", 1000));
+        Assert.assertArrayEquals(new long[0], FileDownload.parseRange("bytes=1000-", 1000));
+        Assert.assertNull(FileDownload.parseRange("bytes=0-1,5-6", 1000));
+        Assert.assertNull(FileDownload.parseRange("bytes=9-1", 1000));
+        Assert.assertNull(FileDownload.parseRange("items=0-1", 1000));
+        Assert.assertNull(FileDownload.parseRange(null, 1000));
+    }
+
+    @Test
+    public void fullDownloadTest() throws Exception {
+        Response response = fileDownload.createResponse(headers());
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertEquals("1000", response.getHeaderString(HttpHeaders.CONTENT_LENGTH));
+        Assert.assertArrayEquals(content, write(response));
+        assertPrivate(response);
+    }
+
+    @Test
+    public void rangeDownloadTest() throws Exception {
+        Response response = fileDownload.createResponse(headers("Range", "bytes=100-199"));
+        Assert.assertEquals(206, response.getStatus());
+        Assert.assertEquals("bytes 100-199/1000", response.getHeaderString("Content-Range"));
+        Assert.assertArrayEquals(Arrays.copyOfRange(content, 100, 200), write(response));
+        assertPrivate(response);
+    }
+
+    @Test
+    public void largeRangeTest() throws Exception {
+        // the range spans several chunks of the copy buffer
+        byte[] large = new byte[300 * 1024];
+        new Random(7).nextBytes(large);
+        Files.write(file.toPath(), large);
+        Response response = new FileDownload(file, "video/mp4").createResponse(headers("Range", "bytes=1000-"));
+        Assert.assertEquals(206, response.getStatus());
+        Assert.assertArrayEquals(Arrays.copyOfRange(large, 1000, large.length), write(response));
+    }
+
+    @Test
+    public void staleIfRangeTest() throws Exception {
+        Response response = fileDownload.createResponse(headers("Range", "bytes=100-199", "If-Range", "\"old\""));
+        Assert.assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    public void unsatisfiableRangeTest() {
+        Response response = fileDownload.createResponse(headers("Range", "bytes=2000-"));
+        Assert.assertEquals(416, response.getStatus());
+        Assert.assertEquals("bytes */1000", response.getHeaderString("Content-Range"));
+    }
+
+    @Test
+    public void notModifiedTest() {
+        Response response = fileDownload.createResponse(headers("If-None-Match", fileDownload.getETag()));
+        Assert.assertEquals(304, response.getStatus());
+        Assert.assertNull(response.getEntity());
+        assertPrivate(response);
+    }
+
+    /**
+     * Shared caches must not serve the video of one account to another.
+     */
+    private void assertPrivate(Response response) {
+        CacheControl cacheControl = (CacheControl) response.getMetadata().getFirst(HttpHeaders.CACHE_CONTROL);
+        Assert.assertTrue(cacheControl.isPrivate());
+        Assert.assertEquals("Session-Token", response.getHeaderString(HttpHeaders.VARY));
+    }
+
+    private byte[] write(Response response) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private HttpHeaders headers(String... keyValues) {
+        final Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            values.put(keyValues[i], keyValues[i + 1]);
+        }
+        return (HttpHeaders) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpHeaders.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return method.getName().equals("getHeaderString") ? values.get(args[0]) : null;
+                    }
+                });
+    }
+}
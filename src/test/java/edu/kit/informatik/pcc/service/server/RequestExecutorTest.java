@@ -0,0 +1,80 @@
+package edu.kit.informatik.pcc.service.server;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.Callable;
+
+/**
+ * Tests that requests get answered even if their task fails.
+ *
+ * @author Fabian Wenzel
+ */
+public class RequestExecutorTest {
+
+    private AsyncResponse response;
+
+    @Before
+    public void setUp() {
+        RequestExecutor.start();
+        response = Mockito.mock(AsyncResponse.class);
+    }
+
+    @Test
+    public void failingTaskTest() {
+        RequestExecutor.getInstance().execute(response, new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("test");
+            }
+        });
+        Assert.assertEquals(500, awaitResponse().getStatus());
+    }
+
+    @Test
+    public void failingCallableTest() {
+        RequestExecutor.getInstance().submit(response, new Callable<String>() {
+            @Override
+            public String call() {
+                throw new AssertionError("test");
+            }
+        });
+        Assert.assertEquals(500, awaitResponse().getStatus());
+    }
+
+    @Test
+    public void shutdownTest() {
+        RequestExecutor.getInstance().shutdown();
+        // requests arriving until the server stopped must not get a new executor
+        RequestExecutor.getInstance().execute(response, new Runnable() {
+            @Override
+            public void run() {
+                Assert.fail();
+            }
+        });
+        Assert.assertEquals(503, awaitResponse().getStatus());
+    }
+
+    @Test
+    public void restartTest() {
+        RequestExecutor.getInstance().shutdown();
+        RequestExecutor.start().execute(response, new Runnable() {
+            @Override
+            public void run() {
+                response.resume(Response.ok().build());
+            }
+        });
+        Assert.assertEquals(200, awaitResponse().getStatus());
+    }
+
+    private Response awaitResponse() {
+        ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+        Mockito.verify(response, Mockito.timeout(2000)).resume(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,55 @@
+package edu.kit.informatik.pcc.service.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Properties;
+
+/**
+ * @author Josh Romanowski
+ */
+public class ServerConfigTest {
+
+    @Test
+    public void defaultTest() {
+        ServerConfig config = new ServerConfig(new Properties());
+        Assert.assertEquals(2222, config.getPort());
+        Assert.assertTrue(config.getMinThreads() <= config.getMaxThreads());
+        Assert.assertFalse(config.isHttp2c());
+        Assert.assertTrue(config.isStatistics());
+    }
+
+    @Test
+    public void overrideTest() {
+        Properties properties = new Properties();
+        properties.setProperty(ServerConfig.PORT, "8080");
+        properties.setProperty(ServerConfig.MAX_THREADS, " 400 ");
+        properties.setProperty(ServerConfig.IDLE_TIMEOUT, "5000");
+        properties.setProperty(ServerConfig.OUTPUT_BUFFER_SIZE, "65536");
+        properties.setProperty(ServerConfig.HTTP2C, "true");
+
+        ServerConfig config = new ServerConfig(properties);
+        Assert.assertEquals(8080, config.getPort());
+        Assert.assertEquals(400, config.getMaxThreads());
+        Assert.assertEquals(5000, config.getIdleTimeout());
+        Assert.assertEquals(65536, config.getOutputBufferSize());
+        Assert.assertTrue(config.isHttp2c());
+    }
+
+    @Test
+    public void threadBoundsTest() {
+        Properties properties = new Properties();
+        properties.setProperty(ServerConfig.MIN_THREADS, "50");
+        properties.setProperty(ServerConfig.MAX_THREADS, "20");
+
+        ServerConfig config = new ServerConfig(properties);
+        Assert.assertEquals(20, config.getMinThreads());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void invalidNumberTest() {
+        Properties properties = new Properties();
+        properties.setProperty(ServerConfig.PORT, "abc");
+        new ServerConfig(properties);
+    }
+}
@@ -0,0 +1,90 @@
+package edu.kit.informatik.pcc.service.server;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Tests that oversized uploads get rejected before their body gets parsed.
+ *
+ * @author Fabian Wenzel
+ */
+public class UploadLimitFilterTest {
+
+    private static final int LIMIT = 1000;
+
+    private UploadLimitFilter filter;
+    private ContainerRequestContext request;
+
+    @Before
+    public void setUp() {
+        filter = new UploadLimitFilter(LIMIT);
+        request = Mockito.mock(ContainerRequestContext.class);
+        Mockito.when(request.getMediaType()).thenReturn(MediaType.MULTIPART_FORM_DATA_TYPE);
+    }
+
+    @Test
+    public void announcedLengthTest() {
+        Mockito.when(request.getHeaderString(HttpHeaders.CONTENT_LENGTH)).thenReturn(String.valueOf(LIMIT + 1));
+        filter.filter(request);
+
+        ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+        Mockito.verify(request).abortWith(captor.capture());
+        Assert.assertEquals(413, captor.getValue().getStatus());
+    }
+
+    @Test
+    public void chunkedTest() throws IOException {
+        InputStream body = filterBody(new byte[LIMIT + 1]);
+        byte[] buffer = new byte[100];
+        try {
+            while (body.read(buffer) != -1) {
+                // read until the limit is exceeded
+            }
+            Assert.fail();
+        } catch (WebApplicationException e) {
+            Assert.assertEquals(413, e.getResponse().getStatus());
+        }
+    }
+
+    @Test
+    public void validTest() throws IOException {
+        InputStream body = filterBody(new byte[LIMIT]);
+        long read = 0;
+        while (body.read() != -1) {
+            read++;
+        }
+        Assert.assertEquals(LIMIT, read);
+        Mockito.verify(request, Mockito.never()).abortWith(Mockito.any(Response.class));
+    }
+
+    @Test
+    public void otherMediaTypeTest() {
+        Mockito.when(request.getMediaType()).thenReturn(MediaType.APPLICATION_JSON_TYPE);
+        filter.filter(request);
+        Mockito.verify(request, Mockito.never()).setEntityStream(Mockito.any(InputStream.class));
+    }
+
+    /**
+     * Runs the filter on a request without content length and returns the body it installed.
+     */
+    private InputStream filterBody(byte[] content) {
+        Mockito.when(request.getEntityStream()).thenReturn(new ByteArrayInputStream(content));
+        filter.filter(request);
+
+        ArgumentCaptor<InputStream> captor = ArgumentCaptor.forClass(InputStream.class);
+        Mockito.verify(request).setEntityStream(captor.capture());
+        return captor.getValue();
+    }
+}
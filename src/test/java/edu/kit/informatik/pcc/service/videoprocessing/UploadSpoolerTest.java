@@ -0,0 +1,67 @@
+package edu.kit.informatik.pcc.service.videoprocessing;
+
+import edu.kit.informatik.pcc.service.data.LocationConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * @author Josh Romanowski
+ */
+public class UploadSpoolerTest {
+
+    private File target;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        target = File.createTempFile("spool", ".tmp");
+        content = new byte[3 * 1024 * 1024 + 17];
+        new Random(42).nextBytes(content);
+    }
+
+    @After
+    public void tearDown() {
+        Assert.assertTrue(target.delete());
+    }
+
+    @Test
+    public void streamTest() throws IOException {
+        long written = UploadSpooler.spool(new ByteArrayInputStream(content), target, content.length);
+        Assert.assertEquals(content.length, written);
+        Assert.assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void fileTest() throws IOException {
+        File source = new File(LocationConfig.TEST_RESOURCES_DIR + File.separator + "VIDEO_1487198226374.mp4");
+        long written = UploadSpooler.spool(new FileInputStream(source), target, UploadSpooler.MAX_VIDEO_SIZE);
+        Assert.assertEquals(source.length(), written);
+        Assert.assertArrayEquals(Files.readAllBytes(source.toPath()), Files.readAllBytes(target.toPath()));
+    }
+
+    @Test(expected = IOException.class)
+    public void limitTest() throws IOException {
+        UploadSpooler.spool(new ByteArrayInputStream(content), target, content.length - 1);
+    }
+
+    @Test
+    public void throughputTest() throws IOException {
+        byte[] video = new byte[64 * 1024 * 1024];
+        long start = System.nanoTime();
+        UploadSpooler.spool(new ByteArrayInputStream(video), target, video.length);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Logger.getGlobal().info(String.format("Spooled %d MB in %.3f seconds (%.2f MB/s)",
+                video.length / (1024 * 1024), seconds, video.length / seconds / (1024 * 1024)));
+        Assert.assertEquals(video.length, target.length());
+    }
+}
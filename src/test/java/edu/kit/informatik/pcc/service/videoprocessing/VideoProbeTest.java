@@ -0,0 +1,42 @@
+package edu.kit.informatik.pcc.service.videoprocessing;
+
+import edu.kit.informatik.pcc.service.data.LocationConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Test for probing videos.
+ *
+ * @author Josh Romanowski
+ */
+public class VideoProbeTest {
+
+    @Test
+    public void rotationTest() {
+        Assert.assertEquals(-1, VideoProbe.parseRotation(null));
+        Assert.assertEquals(-1, VideoProbe.parseRotation("abc"));
+        Assert.assertEquals(-1, VideoProbe.parseRotation("45"));
+        Assert.assertEquals(0, VideoProbe.parseRotation("0"));
+        Assert.assertEquals(90, VideoProbe.parseRotation(" 90"));
+        Assert.assertEquals(270, VideoProbe.parseRotation("-90"));
+        Assert.assertEquals(180, VideoProbe.parseRotation("540"));
+    }
+
+    @Test
+    public void validTest() throws IOException {
+        File video = new File(LocationConfig.TEST_RESOURCES_DIR + File.separator + "Video.mp4");
+        VideoProbe probe = VideoProbe.probe(video);
+        Assert.assertTrue(probe.getWidth() > 0);
+        Assert.assertTrue(probe.getHeight() > 0);
+        Assert.assertTrue(probe.getFrameRate() > 0);
+        Assert.assertTrue(probe.getDuration() > 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void noVideoTest() throws IOException {
+        VideoProbe.probe(new File(LocationConfig.TEST_RESOURCES_DIR + File.separator + "encMeta.json"));
+    }
+}
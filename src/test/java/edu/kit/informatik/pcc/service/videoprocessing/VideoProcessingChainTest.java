@@ -1,6 +1,7 @@
 package edu.kit.informatik.pcc.service.videoprocessing;
 
 import edu.kit.informatik.pcc.service.data.*;
+import edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization.ClassifierPool;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -62,6 +63,9 @@ public class VideoProcessingChainTest {
         databaseManager = new DatabaseManager(account);
 
         setupStreams();
+        // the pools stay stopped after another test stopped the server
+        ConnectionPool.start();
+        ClassifierPool.start();
     }
 
     @After
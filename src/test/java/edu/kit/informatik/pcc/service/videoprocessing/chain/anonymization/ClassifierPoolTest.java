@@ -0,0 +1,76 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import org.bytedeco.javacpp.opencv_objdetect.CascadeClassifier;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests leasing classifiers from the classifier pool.
+ *
+ * @author Josh Romanowski
+ */
+public class ClassifierPoolTest {
+    private ClassifierPool pool;
+
+    @Before
+    public void setUp() {
+        pool = ClassifierPool.start();
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void leaseTest() {
+        CascadeClassifier first = pool.lease();
+        CascadeClassifier second = pool.lease();
+        Assert.assertFalse(first.empty());
+        Assert.assertFalse(second.empty());
+        Assert.assertNotSame(first, second);
+        pool.release(first);
+        pool.release(second);
+    }
+
+    @Test
+    public void reuseTest() {
+        CascadeClassifier classifier = pool.lease();
+        pool.release(classifier);
+
+        // released classifiers are handed out again instead of loading new ones
+        boolean reused = false;
+        CascadeClassifier[] leased = new CascadeClassifier[8];
+        for (int i = 0; i < leased.length; i++) {
+            leased[i] = pool.lease();
+            reused |= leased[i] == classifier;
+        }
+        for (CascadeClassifier leasedClassifier : leased) {
+            pool.release(leasedClassifier);
+        }
+        Assert.assertTrue(reused);
+    }
+
+    @Test
+    public void releaseNullTest() {
+        pool.release(null);
+    }
+
+    @Test
+    public void shutdownTest() {
+        CascadeClassifier classifier = pool.lease();
+        pool.shutdown();
+        // the stopped pool stays the instance instead of loading the classifiers again
+        Assert.assertSame(pool, ClassifierPool.getInstance());
+        try {
+            pool.lease();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // leasing from a stopped pool fails
+        }
+        pool.release(classifier);
+        Assert.assertNotSame(pool, ClassifierPool.start());
+    }
+}
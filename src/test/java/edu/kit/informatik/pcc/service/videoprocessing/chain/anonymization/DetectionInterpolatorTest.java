@@ -0,0 +1,112 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import org.bytedeco.javacpp.opencv_core.Rect;
+import org.bytedeco.javacpp.opencv_core.RectVector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests estimating detections between two keyframes with the default margin of 20%.
+ *
+ * @author Josh Romanowski
+ */
+public class DetectionInterpolatorTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    private RectVector previous;
+    private RectVector next;
+    private RectVector result;
+
+    @Before
+    public void setUp() {
+        previous = new RectVector();
+        next = new RectVector();
+        result = new RectVector();
+    }
+
+    @After
+    public void tearDown() {
+        previous.deallocate();
+        next.deallocate();
+        result.deallocate();
+    }
+
+    @Test
+    public void partnerTest() {
+        fill(previous, new Rect(100, 100, 50, 50));
+        fill(next, new Rect(120, 110, 60, 50));
+        DetectionInterpolator.interpolate(previous, next, 0.5, WIDTH, HEIGHT, result);
+
+        // moved halfway and enlarged by the margin on each side
+        Assert.assertEquals(1, result.size());
+        assertRect(99, 95, 77, 70, result.get(0));
+    }
+
+    @Test
+    public void closestPartnerTest() {
+        fill(previous, new Rect(100, 100, 50, 50));
+        fill(next, new Rect(140, 100, 50, 50), new Rect(110, 100, 50, 50));
+        DetectionInterpolator.interpolate(previous, next, 0, WIDTH, HEIGHT, result);
+
+        // the matched detection stays at the previous position, the other one is kept as it is
+        Assert.assertEquals(2, result.size());
+        assertRect(90, 90, 70, 70, result.get(0));
+        assertRect(130, 90, 70, 70, result.get(1));
+    }
+
+    @Test
+    public void unmatchedTest() {
+        fill(previous, new Rect(100, 100, 50, 50));
+        fill(next, new Rect(400, 300, 50, 50));
+        DetectionInterpolator.interpolate(previous, next, 0.5, WIDTH, HEIGHT, result);
+
+        // too far apart to be the same face, so both are kept where they are
+        Assert.assertEquals(2, result.size());
+        assertRect(90, 90, 70, 70, result.get(0));
+        assertRect(390, 290, 70, 70, result.get(1));
+    }
+
+    @Test
+    public void noNextKeyframeTest() {
+        fill(previous, new Rect(100, 100, 50, 50));
+        DetectionInterpolator.interpolate(previous, null, 0.5, WIDTH, HEIGHT, result);
+
+        Assert.assertEquals(1, result.size());
+        assertRect(90, 90, 70, 70, result.get(0));
+    }
+
+    @Test
+    public void clippingTest() {
+        fill(previous, new Rect(0, 0, 50, 50), new Rect(WIDTH - 50, HEIGHT - 50, 50, 50));
+        DetectionInterpolator.interpolate(previous, next, 0.5, WIDTH, HEIGHT, result);
+
+        Assert.assertEquals(2, result.size());
+        assertRect(0, 0, 60, 60, result.get(0));
+        assertRect(WIDTH - 60, HEIGHT - 60, 60, 60, result.get(1));
+    }
+
+    @Test
+    public void replaceResultTest() {
+        fill(result, new Rect(1, 1, 1, 1), new Rect(2, 2, 2, 2));
+        DetectionInterpolator.interpolate(previous, next, 0.5, WIDTH, HEIGHT, result);
+        Assert.assertEquals(0, result.size());
+    }
+
+    /**
+     * Replaces the content of the vector. Passing a single rect to put directly would copy
+     * its raw memory over the vector instead.
+     */
+    private void fill(RectVector vector, Rect... rects) {
+        vector.put(rects);
+    }
+
+    private void assertRect(int x, int y, int width, int height, Rect rect) {
+        Assert.assertEquals(x, rect.x());
+        Assert.assertEquals(y, rect.y());
+        Assert.assertEquals(width, rect.width());
+        Assert.assertEquals(height, rect.height());
+    }
+}
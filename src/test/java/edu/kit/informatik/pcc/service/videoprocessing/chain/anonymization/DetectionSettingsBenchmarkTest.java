@@ -0,0 +1,191 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import edu.kit.informatik.pcc.service.data.LocationConfig;
+import org.bytedeco.javacpp.opencv_core;
+import org.bytedeco.javacpp.opencv_core.Mat;
+import org.bytedeco.javacpp.opencv_core.Rect;
+import org.bytedeco.javacpp.opencv_core.RectVector;
+import org.bytedeco.javacpp.opencv_objdetect.CascadeClassifier;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.OpenCVFrameConverter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Measures the detection time per frame for several detection settings.
+ * Detections of the full resolution color frames with the OpenCV defaults are the reference
+ * for the share of faces that are still found. Also compares detecting on frames stored rotated
+ * with rotating every full resolution frame first.
+ *
+ * <p>Analyzes every frame with each setting, therefore it only runs with <b>-Dpcc.test.benchmark=true</b>.</p>
+ *
+ * @author Josh Romanowski
+ */
+public class DetectionSettingsBenchmarkTest {
+    private static final String[] VIDEOS = {"Video.mp4"};
+    private static final int FRAMES_PER_VIDEO = 20;
+    private static final int FRAME_DISTANCE = 10;
+    private static final int[] WIDTHS = {0, 960, 640, 480, 320};
+    private static final double[] SCALE_FACTORS = {1.05, 1.1, 1.2};
+
+    private ClassifierPool pool;
+    private CascadeClassifier classifier;
+    private List<Mat> frames;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("pcc.test.benchmark"));
+        pool = ClassifierPool.start();
+        classifier = pool.lease();
+        frames = new ArrayList<>();
+
+        OpenCVFrameConverter.ToMat converter = new OpenCVFrameConverter.ToMat();
+        for (String video : VIDEOS) {
+            FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(
+                    LocationConfig.TEST_RESOURCES_DIR + File.separator + video);
+            grabber.start();
+            Frame frame;
+            int index = 0;
+            int taken = 0;
+            while (taken < FRAMES_PER_VIDEO && (frame = grabber.grabImage()) != null) {
+                if (index++ % FRAME_DISTANCE == 0) {
+                    // the videos are stored upright
+                    frames.add(converter.convert(frame).clone());
+                    taken++;
+                }
+            }
+            grabber.stop();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (frames == null) {
+            return;
+        }
+        for (Mat mat : frames) {
+            mat.release();
+        }
+        pool.release(classifier);
+        pool.shutdown();
+    }
+
+    @Test
+    public void settingsBenchmarkTest() {
+        // previous behaviour: color frame in full resolution with the default parameters
+        RectVector[] reference = new RectVector[frames.size()];
+        long start = System.nanoTime();
+        for (int i = 0; i < frames.size(); i++) {
+            reference[i] = new RectVector();
+            classifier.detectMultiScale(frames.get(i), reference[i]);
+        }
+        Logger.getGlobal().info(String.format("Reference: %.1f ms/frame",
+                (System.nanoTime() - start) / 1e6 / frames.size()));
+
+        for (int width : WIDTHS) {
+            for (double scaleFactor : SCALE_FACTORS) {
+                IAnalyzer analyzer = new OpenCVAnalyzer(classifier,
+                        new DetectionSettings(width, scaleFactor, 3, 0, 0, true));
+                int found = 0;
+                int total = 0;
+                start = System.nanoTime();
+                for (int i = 0; i < frames.size(); i++) {
+                    RectVector detections = analyzer.analyze(frames.get(i));
+                    for (int j = 0; j < reference[i].size(); j++) {
+                        total++;
+                        if (overlaps(reference[i].get(j), detections)) {
+                            found++;
+                        }
+                    }
+                }
+                analyzer.close();
+                double millis = (System.nanoTime() - start) / 1e6 / frames.size();
+                Logger.getGlobal().info(String.format("Width %d, scale factor %.2f: %.1f ms/frame, found %d of %d",
+                        width, scaleFactor, millis, found, total));
+            }
+        }
+
+        for (RectVector detections : reference) {
+            detections.deallocate();
+        }
+    }
+
+    @Test
+    public void rotationTest() {
+        // frames as stored by the app, they have to be rotated by 90 degrees to be upright
+        List<Mat> stored = new ArrayList<>();
+        for (Mat frame : frames) {
+            Mat mat = new Mat();
+            opencv_core.transpose(frame, mat);
+            opencv_core.flip(mat, mat, 0);
+            stored.add(mat);
+        }
+
+        // previous behaviour: rotate every full resolution frame, then detect
+        IAnalyzer analyzer = new OpenCVAnalyzer(classifier);
+        RectVector[] reference = new RectVector[frames.size()];
+        Mat upright = new Mat();
+        long start = System.nanoTime();
+        for (int i = 0; i < stored.size(); i++) {
+            opencv_core.transpose(stored.get(i), upright);
+            opencv_core.flip(upright, upright, 1);
+            // the detections get overwritten by the next call, so they are copied
+            reference[i] = new RectVector().put(analyzer.analyze(upright));
+        }
+        double rotatingFrames = (System.nanoTime() - start) / 1e6 / frames.size();
+
+        // detect on an upright copy of the scaled down frame only
+        analyzer.setRotation(90);
+        int found = 0;
+        int total = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < stored.size(); i++) {
+            Mat frame = stored.get(i);
+            RectVector detections = analyzer.analyze(frame);
+            for (int j = 0; j < reference[i].size(); j++) {
+                // the face rotated into the coordinates of the stored frame
+                Rect face = reference[i].get(j);
+                Rect rotated = new Rect(face.y(), frame.rows() - face.x() - face.width(),
+                        face.height(), face.width());
+                total++;
+                if (overlaps(rotated, detections)) {
+                    found++;
+                }
+            }
+        }
+        double rotatingDetection = (System.nanoTime() - start) / 1e6 / frames.size();
+        Logger.getGlobal().info(String.format("Rotating frames: %.1f ms/frame, rotating detection: %.1f ms/frame, "
+                + "found %d of %d", rotatingFrames, rotatingDetection, found, total));
+
+        // scaling down before or after rotating may round a few pixels differently
+        Assert.assertTrue(found >= 0.9 * total);
+        analyzer.close();
+        upright.release();
+        for (int i = 0; i < stored.size(); i++) {
+            stored.get(i).release();
+            reference[i].deallocate();
+        }
+    }
+
+    private boolean overlaps(Rect face, RectVector detections) {
+        double centerX = face.x() + face.width() / 2.0;
+        double centerY = face.y() + face.height() / 2.0;
+        for (int i = 0; i < detections.size(); i++) {
+            Rect detection = detections.get(i);
+            if (centerX >= detection.x() && centerX <= detection.x() + detection.width()
+                    && centerY >= detection.y() && centerY <= detection.y() + detection.height()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,68 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Properties;
+
+/**
+ * Tests the validation of the detection settings.
+ *
+ * @author Josh Romanowski
+ */
+public class DetectionSettingsTest {
+
+    @Test
+    public void defaultTest() {
+        DetectionSettings settings = DetectionSettings.getDefault();
+        Assert.assertEquals(640, settings.getDetectionWidth());
+        Assert.assertTrue(settings.getScaleFactor() > 1);
+    }
+
+    @Test
+    public void loadTest() {
+        Properties properties = new Properties();
+        properties.setProperty("pcc.detection.width", "480");
+        DetectionSettings settings = DetectionSettings.load(properties);
+        Assert.assertEquals(480, settings.getDetectionWidth());
+        Assert.assertEquals(3, settings.getMinNeighbors());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void loadNoNumberTest() {
+        Properties properties = new Properties();
+        properties.setProperty("pcc.detection.scaleFactor", "fast");
+        DetectionSettings.load(properties);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void loadOutOfRangeTest() {
+        Properties properties = new Properties();
+        properties.setProperty("pcc.detection.fullSweepInterval", "0");
+        DetectionSettings.load(properties);
+    }
+
+    @Test
+    public void validTest() {
+        DetectionSettings settings = new DetectionSettings(0, 1.2, 2, 30, 300, false);
+        Assert.assertEquals(0, settings.getDetectionWidth());
+        Assert.assertEquals(30, settings.getMinFaceSize());
+        Assert.assertEquals(300, settings.getMaxFaceSize());
+        Assert.assertFalse(settings.isEqualizeHistogram());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void scaleFactorTest() {
+        new DetectionSettings(640, 1.0, 3, 0, 0, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void faceSizeTest() {
+        new DetectionSettings(640, 1.1, 3, 100, 50, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void widthTest() {
+        new DetectionSettings(-1, 1.1, 3, 0, 0, true);
+    }
+}
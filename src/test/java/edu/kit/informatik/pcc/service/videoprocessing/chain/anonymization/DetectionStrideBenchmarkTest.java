@@ -0,0 +1,196 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import edu.kit.informatik.pcc.service.data.LocationConfig;
+import org.bytedeco.javacpp.opencv_core.Mat;
+import org.bytedeco.javacpp.opencv_core.Rect;
+import org.bytedeco.javacpp.opencv_core.RectVector;
+import org.bytedeco.javacpp.opencv_objdetect.CascadeClassifier;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.OpenCVFrameConverter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Compares the face coverage and speed of detecting only every n-th frame and of
+ * searching only around previous detections between full sweeps.
+ * Detections on every frame are the reference, a reference detection counts as covered
+ * if most of it lies inside one of the detections of the tested setting.
+ *
+ * <p>Analyzes every frame several times, therefore it only runs with <b>-Dpcc.test.benchmark=true</b>.</p>
+ *
+ * @author Josh Romanowski
+ */
+public class DetectionStrideBenchmarkTest {
+    private static final String VIDEO = LocationConfig.TEST_RESOURCES_DIR + File.separator + "Video.mp4";
+    private static final int MAX_FRAMES = 300;
+    private static final int[] STRIDES = {1, 2, 4, 8};
+    private static final int[] SWEEP_INTERVALS = {1, 5, 15, 30};
+    private static final double MIN_COVERAGE = 0.8;
+    /**
+     * Share of the reference faces stride 2 has to cover, it covered 0.966 of the test video's faces.
+     */
+    private static final double MIN_STRIDE_TWO_RECALL = 0.95;
+
+    private ClassifierPool pool;
+    private CascadeClassifier classifier;
+    private List<Mat> frames;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("pcc.test.benchmark"));
+        pool = ClassifierPool.start();
+        classifier = pool.lease();
+        frames = new ArrayList<>();
+
+        FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(VIDEO);
+        OpenCVFrameConverter.ToMat converter = new OpenCVFrameConverter.ToMat();
+        grabber.start();
+        Frame frame;
+        while (frames.size() < MAX_FRAMES && (frame = grabber.grabImage()) != null) {
+            // the video is stored upright
+            frames.add(converter.convert(frame).clone());
+        }
+        grabber.stop();
+    }
+
+    @After
+    public void tearDown() {
+        if (frames == null) {
+            return;
+        }
+        for (Mat mat : frames) {
+            mat.release();
+        }
+        pool.release(classifier);
+        pool.shutdown();
+    }
+
+    @Test
+    public void strideBenchmarkTest() {
+        IAnalyzer analyzer = new OpenCVAnalyzer(classifier);
+        RectVector[] reference = new RectVector[frames.size()];
+        for (int i = 0; i < frames.size(); i++) {
+            reference[i] = new RectVector().put(analyzer.analyze(frames.get(i)));
+        }
+
+        for (int stride : STRIDES) {
+            long start = System.nanoTime();
+            RectVector[] estimated = detect(analyzer, stride);
+            double fps = frames.size() / ((System.nanoTime() - start) / 1e9);
+
+            int covered = 0;
+            int total = 0;
+            for (int i = 0; i < frames.size(); i++) {
+                for (int j = 0; j < reference[i].size(); j++) {
+                    total++;
+                    if (isCovered(reference[i].get(j), estimated[i])) {
+                        covered++;
+                    }
+                }
+                estimated[i].deallocate();
+            }
+            double recall = (total == 0) ? 1 : (double) covered / total;
+
+            Logger.getGlobal().info(String.format("Stride %d: recall %.3f (%d faces), %.1f fps",
+                    stride, recall, total, fps));
+            if (stride == 1) {
+                Assert.assertEquals(1, recall, 0);
+            } else if (stride == 2) {
+                Assert.assertTrue(recall >= MIN_STRIDE_TWO_RECALL);
+            }
+        }
+
+        for (RectVector detections : reference) {
+            detections.deallocate();
+        }
+        analyzer.close();
+    }
+
+    @Test
+    public void sweepIntervalBenchmarkTest() {
+        IAnalyzer analyzer = new OpenCVAnalyzer(classifier);
+        RectVector[] reference = new RectVector[frames.size()];
+        for (int i = 0; i < frames.size(); i++) {
+            reference[i] = new RectVector().put(analyzer.analyze(frames.get(i)));
+        }
+
+        DetectionSettings defaults = DetectionSettings.getDefault();
+        for (int interval : SWEEP_INTERVALS) {
+            analyzer.setSettings(new DetectionSettings(defaults.getDetectionWidth(), defaults.getScaleFactor(),
+                    defaults.getMinNeighbors(), defaults.getMinFaceSize(), defaults.getMaxFaceSize(),
+                    defaults.isEqualizeHistogram(), interval, defaults.getRegionMargin(),
+                    defaults.getSceneChangeThreshold()));
+
+            int covered = 0;
+            int total = 0;
+            long time = 0;
+            for (int i = 0; i < frames.size(); i++) {
+                long start = System.nanoTime();
+                RectVector detections = analyzer.analyze(frames.get(i));
+                time += System.nanoTime() - start;
+                for (int j = 0; j < reference[i].size(); j++) {
+                    total++;
+                    if (isCovered(reference[i].get(j), detections)) {
+                        covered++;
+                    }
+                }
+            }
+            double recall = (total == 0) ? 1 : (double) covered / total;
+
+            Logger.getGlobal().info(String.format("Full sweep every %d frames: recall %.3f (%d faces), %.1f fps",
+                    interval, recall, total, frames.size() / (time / 1e9)));
+            if (interval == 1) {
+                Assert.assertEquals(1, recall, 0);
+            }
+        }
+
+        for (RectVector detections : reference) {
+            detections.deallocate();
+        }
+        analyzer.close();
+    }
+
+    /**
+     * Detects on keyframes only and interpolates the frames in between, like the frame pipeline does.
+     */
+    private RectVector[] detect(IAnalyzer analyzer, int stride) {
+        RectVector[] detections = new RectVector[frames.size()];
+        for (int i = 0; i < frames.size(); i += stride) {
+            detections[i] = new RectVector().put(analyzer.analyze(frames.get(i)));
+        }
+        for (int i = 0; i < frames.size(); i++) {
+            if (i % stride != 0) {
+                int keyframe = i - i % stride;
+                RectVector next = (keyframe + stride < frames.size()) ? detections[keyframe + stride] : null;
+                Mat mat = frames.get(i);
+                detections[i] = new RectVector();
+                DetectionInterpolator.interpolate(detections[keyframe], next,
+                        (double) (i % stride) / stride, mat.cols(), mat.rows(), detections[i]);
+            }
+        }
+        return detections;
+    }
+
+    private boolean isCovered(Rect face, RectVector detections) {
+        for (int i = 0; i < detections.size(); i++) {
+            Rect detection = detections.get(i);
+            int width = Math.min(face.x() + face.width(), detection.x() + detection.width())
+                    - Math.max(face.x(), detection.x());
+            int height = Math.min(face.y() + face.height(), detection.y() + detection.height())
+                    - Math.max(face.y(), detection.y());
+            if (width > 0 && height > 0 && (double) width * height >= MIN_COVERAGE * face.area()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
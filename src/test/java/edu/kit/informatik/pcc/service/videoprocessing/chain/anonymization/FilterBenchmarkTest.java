@@ -0,0 +1,121 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import org.bytedeco.javacpp.opencv_core;
+import org.bytedeco.javacpp.opencv_core.Mat;
+import org.bytedeco.javacpp.opencv_core.Rect;
+import org.bytedeco.javacpp.opencv_core.RectVector;
+import org.bytedeco.javacpp.opencv_core.Scalar;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Checks that the filters only change the detected regions and compares
+ * their cost per frame depending on the amount of detections.
+ *
+ * <p>The cost comparison only runs with <b>-Dpcc.test.benchmark=true</b>.</p>
+ *
+ * @author Josh Romanowski
+ */
+public class FilterBenchmarkTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int FACE_SIZE = 200;
+    private static final int[] DETECTION_COUNTS = {0, 1, 2, 4, 8, 16};
+    private static final int ITERATIONS = 50;
+
+    private Mat frame;
+    private IFilter[] filters;
+
+    @Before
+    public void setUp() {
+        byte[] noise = new byte[WIDTH * HEIGHT * 3];
+        new Random(42).nextBytes(noise);
+        frame = new Mat(HEIGHT, WIDTH, opencv_core.CV_8UC3);
+        frame.data().put(noise);
+
+        filters = new IFilter[]{new OpenCVBoxfilter(), new OpenCVBlurfilter(), new OpenCVGaussianfilter(),
+                new OpenCVMosaicfilter()};
+    }
+
+    @After
+    public void tearDown() {
+        frame.release();
+    }
+
+    @Test
+    public void regionOnlyTest() {
+        RectVector detections = createDetections(2);
+        // detections reaching over the border get clipped
+        RectVector outside = new RectVector(new Rect(WIDTH - FACE_SIZE / 2, HEIGHT - FACE_SIZE / 2,
+                FACE_SIZE, FACE_SIZE));
+        for (IFilter filter : filters) {
+            Mat filtered = frame.clone();
+            filter.applyFilter(filtered, detections);
+            filter.applyFilter(filtered, outside);
+
+            Mat difference = new Mat();
+            opencv_core.absdiff(frame, filtered, difference);
+            double total = sum(difference);
+            double inside = 0;
+            for (int i = 0; i < detections.size(); i++) {
+                inside += sum(difference.apply(detections.get(i)));
+            }
+            inside += sum(difference.apply(new Rect(WIDTH - FACE_SIZE / 2, HEIGHT - FACE_SIZE / 2,
+                    FACE_SIZE / 2, FACE_SIZE / 2)));
+
+            String name = filter.getClass().getSimpleName();
+            Assert.assertTrue(name + " didn't change the detections", inside > 0);
+            Assert.assertEquals(name + " changed pixels outside the detections", total, inside, 0);
+            difference.release();
+            filtered.release();
+        }
+        detections.deallocate();
+        outside.deallocate();
+    }
+
+    @Test
+    public void filterBenchmarkTest() {
+        Assume.assumeTrue(Boolean.getBoolean("pcc.test.benchmark"));
+        for (IFilter filter : filters) {
+            StringBuilder result = new StringBuilder(filter.getClass().getSimpleName() + ":");
+            for (int count : DETECTION_COUNTS) {
+                RectVector detections = createDetections(count);
+                Mat filtered = frame.clone();
+                long start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    filter.applyFilter(filtered, detections);
+                }
+                double millis = (System.nanoTime() - start) / 1e6 / ITERATIONS;
+                result.append(String.format(" %d faces %.2f ms,", count, millis));
+                filtered.release();
+                detections.deallocate();
+            }
+            Logger.getGlobal().info(result.toString());
+        }
+    }
+
+    /**
+     * Places the given amount of non overlapping detections on a grid.
+     */
+    private RectVector createDetections(int count) {
+        int columns = WIDTH / FACE_SIZE;
+        RectVector detections = new RectVector(count);
+        for (int i = 0; i < count; i++) {
+            detections.put(i, new Rect((i % columns) * FACE_SIZE, (i / columns) * FACE_SIZE, FACE_SIZE, FACE_SIZE));
+        }
+        return detections;
+    }
+
+    private double sum(Mat mat) {
+        Scalar sum = opencv_core.sumElems(mat);
+        double total = sum.get(0) + sum.get(1) + sum.get(2);
+        sum.deallocate();
+        return total;
+    }
+}
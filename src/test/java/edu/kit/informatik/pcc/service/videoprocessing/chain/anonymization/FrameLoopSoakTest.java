@@ -0,0 +1,155 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import edu.kit.informatik.pcc.service.data.LocationConfig;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.FrameGrabber;
+import org.bytedeco.javacv.FrameRecorder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Runs the frame pipeline on half an hour of video and checks that the native memory stays flat.
+ * The frames of the test video get replayed in a loop and the anonymized frames get discarded,
+ * so only the memory of the frame loop itself is measured.
+ *
+ * <p>Takes as long as the anonymization of half an hour of video, therefore it only runs with
+ * <b>-Dpcc.test.soak=true</b>.</p>
+ *
+ * @author Josh Romanowski
+ */
+public class FrameLoopSoakTest {
+    private static final String VIDEO = LocationConfig.TEST_RESOURCES_DIR + File.separator + "Video.mp4";
+    private static final int MAX_SOURCE_FRAMES = 100;
+    private static final int DURATION_SECONDS = 30 * 60;
+    private static final int WARMUP_SECONDS = 60;
+    private static final long MAX_GROWTH = 64L * 1024 * 1024;
+
+    private List<Frame> frames;
+    private double frameRate;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("pcc.test.soak"));
+        ClassifierPool.start();
+        frames = new ArrayList<>();
+
+        FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(VIDEO);
+        grabber.start();
+        frameRate = grabber.getFrameRate();
+        Frame frame;
+        while (frames.size() < MAX_SOURCE_FRAMES && (frame = grabber.grabImage()) != null) {
+            frames.add(frame.clone());
+        }
+        grabber.stop();
+        grabber.release();
+    }
+
+    @After
+    public void tearDown() {
+        if (frames != null) {
+            ClassifierPool.shutdownIfStarted();
+        }
+    }
+
+    @Test
+    public void nativeMemoryTest() throws Exception {
+        int frameCount = (int) Math.round(DURATION_SECONDS * frameRate);
+        int sampleInterval = (int) Math.round(WARMUP_SECONDS * frameRate);
+        MeasuringRecorder recorder = new MeasuringRecorder(sampleInterval);
+
+        // the video is stored upright
+        long recorded = new FramePipeline(new OpenCVBoxfilter()).process(
+                new LoopingGrabber(frames, frameCount), recorder, "soak", 0);
+
+        Assert.assertEquals(frameCount, recorded);
+        Assert.assertTrue(recorder.samples.size() > 2);
+        // the first sample is taken after the warmup, when all buffers got allocated
+        long baseline = recorder.samples.get(0);
+        long peak = baseline;
+        for (long sample : recorder.samples) {
+            peak = Math.max(peak, sample);
+        }
+        Logger.getGlobal().info(String.format("Native memory grew by %.1f MB over %d frames",
+                (peak - baseline) / 1024.0 / 1024.0, recorded));
+        Assert.assertTrue(peak - baseline < MAX_GROWTH);
+    }
+
+    /**
+     * Replays the given frames until the requested amount of frames is reached.
+     */
+    private static class LoopingGrabber extends FrameGrabber {
+        private final List<Frame> frames;
+        private final int frameCount;
+        private int grabbed;
+
+        LoopingGrabber(List<Frame> frames, int frameCount) {
+            this.frames = frames;
+            this.frameCount = frameCount;
+        }
+
+        @Override
+        public Frame grab() {
+            return (grabbed < frameCount) ? frames.get(grabbed++ % frames.size()) : null;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void trigger() {
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    /**
+     * Discards all frames and samples the memory used by the process periodically.
+     */
+    private static class MeasuringRecorder extends FrameRecorder {
+        private final int sampleInterval;
+        private final List<Long> samples = new ArrayList<>();
+        private int recorded;
+
+        MeasuringRecorder(int sampleInterval) {
+            this.sampleInterval = sampleInterval;
+        }
+
+        @Override
+        public void record(Frame frame) {
+            if (++recorded % sampleInterval == 0) {
+                samples.add(Pointer.physicalBytes());
+                Logger.getGlobal().info(String.format("%d frames: %d bytes physical, %d bytes tracked",
+                        recorded, Pointer.physicalBytes(), Pointer.totalBytes()));
+            }
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
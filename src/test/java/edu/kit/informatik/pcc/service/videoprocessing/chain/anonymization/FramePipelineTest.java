@@ -0,0 +1,93 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import edu.kit.informatik.pcc.service.data.LocationConfig;
+import edu.kit.informatik.pcc.service.data.VideoInfo;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+
+/**
+ * Anonymizes the test videos end to end and checks that every decoded frame gets recorded
+ * and the output can be decoded again. Covers every analyzed frame, interpolated frames
+ * and batches of frames that only get searched around the previous detections.
+ *
+ * @author Josh Romanowski
+ */
+public class FramePipelineTest {
+    private static final String[] VIDEOS = {"Video.mp4", "pod.mp4"};
+
+    private File output;
+
+    @BeforeClass
+    public static void setUpClass() {
+        ClassifierPool.start();
+    }
+
+    @Before
+    public void setUp() {
+        output = new File(LocationConfig.OUTPUT_DIR + File.separator + "pipeline" + VideoInfo.FILE_EXTENTION);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        ClassifierPool.shutdownIfStarted();
+    }
+
+    @Test
+    public void everyFrameTest() throws Exception {
+        anonymizeAll(1, 1);
+    }
+
+    @Test
+    public void strideTest() throws Exception {
+        anonymizeAll(3, 1);
+    }
+
+    @Test
+    public void fullSweepIntervalTest() throws Exception {
+        anonymizeAll(1, 5);
+    }
+
+    @Test
+    public void strideAndFullSweepIntervalTest() throws Exception {
+        anonymizeAll(2, 4);
+    }
+
+    private void anonymizeAll(int stride, int fullSweepInterval) throws Exception {
+        DetectionSettings defaults = DetectionSettings.getDefault();
+        DetectionSettings settings = new DetectionSettings(defaults.getDetectionWidth(),
+                defaults.getScaleFactor(), defaults.getMinNeighbors(), defaults.getMinFaceSize(),
+                defaults.getMaxFaceSize(), defaults.isEqualizeHistogram(), fullSweepInterval,
+                defaults.getRegionMargin(), defaults.getSceneChangeThreshold());
+        AAnonymizer anonymizer = new OpenCVAnonymizer(stride, settings);
+
+        for (String video : VIDEOS) {
+            File input = new File(LocationConfig.TEST_RESOURCES_DIR + File.separator + video);
+            Assert.assertTrue(anonymizer.anonymize(input, output));
+
+            int decoded = countFrames(input);
+            Assert.assertTrue(decoded > 0);
+            Assert.assertEquals(decoded, countFrames(output));
+        }
+    }
+
+    private int countFrames(File video) throws Exception {
+        FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(video.getAbsolutePath());
+        grabber.start();
+        int frames = 0;
+        Frame frame;
+        while ((frame = grabber.grabImage()) != null) {
+            Assert.assertNotNull(frame.image);
+            frames++;
+        }
+        grabber.stop();
+        grabber.release();
+        return frames;
+    }
+}
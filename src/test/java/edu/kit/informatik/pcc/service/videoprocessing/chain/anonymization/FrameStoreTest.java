@@ -0,0 +1,124 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import edu.kit.informatik.pcc.service.data.LocationConfig;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * Tests that frames written to a frame store are read back completely, lossless and in order.
+ *
+ * @author Josh Romanowski
+ */
+public class FrameStoreTest {
+    private static final int FRAMES = 300;
+    private static final int WIDTH = 720;
+    private static final int HEIGHT = 1280;
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        dir = new File(LocationConfig.OUTPUT_DIR + File.separator + "frameStore");
+        Assert.assertTrue(dir.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void orderTest() throws Exception {
+        long start = System.nanoTime();
+        try (FrameStore store = new FrameStore(dir)) {
+            for (int i = 0; i < FRAMES; i++) {
+                store.write(i, createFrame(i));
+            }
+            store.flush();
+        }
+        double writeSeconds = (System.nanoTime() - start) / 1e9;
+        Assert.assertEquals(FRAMES, FrameStore.list(dir).length);
+
+        start = System.nanoTime();
+        int read = 0;
+        try (FrameStore store = new FrameStore(dir)) {
+            BufferedImage frame;
+            while ((frame = store.next()) != null) {
+                Assert.assertEquals(BufferedImage.TYPE_3BYTE_BGR, frame.getType());
+                Assert.assertEquals(WIDTH, frame.getWidth());
+                Assert.assertEquals(HEIGHT, frame.getHeight());
+                Assert.assertEquals(read, getIndex(frame));
+                read++;
+            }
+        }
+        double readSeconds = (System.nanoTime() - start) / 1e9;
+        Assert.assertEquals(FRAMES, read);
+
+        Logger.getGlobal().info(String.format("Frame store: writing %.1f fps, reading %.1f fps",
+                FRAMES / writeSeconds, FRAMES / readSeconds));
+    }
+
+    @Test
+    public void emptyTest() throws Exception {
+        try (FrameStore store = new FrameStore(new File(dir, "missing"))) {
+            Assert.assertNull(store.next());
+        }
+    }
+
+    @Test
+    public void namingTest() {
+        try (FrameStore store = new FrameStore(dir)) {
+            // names sort like the positions, also beyond the first thousands of frames
+            Assert.assertTrue(store.getFile(999).getName().compareTo(store.getFile(1000).getName()) < 0);
+            Assert.assertTrue(store.getFile(99999).getName().compareTo(store.getFile(100000).getName()) < 0);
+            Assert.assertTrue(store.getFile(999999).getName().compareTo(store.getFile(1000000).getName()) < 0);
+            Assert.assertTrue(store.getFile(Integer.MAX_VALUE - 1).getName()
+                    .compareTo(store.getFile(Integer.MAX_VALUE).getName()) < 0);
+        }
+    }
+
+    @Test
+    public void closedTest() throws Exception {
+        FrameStore store = new FrameStore(dir);
+        store.close();
+        try {
+            store.write(0, createFrame(0));
+            Assert.fail();
+        } catch (IOException e) {
+            // the rejected frame must not keep flush waiting
+            store.flush();
+        }
+    }
+
+    /**
+     * Creates a frame whose first row holds its position and whose other pixels are noise.
+     */
+    private BufferedImage createFrame(int index) {
+        BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < HEIGHT; y += 7) {
+            for (int x = 0; x < WIDTH; x += 5) {
+                frame.setRGB(x, y, (x * 31 + y * 17 + index) & 0xffffff);
+            }
+        }
+        for (int x = 0; x < WIDTH; x++) {
+            frame.setRGB(x, 0, index);
+        }
+        return frame;
+    }
+
+    private int getIndex(BufferedImage frame) {
+        int index = frame.getRGB(0, 0) & 0xffffff;
+        for (int x = 1; x < WIDTH; x++) {
+            Assert.assertEquals(index, frame.getRGB(x, 0) & 0xffffff);
+        }
+        return index;
+    }
+}
@@ -21,6 +21,7 @@ public class OpenCvAnonymizeTest {
 
     @Before
     public void setUp() {
+        ClassifierPool.start();
         anonymizer = new OpenCVAnonymizer();
         input = new File(LocationConfig.TEST_RESOURCES_DIR + File.separator + "decVid.mp4");
         output = new File(LocationConfig.OUTPUT_DIR + File.separator + "output" + VideoInfo.FILE_EXTENTION);
@@ -0,0 +1,51 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import edu.kit.informatik.pcc.service.data.LocationConfig;
+import edu.kit.informatik.pcc.service.data.VideoInfo;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.logging.Logger;
+
+/**
+ * Compares the wall time of anonymizing the test videos with the python-script
+ * when the frames are written to disk as pictures and when they are streamed through a pipe.
+ *
+ * <p>Needs python with OpenCV and imutils, therefore it only runs with <b>-Dpcc.test.python=true</b>.</p>
+ *
+ * @author Josh Romanowski
+ */
+public class PythonTransportBenchmarkTest {
+    private static final String[] VIDEOS = {"Video.mp4", "pod.mp4"};
+
+    private File output;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Boolean.getBoolean("pcc.test.python"));
+        output = new File(LocationConfig.OUTPUT_DIR + File.separator + "output" + VideoInfo.FILE_EXTENTION);
+    }
+
+    @Test
+    public void transportBenchmarkTest() {
+        AAnonymizer files = new OpenCVPythonAnonymizer(false);
+        AAnonymizer pipe = new OpenCVPythonAnonymizer(true);
+
+        for (String video : VIDEOS) {
+            File input = new File(LocationConfig.TEST_RESOURCES_DIR + File.separator + video);
+
+            long start = System.nanoTime();
+            Assert.assertTrue(files.anonymize(input, output));
+            double filesSeconds = (System.nanoTime() - start) / 1e9;
+
+            start = System.nanoTime();
+            Assert.assertTrue(pipe.anonymize(input, output));
+            double pipeSeconds = (System.nanoTime() - start) / 1e9;
+
+            Logger.getGlobal().info(String.format("%s: files %.1f s, pipe %.1f s", video, filesSeconds, pipeSeconds));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the lifecycle of the python worker pool. Doesn't start any detector.
+ *
+ * @author Josh Romanowski
+ */
+public class PythonWorkerPoolTest {
+    private PythonWorkerPool pool;
+
+    @Before
+    public void setUp() {
+        pool = PythonWorkerPool.start();
+    }
+
+    @After
+    public void tearDown() {
+        PythonWorkerPool.shutdownIfStarted();
+    }
+
+    @Test
+    public void startTest() {
+        Assert.assertSame(pool, PythonWorkerPool.start());
+        Assert.assertSame(pool, PythonWorkerPool.getInstance());
+    }
+
+    @Test
+    public void shutdownTest() throws Exception {
+        pool.shutdown();
+        // the stopped pool stays the instance instead of starting new detectors
+        Assert.assertSame(pool, PythonWorkerPool.getInstance());
+        try {
+            pool.lease();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // leasing from a stopped pool fails
+        }
+        pool.release(null, false);
+        Assert.assertNotSame(pool, PythonWorkerPool.start());
+    }
+}
@@ -0,0 +1,122 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import edu.kit.informatik.pcc.service.data.LocationConfig;
+import org.bytedeco.javacpp.opencv_core;
+import org.bytedeco.javacpp.opencv_core.Mat;
+import org.bytedeco.javacpp.opencv_core.RectVector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Tests the protocol between a python worker and its detector. Uses a fake detector that
+ * answers every frame with a single detection covering the whole frame.
+ *
+ * <p>Needs python, therefore it only runs with <b>-Dpcc.test.python=true</b>.</p>
+ *
+ * @author Josh Romanowski
+ */
+public class PythonWorkerTest {
+    private static final String SCRIPT = "fake_detector.py";
+    private static final String[] FAKE_DETECTOR = {
+            "import struct, sys",
+            "stdin = getattr(sys.stdin, 'buffer', sys.stdin)",
+            "stdout = getattr(sys.stdout, 'buffer', sys.stdout)",
+            "sys.stderr.write('fake detector ready\\n')",
+            "while True:",
+            "    header = stdin.read(8)",
+            "    if len(header) < 8:",
+            "        break",
+            "    (width, height) = struct.unpack('>ii', header)",
+            "    if width == -1:",
+            "        stdout.write(struct.pack('>i', -2))",
+            "    elif width == 0:",
+            "        stdout.write(struct.pack('>i', -1))",
+            "    else:",
+            "        stdin.read(width * height * 3)",
+            "        stdout.write(struct.pack('>iiiii', 1, 0, 0, width, height))",
+            "    stdout.flush()"
+    };
+
+    private File dir;
+    private PythonWorker worker;
+    private Mat frame;
+    private RectVector detections;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("pcc.test.python"));
+        dir = new File(LocationConfig.OUTPUT_DIR);
+        Files.write(new File(dir, SCRIPT).toPath(), Arrays.asList(FAKE_DETECTOR), StandardCharsets.UTF_8);
+        worker = new PythonWorker(dir, SCRIPT);
+        frame = new Mat(4, 2, opencv_core.CV_8UC3);
+        detections = new RectVector();
+    }
+
+    @After
+    public void tearDown() {
+        if (worker == null) {
+            return;
+        }
+        worker.close();
+        frame.release();
+        detections.deallocate();
+        Assert.assertTrue(new File(dir, SCRIPT).delete());
+    }
+
+    @Test
+    public void videosTest() throws Exception {
+        // the detector keeps running between videos
+        for (int video = 0; video < 2; video++) {
+            worker.startVideo("video" + video);
+            // the frames are tiny, so sending everything before receiving fits into the pipe
+            for (int i = 0; i < 3; i++) {
+                worker.send(frame);
+            }
+            worker.finishVideo();
+            for (int i = 0; i < 3; i++) {
+                worker.receive(detections);
+                Assert.assertEquals(1, detections.size());
+                Assert.assertEquals(2, detections.get(0).width());
+                Assert.assertEquals(4, detections.get(0).height());
+            }
+            worker.awaitVideoEnd();
+        }
+        Assert.assertTrue(worker.isAlive());
+    }
+
+    @Test
+    public void pingTest() throws Exception {
+        Assert.assertTrue(worker.ping());
+        worker.close();
+        Thread.sleep(500);
+        Assert.assertFalse(worker.isAlive());
+        Assert.assertFalse(worker.ping());
+    }
+
+    @Test
+    public void lastAnswerTest() throws Exception {
+        long started = worker.getLastAnswer();
+        Thread.sleep(10);
+        Assert.assertTrue(worker.ping());
+        // every answer restarts the answer timeout of the pool
+        Assert.assertTrue(worker.getLastAnswer() > started);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void grayFrameTest() throws Exception {
+        Mat gray = new Mat(4, 2, opencv_core.CV_8UC1);
+        try {
+            worker.send(gray);
+        } finally {
+            gray.release();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.anonymization;
+
+import edu.kit.informatik.pcc.service.data.LocationConfig;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.logging.Logger;
+
+/**
+ * Tests that splitting a video into pictures and merging them again keeps all frames.
+ *
+ * @author Josh Romanowski
+ */
+public class VideoPictureConverterTest {
+    private static final String VIDEO = LocationConfig.TEST_RESOURCES_DIR + File.separator + "Video.mp4";
+    private static final double FPS = 30;
+
+    private VideoPictureConverter converter;
+    private File dir;
+
+    @Before
+    public void setUp() {
+        converter = new VideoPictureConverter();
+        dir = new File(LocationConfig.OUTPUT_DIR + File.separator + "pictures");
+        Assert.assertTrue(dir.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void splitMergeTest() throws Exception {
+        File split = new File(dir, "split");
+        File merged = new File(dir, "merged.mp4");
+        File resplit = new File(dir, "resplit");
+
+        long start = System.nanoTime();
+        int frames = converter.splitUp(new File(VIDEO), split);
+        double splitSeconds = (System.nanoTime() - start) / 1e9;
+        Assert.assertTrue(frames > 0);
+
+        // the pictures are numbered without gaps
+        File[] pictures = FrameStore.list(split);
+        Assert.assertEquals(frames, pictures.length);
+        for (int i = 0; i < pictures.length; i++) {
+            Assert.assertEquals(String.format(FrameStore.NAME_FORMAT, i) + FrameStore.EXTENSION, pictures[i].getName());
+        }
+
+        BufferedImage first = ImageIO.read(pictures[0]);
+        start = System.nanoTime();
+        Assert.assertEquals(frames, converter.merge(split, FPS, first.getWidth(), first.getHeight(), merged));
+        double mergeSeconds = (System.nanoTime() - start) / 1e9;
+
+        Assert.assertEquals(frames, converter.splitUp(merged, resplit));
+
+        Logger.getGlobal().info(String.format("Split %d frames with %.1f fps, merged with %.1f fps",
+                frames, frames / splitSeconds, frames / mergeSeconds));
+    }
+}
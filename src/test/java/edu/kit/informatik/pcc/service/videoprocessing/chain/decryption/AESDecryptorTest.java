@@ -3,11 +3,18 @@ package edu.kit.informatik.pcc.service.videoprocessing.chain.decryption;
 import edu.kit.informatik.pcc.service.data.LocationConfig;
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
-import java.io.File;
+import java.io.*;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Logger;
 
 /**
  * Explicitly tests the AESDecryptor only
@@ -40,6 +47,108 @@ public class AESDecryptorTest {
         Assert.assertTrue(decryptor.decrypt(new File(ENC_FILE), secretKey, new File(OUTPUT_FILE)));
     }
 
+    /**
+     * Compares the throughput of the decryption engine with the old decryption loop.
+     *
+     * <p>Encrypts and decrypts large files, therefore it only runs with <b>-Dpcc.test.benchmark=true</b>.</p>
+     */
+    @Test
+    public void benchmarkTest() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("pcc.test.benchmark"));
+
+        // sizes in MB, e.g. -Dpcc.benchmark.aesSizes=10,100,1024
+        String[] sizes = System.getProperty("pcc.benchmark.aesSizes", "10,100").split(",");
+
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(128);
+        SecretKey key = keyGenerator.generateKey();
+
+        File plain = new File(LocationConfig.OUTPUT_DIR + File.separator + "benchPlain.bin");
+        File encrypted = new File(LocationConfig.OUTPUT_DIR + File.separator + "benchEnc.bin");
+        File decrypted = new File(LocationConfig.OUTPUT_DIR + File.separator + "benchDec.bin");
+        File legacyDecrypted = new File(LocationConfig.OUTPUT_DIR + File.separator + "benchLegacyDec.bin");
+
+        try {
+            for (String size : sizes) {
+                long bytes = Long.parseLong(size.trim()) * 1024 * 1024;
+                createEncryptedFile(plain, encrypted, key, bytes);
+
+                long start = System.nanoTime();
+                legacyDecrypt(encrypted, key, legacyDecrypted);
+                double legacySeconds = (System.nanoTime() - start) / 1e9;
+
+                start = System.nanoTime();
+                Assert.assertTrue(decryptor.decrypt(encrypted, key, decrypted));
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                Assert.assertEquals(plain.length(), decrypted.length());
+                Assert.assertTrue(sameContent(plain, decrypted));
+                Logger.getGlobal().info(String.format("AES decryption of %s MB: legacy %.2f MB/s, engine %.2f MB/s",
+                        size.trim(), bytes / legacySeconds / (1024 * 1024), bytes / seconds / (1024 * 1024)));
+            }
+        } finally {
+            plain.delete();
+            encrypted.delete();
+            decrypted.delete();
+            legacyDecrypted.delete();
+        }
+    }
+
+    private void createEncryptedFile(File plain, File encrypted, SecretKey key, long bytes) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        byte[] buffer = new byte[1024 * 1024];
+        Random random = new Random(bytes);
+        try (OutputStream plainOut = new BufferedOutputStream(new FileOutputStream(plain));
+             OutputStream encOut = new CipherOutputStream(new BufferedOutputStream(new FileOutputStream(encrypted)), cipher)) {
+            for (long written = 0; written < bytes; written += buffer.length) {
+                random.nextBytes(buffer);
+                int length = (int) Math.min(buffer.length, bytes - written);
+                plainOut.write(buffer, 0, length);
+                encOut.write(buffer, 0, length);
+            }
+        }
+    }
+
+    /**
+     * Decryption loop as used before the engine, kept as baseline for the benchmark.
+     */
+    private void legacyDecrypt(File input, SecretKey key, File output) throws Exception {
+        Cipher decipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        decipher.init(Cipher.DECRYPT_MODE, key);
+        try (FileInputStream encfis = new FileInputStream(input);
+             CipherOutputStream cos = new CipherOutputStream(new FileOutputStream(output), decipher)) {
+            int read;
+            byte[] buffer = new byte[1024];
+            while ((read = encfis.read(buffer)) != -1) {
+                cos.write(buffer, 0, read);
+                cos.flush();
+            }
+        }
+    }
+
+    private boolean sameContent(File first, File second) throws IOException {
+        try (InputStream firstIn = new BufferedInputStream(new FileInputStream(first));
+             InputStream secondIn = new BufferedInputStream(new FileInputStream(second))) {
+            byte[] firstBuffer = new byte[64 * 1024];
+            byte[] secondBuffer = new byte[64 * 1024];
+            int read;
+            while ((read = firstIn.read(firstBuffer)) != -1) {
+                int offset = 0;
+                while (offset < read) {
+                    int secondRead = secondIn.read(secondBuffer, offset, read - offset);
+                    if (secondRead == -1) {
+                        return false;
+                    }
+                    offset += secondRead;
+                }
+                if (!Arrays.equals(Arrays.copyOf(firstBuffer, read), Arrays.copyOf(secondBuffer, read))) {
+                    return false;
+                }
+            }
+            return secondIn.read() == -1;
+        }
+    }
 
     @After
     public void cleanUp() {
@@ -1,12 +1,18 @@
 package edu.kit.informatik.pcc.service.videoprocessing.chain.decryption;
 
 import edu.kit.informatik.pcc.service.data.LocationConfig;
+import edu.kit.informatik.pcc.service.videoprocessing.UploadSpooler;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
 
 /**
  * Test for the decryptor classes.
@@ -43,6 +49,38 @@ public class DecryptTest {
         Assert.assertTrue(decryptor.decrypt(encVid, encKey, encMeta, decVid, decMeta));
     }
 
+    @Test
+    public void streamingTest() throws IOException {
+        Assert.assertTrue(decryptor.decrypt(encVid, encKey, encMeta, decVid, decMeta));
+
+        SecretKey key = decryptor.decryptKey(Files.readAllBytes(encKey.toPath()));
+        Assert.assertNotNull(key);
+
+        File streamedVid = new File(LocationConfig.OUTPUT_DIR + File.separator + "streamedVid.mp4");
+        try {
+            UploadSpooler.spool(decryptor.decryptStream(new FileInputStream(encVid), key),
+                    streamedVid, UploadSpooler.MAX_VIDEO_SIZE);
+            Assert.assertArrayEquals(Files.readAllBytes(decVid.toPath()), Files.readAllBytes(streamedVid.toPath()));
+        } finally {
+            streamedVid.delete();
+        }
+    }
+
+    @Test
+    public void invalidMetadataTest() throws Exception {
+        SecretKey key = decryptor.decryptKey(Files.readAllBytes(encKey.toPath()));
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+
+        File invalidMeta = new File(LocationConfig.OUTPUT_DIR + File.separator + "invalidMeta.json");
+        try {
+            Files.write(invalidMeta.toPath(), cipher.doFinal("{\"date\": \"yesterday\"}".getBytes()));
+            Assert.assertFalse(decryptor.decrypt(encVid, encKey, invalidMeta, decVid, decMeta));
+        } finally {
+            invalidMeta.delete();
+        }
+    }
+
     @After
     public void cleanUp() {
         if (decVid.exists())
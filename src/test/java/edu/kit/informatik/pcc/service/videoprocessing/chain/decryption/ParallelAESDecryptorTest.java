@@ -0,0 +1,204 @@
+package edu.kit.informatik.pcc.service.videoprocessing.chain.decryption;
+
+import edu.kit.informatik.pcc.service.data.LocationConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Tests the parallel decryption of AES/ECB and chunked GCM files.
+ *
+ * @author Josh Romanowski
+ */
+public class ParallelAESDecryptorTest {
+
+    private File encrypted;
+    private File decrypted;
+    private SecretKey key;
+    private byte[] plain;
+    private ParallelAESDecryptor decryptor;
+    private ParallelAESDecryptor gcmDecryptor;
+
+    @Before
+    public void setUp() throws Exception {
+        encrypted = new File(LocationConfig.OUTPUT_DIR + File.separator + "parallelEnc.bin");
+        decrypted = new File(LocationConfig.OUTPUT_DIR + File.separator + "parallelDec.bin");
+
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(128);
+        key = keyGenerator.generateKey();
+
+        plain = new byte[20 * 1024 * 1024 + 123];
+        new Random(7).nextBytes(plain);
+        decryptor = new ParallelAESDecryptor();
+        gcmDecryptor = new ParallelAESDecryptor(EncryptionFormat.CHUNKED_GCM);
+    }
+
+    @After
+    public void cleanUp() {
+        encrypted.delete();
+        decrypted.delete();
+    }
+
+    @Test
+    public void ecbTest() throws Exception {
+        // one file below the parallel threshold and one split into several segments with a shorter last one
+        for (int size : new int[]{1000, 9 * 1024 * 1024 + 123}) {
+            byte[] data = Arrays.copyOf(plain, size);
+            writeECB(data);
+            Assert.assertTrue(decryptor.decrypt(encrypted, key, decrypted));
+            Assert.assertArrayEquals(data, Files.readAllBytes(decrypted.toPath()));
+        }
+    }
+
+    /**
+     * Compares the parallel with the sequential decryption of 20 MB.
+     *
+     * <p>Only runs with <b>-Dpcc.test.benchmark=true</b>.</p>
+     */
+    @Test
+    public void ecbBenchmarkTest() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("pcc.test.benchmark"));
+        writeECB(plain);
+
+        long start = System.nanoTime();
+        Assert.assertTrue(decryptor.decrypt(encrypted, key, decrypted));
+        double parallelSeconds = (System.nanoTime() - start) / 1e9;
+        Assert.assertArrayEquals(plain, Files.readAllBytes(decrypted.toPath()));
+
+        start = System.nanoTime();
+        Assert.assertTrue(new AESDecryptor().decrypt(encrypted, key, decrypted));
+        double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+        Assert.assertArrayEquals(plain, Files.readAllBytes(decrypted.toPath()));
+
+        Logger.getGlobal().info(String.format("AES/ECB decryption of 20 MB: sequential %.3f s, parallel %.3f s",
+                sequentialSeconds, parallelSeconds));
+    }
+
+    @Test
+    public void formatTest() {
+        Assert.assertEquals(EncryptionFormat.AES_ECB, EncryptionFormat.fromName(null));
+        Assert.assertEquals(EncryptionFormat.AES_ECB, EncryptionFormat.fromName("aes-ecb"));
+        Assert.assertEquals(EncryptionFormat.CHUNKED_GCM, EncryptionFormat.fromName("Chunked-GCM"));
+        try {
+            EncryptionFormat.fromName("rot13");
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void gcmFileTest() throws Exception {
+        writeGCM(plain, 256 * 1024);
+        Assert.assertTrue(gcmDecryptor.decrypt(encrypted, key, decrypted));
+        Assert.assertArrayEquals(plain, Files.readAllBytes(decrypted.toPath()));
+    }
+
+    @Test
+    public void gcmExactChunksTest() throws Exception {
+        byte[] data = new byte[4 * 1024];
+        new Random(3).nextBytes(data);
+        writeGCM(data, 1024);
+        Assert.assertTrue(gcmDecryptor.decrypt(encrypted, key, decrypted));
+        Assert.assertArrayEquals(data, Files.readAllBytes(decrypted.toPath()));
+
+        writeGCM(new byte[0], 1024);
+        Assert.assertTrue(gcmDecryptor.decrypt(encrypted, key, decrypted));
+        Assert.assertEquals(0, decrypted.length());
+    }
+
+    @Test
+    public void gcmStreamTest() throws Exception {
+        writeGCM(plain, 64 * 1024);
+        try (InputStream input = gcmDecryptor.decrypt(Files.newInputStream(encrypted.toPath()), key)) {
+            Assert.assertNotNull(input);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[100000];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            Assert.assertArrayEquals(plain, output.toByteArray());
+        }
+    }
+
+    @Test
+    public void gcmTamperedTest() throws Exception {
+        writeGCM(plain, 256 * 1024);
+        try (RandomAccessFile file = new RandomAccessFile(encrypted, "rw")) {
+            file.seek(ChunkedGCMFormat.HEADER_SIZE + 300000);
+            file.write(file.read() ^ 1);
+        }
+        Assert.assertFalse(gcmDecryptor.decrypt(encrypted, key, decrypted));
+    }
+
+    @Test
+    public void gcmTruncatedTest() throws Exception {
+        writeGCM(plain, 256 * 1024);
+        try (RandomAccessFile file = new RandomAccessFile(encrypted, "rw")) {
+            // cut off the last chunk completely
+            file.setLength(ChunkedGCMFormat.HEADER_SIZE + 80L * (256 * 1024 + ChunkedGCMFormat.TAG_SIZE));
+        }
+        Assert.assertFalse(gcmDecryptor.decrypt(encrypted, key, decrypted));
+    }
+
+    @Test
+    public void gcmWithoutFormatTest() throws Exception {
+        // chunked GCM files are only decrypted as such if the client announced it
+        writeGCM(plain, 256 * 1024);
+        Assert.assertFalse(decryptor.decrypt(encrypted, key, decrypted));
+
+        writeECB(plain);
+        Assert.assertFalse(gcmDecryptor.decrypt(encrypted, key, decrypted));
+    }
+
+    @Test
+    public void gcmOversizedChunkTest() throws Exception {
+        // a tiny file announcing huge chunks must fail before any buffer of that size is allocated
+        for (int chunkSize : new int[]{ChunkedGCMFormat.MAX_CHUNK_SIZE + 1, 1024 * 1024 * 1024,
+                Integer.MAX_VALUE - 10, -1}) {
+            byte[] file = ByteBuffer.allocate(ChunkedGCMFormat.HEADER_SIZE + ChunkedGCMFormat.TAG_SIZE)
+                    .put(ChunkedGCMFormat.MAGIC).put(ChunkedGCMFormat.VERSION).put(new byte[3])
+                    .putInt(chunkSize).array();
+            Files.write(encrypted.toPath(), file);
+            Assert.assertFalse(gcmDecryptor.decrypt(encrypted, key, decrypted));
+            Assert.assertNull(gcmDecryptor.decrypt(new ByteArrayInputStream(file), key));
+            try {
+                new ChunkedGCMFormat(Arrays.copyOf(file, ChunkedGCMFormat.HEADER_SIZE));
+                Assert.fail();
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    private void writeECB(byte[] data) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        Files.write(encrypted.toPath(), cipher.doFinal(data));
+    }
+
+    private void writeGCM(byte[] data, int chunkSize) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ChunkedGCMFormat.encrypt(new ByteArrayInputStream(data), output, key, chunkSize);
+        Files.write(encrypted.toPath(), output.toByteArray());
+    }
+}
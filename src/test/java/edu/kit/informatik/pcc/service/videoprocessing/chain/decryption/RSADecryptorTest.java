@@ -2,11 +2,17 @@ package edu.kit.informatik.pcc.service.videoprocessing.chain.decryption;
 
 import edu.kit.informatik.pcc.service.data.LocationConfig;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import java.io.File;
+import java.io.ObjectInputStream;
+import java.nio.file.Files;
+import java.security.PrivateKey;
+import java.util.logging.Logger;
 
 /**
  * Explicitly tests the RSA Decryptor only
@@ -40,4 +46,54 @@ public class RSADecryptorTest {
         Assert.assertNotNull(key);
         Assert.assertTrue(key.getAlgorithm().startsWith("AES"));
     }
+
+    @Test
+    public void sharedKeyTest() {
+        Assert.assertSame(PrivateKeyStore.getInstance().getPrivateKey(),
+                PrivateKeyStore.getInstance().getPrivateKey());
+    }
+
+    /**
+     * Compares unwrapping a key with the cached private key and cipher to loading both for every upload.
+     *
+     * <p>Only runs with <b>-Dpcc.test.benchmark=true</b>.</p>
+     */
+    @Test
+    public void unwrapBenchmarkTest() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("pcc.test.benchmark"));
+
+        byte[] encKey = Files.readAllBytes(new File(KEY_FILE).toPath());
+        int iterations = 200;
+
+        // untimed first round, so class loading and the key cache are not measured
+        legacyUnwrap(encKey);
+        Assert.assertNotNull(new RSADecryptor().decryptData(encKey));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            legacyUnwrap(encKey);
+        }
+        double legacyMicros = (System.nanoTime() - start) / 1e3 / iterations;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            Assert.assertNotNull(new RSADecryptor().decryptData(encKey));
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / iterations;
+
+        Logger.getGlobal().info(String.format("RSA key unwrap: legacy %.1f us, cached %.1f us", legacyMicros, micros));
+    }
+
+    /**
+     * Previous behaviour: deserializes the key and looks up the cipher for every upload.
+     */
+    private byte[] legacyUnwrap(byte[] encKey) throws Exception {
+        PrivateKey privateKey;
+        try (ObjectInputStream inputStream = new ObjectInputStream(getClass().getResourceAsStream("/private.key"))) {
+            privateKey = (PrivateKey) inputStream.readObject();
+        }
+        Cipher cipher = Cipher.getInstance("RSA/ECB/PKCS1Padding");
+        cipher.init(Cipher.DECRYPT_MODE, privateKey);
+        return cipher.doFinal(encKey);
+    }
 }